@@ -15,6 +15,9 @@ dependencies {
     implementation("org.json:json:20240303")
     implementation("com.squareup.okhttp3:okhttp:4.12.0")
     implementation("io.github.java-diff-utils:java-diff-utils:4.12")
+    implementation("com.github.jnr:jnr-unixsocket:0.38.22")
+
+    testImplementation("junit:junit:4.13.2")
 }
 // Configure Gradle IntelliJ Plugin
 intellij {
@@ -36,6 +39,15 @@ tasks {
     withType<JavaExec> {
         jvmArgs = listOf("-Dfile.encoding=UTF-8", "-Dsun.stdout.encoding=UTF-8", "-Dsun.stderr.encoding=UTF-8")
     }
+    // 对比 Unix 域套接字与回环 TCP 的请求延迟，参数见 TransportBenchmark
+    register<JavaExec>("transportBenchmark") {
+        group = "verification"
+        classpath = sourceSets["main"].runtimeClasspath
+        mainClass.set("com.system.demo.LLM.transport.TransportBenchmark")
+        args = listOfNotNull(findProperty("socket")?.toString(), findProperty("url")?.toString(),
+                findProperty("requests")?.toString())
+    }
+
     patchPluginXml {
         sinceBuild.set("193")
         untilBuild.set("193.*")
@@ -0,0 +1,80 @@
+package com.system.demo.LLM;
+
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.util.Key;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次补全请求的取消令牌，贯穿防抖任务、上下文读取、HTTP 调用和结果处理各个阶段。
+ * 每个编辑器同一时刻只有一个有效令牌：新的输入、光标移动或 Esc 会取消该编辑器上的旧令牌，
+ * 不影响其他编辑器和选中代码改写的请求。
+ */
+public class CancellationToken {
+    private static final Key<CancellationToken> EDITOR_TOKEN_KEY = Key.create("llm.completion.cancellationToken");
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    /**
+     * 为编辑器开始一个新请求：取消该编辑器上的旧令牌并返回新令牌
+     */
+    public static CancellationToken startFor(@NotNull Editor editor) {
+        CancellationToken token = new CancellationToken();
+        CancellationToken previous;
+        synchronized (EDITOR_TOKEN_KEY) {
+            previous = editor.getUserData(EDITOR_TOKEN_KEY);
+            editor.putUserData(EDITOR_TOKEN_KEY, token);
+        }
+        if (previous != null) {
+            previous.cancel();
+        }
+        return token;
+    }
+
+    /**
+     * 取消编辑器上正在进行的请求（如果有）
+     */
+    public static void cancelFor(@NotNull Editor editor) {
+        CancellationToken token;
+        synchronized (EDITOR_TOKEN_KEY) {
+            token = editor.getUserData(EDITOR_TOKEN_KEY);
+            editor.putUserData(EDITOR_TOKEN_KEY, null);
+        }
+        if (token != null) {
+            token.cancel();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (callbacks) {
+            if (cancelled) return;
+            cancelled = true;
+            toRun = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Runnable callback : toRun) {
+            callback.run();
+        }
+    }
+
+    /**
+     * 注册取消回调（如取消 HTTP 调用）；已经取消时立即执行
+     */
+    public void onCancel(@NotNull Runnable callback) {
+        synchronized (callbacks) {
+            if (!cancelled) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+}
@@ -0,0 +1,142 @@
+package com.system.demo.LLM;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 多候选的本地排序：只看文本本身，不再请求模型，几个候选的排序耗时在微秒级。
+ * <ul>
+ *   <li>去掉空候选和重复候选（按去掉首尾空白后的文本）</li>
+ *   <li>引用的标识符在上下文（Prompt）中出现的比例越高越好，凭空出现的名字多半是编造的</li>
+ *   <li>括号与光标前的内容配对：关闭了并未打开的括号扣分较多，打开后没有关闭扣分较少</li>
+ *   <li>重复光标前已经输入的内容、过短的候选扣分</li>
+ *   <li>其余相同时保持模型给出的顺序</li>
+ * </ul>
+ */
+final class CandidateRanker {
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+    // 分数权重
+    private static final double GROUNDED_WEIGHT = 1.0;
+    private static final double UNBALANCED_CLOSE_PENALTY = 1.0;
+    private static final double UNCLOSED_PENALTY = 0.3;
+    private static final double ECHO_PENALTY = 1.0;
+    private static final double SHORT_PENALTY = 0.5;
+    private static final double ORDER_WEIGHT = 0.2;
+    private static final int MIN_LENGTH = 2;
+    // 统计采纳位置时最多列出的候选数（与设置页的上限一致）
+    private static final int MAX_REPORTED = 8;
+
+    private CandidateRanker() {
+    }
+
+    /**
+     * 按分数从高到低排序，结果不含空候选和重复候选
+     */
+    @NotNull
+    static List<String> rank(@NotNull LLMRequest request, @NotNull List<String> candidates) {
+        Map<String, Integer> unique = new LinkedHashMap<>();
+        for (String candidate : candidates) {
+            if (candidate == null || candidate.trim().isEmpty()) continue;
+            unique.putIfAbsent(candidate.trim(), unique.size());
+        }
+        if (unique.size() <= 1) {
+            return new ArrayList<>(unique.keySet());
+        }
+
+        Set<String> known = identifiers(request.prompt);
+        int depth = Math.max(0, bracketBalance(request.cursorPrefix));
+        String typed = request.cursorPrefix != null ? request.cursorPrefix.trim() : "";
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> e : unique.entrySet()) {
+            double order = ORDER_WEIGHT * (unique.size() - e.getValue()) / unique.size();
+            scores.put(e.getKey(), score(e.getKey(), known, depth, typed) + order);
+        }
+
+        List<String> ranked = new ArrayList<>(scores.keySet());
+        ranked.sort(Comparator.comparingDouble((String candidate) -> scores.get(candidate)).reversed());
+        return ranked;
+    }
+
+    /**
+     * 级联：preferred 的分数不低于 other 时返回 true（同分时 preferred 排在前面）
+     */
+    static boolean prefers(@NotNull LLMRequest request, @NotNull String preferred, @NotNull String other) {
+        List<String> ranked = rank(request, Arrays.asList(preferred, other));
+        return !ranked.isEmpty() && ranked.get(0).equals(preferred.trim());
+    }
+
+    private static double score(String candidate, Set<String> known, int depth, String typed) {
+        double score = GROUNDED_WEIGHT * groundedRatio(candidate, known);
+
+        int after = depth + bracketBalance(candidate);
+        if (after < 0) {
+            score -= UNBALANCED_CLOSE_PENALTY;
+        } else if (after > depth) {
+            score -= UNCLOSED_PENALTY;
+        }
+        if (!typed.isEmpty() && candidate.startsWith(typed)) {
+            score -= ECHO_PENALTY;
+        }
+        if (candidate.length() < MIN_LENGTH) {
+            score -= SHORT_PENALTY;
+        }
+        return score;
+    }
+
+    // 候选中的标识符在上下文中出现的比例，没有标识符时取中间值
+    private static double groundedRatio(String candidate, Set<String> known) {
+        int total = 0;
+        int grounded = 0;
+        Matcher matcher = IDENTIFIER.matcher(candidate);
+        while (matcher.find()) {
+            total++;
+            if (known.contains(matcher.group())) grounded++;
+        }
+        return total == 0 ? 0.5 : (double) grounded / total;
+    }
+
+    private static Set<String> identifiers(String text) {
+        Set<String> identifiers = new HashSet<>();
+        Matcher matcher = IDENTIFIER.matcher(text);
+        while (matcher.find()) {
+            identifiers.add(matcher.group());
+        }
+        return identifiers;
+    }
+
+    // 打开的括号数减去关闭的括号数（不区分括号种类，不识别字符串中的括号）
+    private static int bracketBalance(@Nullable String text) {
+        if (text == null) return 0;
+        int balance = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(' || c == '[' || c == '{') balance++;
+            else if (c == ')' || c == ']' || c == '}') balance--;
+        }
+        return balance;
+    }
+
+    static String getStats() {
+        StringBuilder accepted = new StringBuilder();
+        for (int i = 0; i < MAX_REPORTED; i++) {
+            long count = LLMMetrics.get("candidates.accepted." + i);
+            if (count > 0) {
+                accepted.append(String.format(" 第%d个 %d", i + 1, count));
+            }
+        }
+        return String.format("多候选: 调用 %d, 返回候选 %d, 切换 %d, 采纳%s", LLMMetrics.get("candidates.calls"),
+                LLMMetrics.get("candidates.returned"), LLMMetrics.get("candidates.cycled"),
+                accepted.length() > 0 ? accepted : " 0");
+    }
+}
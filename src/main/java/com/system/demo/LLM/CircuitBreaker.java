@@ -0,0 +1,152 @@
+package com.system.demo.LLM;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 模型服务的熔断器：连续失败（连接失败、超时、5xx）达到阈值后打开，打开期间的请求不再发出，
+ * 直接使用 {@link LocalSuggestions} 的本地建议或返回 null；冷却时间到后进入半开状态，只放行一个探测请求，
+ * 成功则关闭，失败则重新打开并加倍冷却时间（最长 {@link #MAX_OPEN_MILLIS}）。
+ * 每个路由到的后端和模型（{@link ModelRoute#identity()}）各有一个熔断器，级联的强模型或路由到的其他服务不可用时
+ * 不影响快速模型的请求。调用结果由 {@link com.system.demo.LLM.transport.Endpoint} 的租约报告，取消的调用不计入；
+ * 预取优先级的调用（级联的强模型）失败时不计入连续失败，只释放半开状态的探测名额。
+ * 发请求前先用 {@link #rejectsRequests} 检查（不占用探测名额），真正发出调用时（已分配节点、将由租约报告结果）
+ * 才用 {@link #allowRequest} 占用名额，合并到进行中的调用或拿不到并发名额的请求不会占住探测名额。
+ */
+public final class CircuitBreaker {
+    private static final long MAX_OPEN_MILLIS = 5 * 60_000;
+    // 探测请求没有结果（如被其他路径丢弃）时，超过该时间允许再发一个
+    private static final long PROBE_TIMEOUT_MILLIS = 10_000;
+
+    private enum State {
+        CLOSED("关闭"),
+        OPEN("打开"),
+        HALF_OPEN("半开");
+
+        final String displayName;
+
+        State(String displayName) {
+            this.displayName = displayName;
+        }
+    }
+
+    // 键为 后端/模型
+    private static final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private final String identity;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int openCount;
+    private long openUntil;
+    private long openMillis;
+    private long probeStartedAt;
+
+    private CircuitBreaker(String identity) {
+        this.identity = identity;
+    }
+
+    /**
+     * 请求路由到的后端和模型的熔断器
+     */
+    @NotNull
+    public static CircuitBreaker of(@NotNull ModelRoute route) {
+        return breakers.computeIfAbsent(route.identity(), CircuitBreaker::new);
+    }
+
+    /**
+     * 是否拒绝新请求（不占用探测名额）：打开且冷却未结束，或半开且探测请求还没有结果
+     */
+    public synchronized boolean rejectsRequests() {
+        if (!LLMSettings.getInstance().circuitBreakerEnabled) return false;
+        long now = System.currentTimeMillis();
+        switch (state) {
+            case OPEN:
+                return now < openUntil;
+            case HALF_OPEN:
+                return probeStartedAt != 0 && now - probeStartedAt < PROBE_TIMEOUT_MILLIS;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 即将发出调用时调用，放行后调用结果必须报告（由节点租约负责）；半开状态下只有第一个调用（探测）被放行
+     */
+    public synchronized boolean allowRequest() {
+        if (!LLMSettings.getInstance().circuitBreakerEnabled) return true;
+        long now = System.currentTimeMillis();
+        switch (state) {
+            case OPEN:
+                if (now < openUntil) return false;
+                state = State.HALF_OPEN;
+                probeStartedAt = now;
+                LLMMetrics.increment("circuit.probe");
+                return true;
+            case HALF_OPEN:
+                if (probeStartedAt != 0 && now - probeStartedAt < PROBE_TIMEOUT_MILLIS) return false;
+                probeStartedAt = now;
+                LLMMetrics.increment("circuit.probe");
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            openMillis = 0;
+            LLMMetrics.increment("circuit.closed");
+        }
+    }
+
+    public synchronized void recordFailure() {
+        LLMSettings settings = LLMSettings.getInstance();
+        if (!settings.circuitBreakerEnabled) return;
+        if (state == State.HALF_OPEN) {
+            // 探测失败：冷却时间加倍
+            open(Math.min(MAX_OPEN_MILLIS, openMillis * 2));
+        } else if (state == State.CLOSED && ++consecutiveFailures >= settings.circuitFailureThreshold) {
+            open(settings.circuitOpenSeconds * 1000L);
+        }
+    }
+
+    /**
+     * 调用结束但没有结论（取消）：半开状态下允许下一个请求继续探测
+     */
+    public synchronized void recordAbandoned() {
+        if (state == State.HALF_OPEN) {
+            probeStartedAt = 0;
+        }
+    }
+
+    private void open(long millis) {
+        state = State.OPEN;
+        openMillis = Math.max(1000, millis);
+        openUntil = System.currentTimeMillis() + openMillis;
+        consecutiveFailures = 0;
+        openCount++;
+        LLMMetrics.increment("circuit.opened");
+    }
+
+    private synchronized String describe() {
+        String detail = state == State.OPEN
+                ? String.format(", %ds 后探测", Math.max(0, openUntil - System.currentTimeMillis()) / 1000)
+                : "";
+        return String.format("%n  %s: %s%s, 连续失败 %d, 打开 %d 次", identity, state.displayName, detail,
+                consecutiveFailures, openCount);
+    }
+
+    public static String getStats() {
+        StringBuilder sb = new StringBuilder(String.format("熔断器: 拒绝 %d, 本地兜底 %d",
+                LLMMetrics.get("circuit.rejected"), LLMMetrics.get("circuit.fallback")));
+        for (CircuitBreaker breaker : new TreeMap<>(breakers).values()) {
+            sb.append(breaker.describe());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.system.demo.LLM;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 发往模型服务的并发上限，按观测到的延迟自适应调整（AIMD），名额由 {@link RequestScheduler} 分配：
+ * <ul>
+ *   <li>延迟不超过该操作基线的 {@link #LATENCY_TOLERANCE} 倍、且调用时并发已达上限时，上限 +1/上限（每轮约 +1）</li>
+ *   <li>延迟超出容忍范围或调用超时，上限 × {@link #DECREASE_FACTOR}，同一批慢请求只降一次（间隔至少 100ms）</li>
+ * </ul>
+ * 基线是各操作最近的最低延迟，缓慢向上漂移，模型整体变慢后不会一直压低上限。
+ */
+final class ConcurrencyLimiter {
+    static final String LIMIT_METRIC = "limit.concurrency";
+    private static final double MIN_LIMIT = 1;
+    private static final double INITIAL_LIMIT = 4;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double DECREASE_FACTOR = 0.75;
+    // 基线向较高样本漂移的速度
+    private static final double BASELINE_DRIFT = 0.02;
+    private static final long MIN_DECREASE_INTERVAL_MILLIS = 100;
+
+    private static final Map<LLMOperation, Double> baselines = new EnumMap<>(LLMOperation.class);
+    private static double limit = INITIAL_LIMIT;
+    private static long lastDecreaseMillis;
+
+    static {
+        LLMMetrics.set(LIMIT_METRIC, (long) INITIAL_LIMIT);
+    }
+
+    private ConcurrencyLimiter() {
+    }
+
+    /**
+     * 当前允许同时进行的请求数；关闭自适应并发时不限制
+     */
+    static synchronized int currentLimit() {
+        LLMSettings settings = LLMSettings.getInstance();
+        if (!settings.adaptiveConcurrency) return Integer.MAX_VALUE;
+        return (int) Math.min(limit, settings.maxConcurrency);
+    }
+
+    /**
+     * 一次成功调用的延迟
+     *
+     * @param saturated 调用开始时并发是否已达上限：只有这种情况下的低延迟才说明可以提高上限
+     */
+    static synchronized void onSample(LLMOperation operation, long latencyMillis, boolean saturated) {
+        Double baseline = baselines.get(operation);
+        if (baseline == null || latencyMillis < baseline) {
+            baselines.put(operation, (double) latencyMillis);
+            baseline = (double) latencyMillis;
+        } else {
+            baselines.put(operation, baseline + (latencyMillis - baseline) * BASELINE_DRIFT);
+        }
+
+        if (latencyMillis > Math.max(1, baseline) * LATENCY_TOLERANCE) {
+            onOverload();
+        } else if (saturated) {
+            setLimit(limit + 1 / limit);
+        }
+    }
+
+    /**
+     * 调用超时，视为服务过载
+     */
+    static synchronized void onOverload() {
+        long now = System.currentTimeMillis();
+        if (now - lastDecreaseMillis < MIN_DECREASE_INTERVAL_MILLIS) return;
+        lastDecreaseMillis = now;
+        setLimit(Math.max(MIN_LIMIT, limit * DECREASE_FACTOR));
+        LLMMetrics.increment("limit.decreased");
+    }
+
+    private static void setLimit(double value) {
+        limit = Math.min(value, LLMSettings.getInstance().maxConcurrency);
+        LLMMetrics.set(LIMIT_METRIC, (long) limit);
+    }
+
+    static synchronized String getStats() {
+        LLMSettings settings = LLMSettings.getInstance();
+        if (!settings.adaptiveConcurrency) {
+            return "并发上限: 关闭";
+        }
+        return String.format("并发上限: %.1f (最大 %d), 下调 %d 次", limit, settings.maxConcurrency,
+                LLMMetrics.get("limit.decreased"));
+    }
+}
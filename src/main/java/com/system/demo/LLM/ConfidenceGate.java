@@ -0,0 +1,105 @@
+package com.system.demo.LLM;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 按模型给出的 token 对数概率（logprobs）过滤内联补全：
+ * <ul>
+ *   <li>请求带 {@link LLMRequest#logprobs} 时后端要求服务端返回每个 token 的对数概率（OpenAI 兼容 {@code logprobs}，
+ *   llama.cpp {@code n_probs}），不支持的后端不返回，建议原样显示</li>
+ *   <li>截断：遇到第一个概率低于 {@link LLMSettings#confidenceTruncateBelow} 的 token，只保留它之前的部分</li>
+ *   <li>抑制：保留部分的平均概率（对数概率均值取指数）低于 {@link LLMSettings#confidenceSuppressBelow} 时整个建议不显示</li>
+ *   <li>流式：出现低置信度 token 或平均概率跌破阈值（至少 {@value #MIN_STREAM_TOKENS} 个 token 后）时立即断开，
+ *   不再为显示不了的 token 等待</li>
+ * </ul>
+ * 检查、截断、抑制次数和平均概率的分布记录到 {@link LLMMetrics}，用于调整阈值。
+ */
+public final class ConfidenceGate {
+    // 流式时平均概率至少基于这么多 token 才判断是否崩溃，避免开头一个 token 就决定
+    private static final int MIN_STREAM_TOKENS = 4;
+    private static final int BUCKETS = 10;
+
+    private ConfidenceGate() {
+    }
+
+    /**
+     * 一次调用中逐个 token 的置信度跟踪，由后端在解析响应时填入
+     */
+    public static final class Tracker {
+        // 第一个低置信度 token 之前的文本
+        private final StringBuilder kept = new StringBuilder();
+        private double logprobSum;
+        private int tokens;
+        // 遇到了低置信度 token
+        private boolean truncated;
+        // 平均概率过低
+        private boolean collapsed;
+
+        public void add(@Nullable String token, double logprob) {
+            if (isStopped()) return;
+            LLMSettings settings = LLMSettings.getInstance();
+            if (Math.exp(logprob) < settings.confidenceTruncateBelow) {
+                truncated = true;
+                return;
+            }
+            kept.append(token != null ? token : "");
+            logprobSum += logprob;
+            tokens++;
+            if (tokens >= MIN_STREAM_TOKENS && meanProbability() < settings.confidenceSuppressBelow) {
+                collapsed = true;
+            }
+        }
+
+        /**
+         * 之后的 token 已经不会显示，流式调用可以断开
+         */
+        public boolean isStopped() {
+            return truncated || collapsed;
+        }
+
+        private double meanProbability() {
+            return tokens == 0 ? 0 : Math.exp(logprobSum / tokens);
+        }
+
+        /**
+         * 按置信度处理最终文本：没有收到对数概率时原样返回；有低置信度 token 时截断到它之前；
+         * 整体置信度过低或截断后为空时返回 null（不显示）。每次调用只应执行一次
+         */
+        @Nullable
+        public String apply(@Nullable String text) {
+            if (text == null || (tokens == 0 && !truncated)) return text;
+            double mean = meanProbability();
+            LLMMetrics.increment("confidence.checked");
+            LLMMetrics.increment("confidence.mean." + Math.min(BUCKETS - 1, (int) (mean * BUCKETS)));
+
+            String result = text;
+            if (truncated) {
+                LLMMetrics.increment("confidence.truncated");
+                result = kept.toString();
+            }
+            if (collapsed || mean < LLMSettings.getInstance().confidenceSuppressBelow || result.trim().isEmpty()) {
+                LLMMetrics.increment("confidence.suppressed");
+                return null;
+            }
+            return result;
+        }
+    }
+
+    public static String getStats() {
+        long checked = LLMMetrics.get("confidence.checked");
+        long suppressed = LLMMetrics.get("confidence.suppressed");
+        StringBuilder sb = new StringBuilder(String.format("置信度: 检查 %d, 截断 %d, 抑制 %d (%.1f%%), 流式提前结束 %d",
+                checked, LLMMetrics.get("confidence.truncated"), suppressed,
+                checked == 0 ? 0.0 : suppressed * 100.0 / checked, LLMMetrics.get("confidence.cancelled")));
+        if (checked > 0) {
+            sb.append(String.format("%n  平均概率分布:"));
+            for (int i = 0; i < BUCKETS; i++) {
+                long count = LLMMetrics.get("confidence.mean." + i);
+                if (count > 0) {
+                    sb.append(String.format(" %.1f-%.1f %d", (double) i / BUCKETS, (double) (i + 1) / BUCKETS, count));
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
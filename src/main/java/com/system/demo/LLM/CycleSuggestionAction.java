@@ -0,0 +1,49 @@
+package com.system.demo.LLM;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.editor.Editor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 在多个候选之间切换，Alt+] 下一个、Alt+[ 上一个；候选在建议生成后已在后台取回，切换不发请求
+ */
+public abstract class CycleSuggestionAction extends AnAction {
+    private final int delta;
+
+    protected CycleSuggestionAction(int delta) {
+        this.delta = delta;
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Editor editor = e.getData(CommonDataKeys.EDITOR);
+        if (editor != null) {
+            LLMInlineCompletionManager.cycleCandidate(editor, delta);
+        }
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getData(CommonDataKeys.EDITOR) != null);
+    }
+
+    /**
+     * 下一个候选
+     */
+    public static class Next extends CycleSuggestionAction {
+        public Next() {
+            super(1);
+        }
+    }
+
+    /**
+     * 上一个候选
+     */
+    public static class Previous extends CycleSuggestionAction {
+        public Previous() {
+            super(-1);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.system.demo.LLM;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求的截止时间，从触发（如按键）开始计时，贯穿防抖、上下文读取、HTTP 调用和结果处理。
+ * 超过截止时间的结果已经没有意义，各阶段发现已过期就直接放弃。
+ */
+public final class Deadline {
+    // 没有截止时间
+    public static final Deadline NONE = new Deadline(0, false);
+
+    private final long deadlineNanos;
+    private final boolean finite;
+
+    private Deadline(long deadlineNanos, boolean finite) {
+        this.deadlineNanos = deadlineNanos;
+        this.finite = finite;
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis), true);
+    }
+
+    public boolean isFinite() {
+        return finite;
+    }
+
+    public boolean isExpired() {
+        return finite && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * 剩余毫秒数，已过期时为 0，没有截止时间时为 {@link Long#MAX_VALUE}
+     */
+    public long remainingMillis() {
+        if (!finite) return Long.MAX_VALUE;
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    @Override
+    public String toString() {
+        return finite ? "Deadline(" + remainingMillis() + "ms)" : "Deadline(none)";
+    }
+}
@@ -0,0 +1,56 @@
+package com.system.demo.LLM;
+
+/**
+ * 按操作类型选择截止时间。
+ * 内联补全的超时随最近的实际延迟自动调整：最近 {@link #WINDOW} 次调用延迟的 p95 × 系数，
+ * 限制在设置的上下限之间，再加上防抖延迟；样本不足时使用上限。
+ * 改进/注释选中代码允许较长时间，使用设置中的固定值。
+ */
+public final class DeadlinePolicy {
+    private static final int WINDOW = 200;
+    private static final int MIN_SAMPLES = 20;
+
+    // 最近的内联调用延迟
+    private static final RollingLatencyWindow inlineLatency = new RollingLatencyWindow(WINDOW, MIN_SAMPLES);
+
+    private DeadlinePolicy() {
+    }
+
+    /**
+     * 新请求的截止时间（从现在开始计时）
+     */
+    public static Deadline forOperation(LLMOperation operation) {
+        LLMSettings settings = LLMSettings.getInstance();
+        if (operation == LLMOperation.INLINE) {
+            return Deadline.after(settings.triggerDelayMs + inlineTimeoutMillis());
+        }
+        return settings.editTimeoutMs > 0 ? Deadline.after(settings.editTimeoutMs) : Deadline.NONE;
+    }
+
+    /**
+     * 当前内联补全调用（不含防抖）的超时
+     */
+    public static long inlineTimeoutMillis() {
+        LLMSettings settings = LLMSettings.getInstance();
+        long p95 = inlineLatency.percentile(0.95);
+        if (p95 < 0) return settings.inlineTimeoutMaxMs;
+        long adaptive = (long) Math.ceil(p95 * settings.inlineTimeoutFactor);
+        return Math.max(settings.inlineTimeoutMinMs, Math.min(settings.inlineTimeoutMaxMs, adaptive));
+    }
+
+    /**
+     * 记录一次调用的延迟；超时的调用按实际耗时记录，让超时在服务变慢时逐步放宽。
+     * 预取（如级联的强模型）请求有自己的截止时间，不计入内联补全的窗口
+     */
+    public static void recordLatency(LLMRequest request, long millis) {
+        if (request.operation == LLMOperation.INLINE && request.priority != RequestPriority.PREFETCH) {
+            inlineLatency.record(millis);
+        }
+    }
+
+    public static String getStats() {
+        long p95 = inlineLatency.percentile(0.95);
+        return String.format("内联超时: %dms（最近延迟 p95 %s, 系数 %.1f）", inlineTimeoutMillis(),
+                p95 < 0 ? "样本不足" : p95 + "ms", LLMSettings.getInstance().inlineTimeoutFactor);
+    }
+}
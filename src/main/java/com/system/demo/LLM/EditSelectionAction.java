@@ -7,6 +7,7 @@ import com.intellij.openapi.actionSystem.ActionManager;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.SelectionModel;
 import com.intellij.openapi.project.Project;
@@ -49,61 +50,64 @@ public class EditSelectionAction extends AnAction {
         // 显示进度提示
         Messages.showInfoMessage(project, "正在分析代码，请稍候...", "AI 分析");
 
-        // 在后台线程调用 LLM
         final String selectedText = selected;
-        new Thread(() -> {
-
-            // 获取 actionId 来区分不同功能
-            String actionId = ActionManager.getInstance().getId(this);
-
-            String prompt;
-            if ("CommentSelectionWithAI".equalsIgnoreCase(actionId)) {
-                // Shift + Alt + 3  给代码加注释
-                prompt = EditorContextUtils.buildContextPromptForComment(file, selectedText);
-            } else {
-                // 默认：Shift + Alt + 1  改进代码
-                prompt = EditorContextUtils.buildContextPrompt(file, selectedText);
-            }
-
-            String context = EditorContextUtils.getFullFileText(file) + "\n// Selected:\n" + selectedText;
-            String suggestion = LLMClient.queryLLM(prompt, context);
-
-            // 更细致的空结果处理
-            if (suggestion == null) {
-                // 网络错误或其他问题
-                Messages.showErrorDialog(project, "请求失败，请检查网络连接和API配置", "错误");
-                return;
-            }
-
-            if (suggestion.isEmpty()) {
-                // 模型返回空字符串，可能表示代码无需修改
-                int result = Messages.showYesNoDialog(project,
-                        "AI 分析后认为当前代码无需改进。\n是否显示原始代码对比？",
-                        "无需改进",
-                        Messages.getQuestionIcon());
-
-                if (result == Messages.YES) {
-                    // 显示原始代码的"无差异"对比
-                    showNoChangesDialog(project, selectedText);
-                }
-                return;
-            }
-
-// 检查建议是否与原始代码相同
-            if (isSuggestionIdentical(selectedText, suggestion)) {
-                Messages.showInfoMessage(project, "AI 建议与当前代码相同，无需修改", "提示");
-                return;
-            }
 
+        // 获取 actionId 来区分不同功能
+        String actionId = ActionManager.getInstance().getId(this);
+
+        String prompt;
+        LLMOperation operation;
+        if ("CommentSelectionWithAI".equalsIgnoreCase(actionId)) {
+            // Shift + Alt + 3  给代码加注释
+            prompt = EditorContextUtils.buildContextPromptForComment(file, selectedText);
+            operation = LLMOperation.COMMENT;
+        } else {
+            // 默认：Shift + Alt + 1  改进代码
+            prompt = EditorContextUtils.buildContextPrompt(file, selectedText);
+            operation = LLMOperation.IMPROVE;
+        }
 
-            // 清理建议内容
-            String cleanedSuggestion = cleanSuggestion(suggestion);
-
-            // 在 UI 线程显示内联差异
-            com.intellij.openapi.application.ApplicationManager.getApplication().invokeLater(() -> {
-                showDiffDialog(project, selectedText, cleanedSuggestion);
-            });
-        }).start();
+        // 异步调用 LLM，不占用线程等待网络；结果回到 UI 线程处理
+        // Prompt 已包含文件内容和选中代码，直接作为缓存上下文，不再复制一份整个文件
+        LLMRequest request = LLMRequest.builder(operation, prompt)
+                .project(project)
+                .build();
+        LLMClient.queryAsync(request, runnable -> ApplicationManager.getApplication().invokeLater(runnable))
+                .thenAccept(suggestion -> {
+                    // 更细致的空结果处理
+                    if (suggestion == null) {
+                        // 网络错误或其他问题
+                        Messages.showErrorDialog(project, "请求失败，请检查网络连接和API配置", "错误");
+                        return;
+                    }
+
+                    if (suggestion.isEmpty()) {
+                        // 模型返回空字符串，可能表示代码无需修改
+                        int result = Messages.showYesNoDialog(project,
+                                "AI 分析后认为当前代码无需改进。\n是否显示原始代码对比？",
+                                "无需改进",
+                                Messages.getQuestionIcon());
+
+                        if (result == Messages.YES) {
+                            // 显示原始代码的"无差异"对比
+                            showNoChangesDialog(project, selectedText);
+                        }
+                        return;
+                    }
+
+                    // 检查建议是否与原始代码相同
+                    if (isSuggestionIdentical(selectedText, suggestion)) {
+                        Messages.showInfoMessage(project, "AI 建议与当前代码相同，无需修改", "提示");
+                        return;
+                    }
+
+
+                    // 清理建议内容
+                    String cleanedSuggestion = cleanSuggestion(suggestion);
+
+                    // 显示内联差异
+                    showDiffDialog(project, selectedText, cleanedSuggestion);
+                });
     }
     /**
      * 检查建议是否与原始代码相同
@@ -0,0 +1,37 @@
+package com.system.demo.LLM;
+
+import com.intellij.openapi.actionSystem.DataContext;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.actionSystem.EditorActionHandler;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 处理 Esc 键：取消当前编辑器上进行中的补全请求并移除该编辑器的建议；
+ * 该编辑器没有建议时交给原来的处理器（关闭弹窗、取消选区、关闭搜索等）
+ */
+public class EscapeCancelHandler extends EditorActionHandler {
+
+    private final EditorActionHandler originalHandler;
+
+    public EscapeCancelHandler(EditorActionHandler originalHandler) {
+        this.originalHandler = originalHandler;
+    }
+
+    @Override
+    public void execute(@NotNull Editor editor, DataContext dataContext) {
+        CancellationToken.cancelFor(editor);
+        if (LLMInlineCompletionManager.hasSuggestion(editor)) {
+            LLMInlineCompletionManager.removeInlineSuggestion(editor);
+            return;
+        }
+        if (originalHandler != null) {
+            originalHandler.execute(editor, dataContext);
+        }
+    }
+
+    @Override
+    public boolean isEnabled(Editor editor, DataContext dataContext) {
+        return LLMInlineCompletionManager.hasSuggestion(editor)
+                || originalHandler == null || originalHandler.isEnabled(editor, dataContext);
+    }
+}
@@ -0,0 +1,175 @@
+package com.system.demo.LLM;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内联补全的对冲请求：第一次调用超过最近"首次响应"延迟的某个分位数仍没有响应时，
+ * 再发一个相同的请求，采用先响应的一方并取消另一方，用少量额外请求削减长尾延迟。
+ * 非流式调用以拿到结果为响应，流式调用以收到第一段文本为响应（之后只转发胜出一方的文本）。
+ * 阈值来自对冲路径自己记录的延迟窗口，样本不足时只记录、不对冲。
+ */
+final class Hedging {
+    private static final RollingLatencyWindow firstResponse = new RollingLatencyWindow(200, 20);
+
+    private Hedging() {
+    }
+
+    // 发起一次调用（对冲时会调用两次），listener 只在流式调用时使用
+    interface Attempt {
+        CompletableFuture<String> start(CancellationToken cancellation, LLMClient.StreamListener listener);
+    }
+
+    static CompletableFuture<String> complete(LLMRequest request, InFlightRequest flight) {
+        return run(request, flight, null,
+                (cancellation, listener) -> request.route.backend().complete(request, cancellation));
+    }
+
+    static CompletableFuture<String> stream(LLMRequest request, int maxChars, InFlightRequest flight) {
+        return run(request, flight, flight,
+                (cancellation, listener) -> request.route.backend().stream(request, maxChars, listener, cancellation));
+    }
+
+    private static CompletableFuture<String> run(LLMRequest request, InFlightRequest flight,
+                                                 @Nullable LLMClient.StreamListener downstream, Attempt attempt) {
+        LLMSettings settings = LLMSettings.getInstance();
+        // 级联的强模型请求（PREFETCH）本身就是额外的请求，不再对冲
+        if (!settings.hedgingEnabled || request.operation != LLMOperation.INLINE
+                || request.priority == RequestPriority.PREFETCH) {
+            return attempt.start(flight.cancellation, downstream);
+        }
+
+        Race race = new Race(flight.cancellation, downstream);
+        race.launch(attempt, false);
+        long delay = firstResponse.percentile(settings.hedgePercentile);
+        if (delay < 0) {
+            return race.result;
+        }
+        LLMMetrics.increment("hedge.eligible");
+        ScheduledFuture<?> timer = AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
+            if (!race.needsHedge() || request.deadline.isExpired()) return;
+            // 预算紧张或限流暂停时不再为同一个请求多花一份 token
+            if (!TokenBudget.allowRequest(request)) {
+                LLMMetrics.increment("hedge.skipped");
+                return;
+            }
+            // 对冲请求同样占用并发名额，没有空余时不发
+            RequestScheduler.Permit permit = RequestScheduler.tryAcquire(request, flight.cancellation);
+            if (permit == null) {
+                LLMMetrics.increment("hedge.skipped");
+                return;
+            }
+            LLMMetrics.increment("hedge.sent");
+            race.launch(attempt, true).whenComplete((value, error) -> permit.release());
+        }, delay, TimeUnit.MILLISECONDS);
+        race.result.whenComplete((value, error) -> timer.cancel(false));
+        return race.result;
+    }
+
+    /**
+     * 对冲次数、胜出率和当前阈值（统计面板用）
+     */
+    static String getStats() {
+        LLMSettings settings = LLMSettings.getInstance();
+        long eligible = LLMMetrics.get("hedge.eligible");
+        long sent = LLMMetrics.get("hedge.sent");
+        long won = LLMMetrics.get("hedge.won");
+        long threshold = firstResponse.percentile(settings.hedgePercentile);
+        return String.format("对冲请求: %s, 发送 %d / %d (%.1f%%), 对冲胜出 %d (%.1f%%), 阈值 p%.0f=%s",
+                settings.hedgingEnabled ? "开启" : "关闭", sent, eligible,
+                eligible == 0 ? 0.0 : sent * 100.0 / eligible, won, sent == 0 ? 0.0 : won * 100.0 / sent,
+                settings.hedgePercentile * 100, threshold < 0 ? "样本不足(" + firstResponse.size() + ")" : threshold + "ms");
+    }
+
+    // 一次对冲竞争：最先响应的调用胜出，其余调用立即取消
+    private static final class Race {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        // 第一次调用（原始请求）开始的时间
+        private final long startNanos = System.nanoTime();
+        private final CancellationToken parent;
+        private final LLMClient.StreamListener downstream;
+        private final List<Leg> legs = new ArrayList<>(2);
+        private Leg winner;
+        private int pending;
+
+        Race(CancellationToken parent, @Nullable LLMClient.StreamListener downstream) {
+            this.parent = parent;
+            this.downstream = downstream;
+        }
+
+        CompletableFuture<String> launch(Attempt attempt, boolean hedge) {
+            Leg leg = new Leg(hedge);
+            synchronized (this) {
+                legs.add(leg);
+                pending++;
+            }
+            parent.onCancel(leg.cancellation::cancel);
+            CompletableFuture<String> call = attempt.start(leg.cancellation, text -> onPartial(leg, text));
+            call.whenComplete((value, error) -> onComplete(leg, error == null ? value : null));
+            return call;
+        }
+
+        // 只有一个调用在进行且还没有任何响应时才需要对冲
+        synchronized boolean needsHedge() {
+            return winner == null && legs.size() == 1 && pending == 1 && !parent.isCancelled();
+        }
+
+        private void onPartial(Leg leg, String textSoFar) {
+            if (claim(leg) && downstream != null) {
+                downstream.onPartial(textSoFar);
+            }
+        }
+
+        private void onComplete(Leg leg, String value) {
+            if (value != null) {
+                claim(leg);
+            }
+            boolean won;
+            boolean finish;
+            synchronized (this) {
+                pending--;
+                won = winner == leg;
+                // 胜出方结束即结束；没有胜出方时等所有调用都失败
+                finish = won || (winner == null && pending == 0);
+            }
+            if (finish) {
+                result.complete(won ? value : null);
+            }
+        }
+
+        // 第一个响应的调用成为胜出方并取消其他调用；返回 leg 是否是胜出方
+        private boolean claim(Leg leg) {
+            List<Leg> losers;
+            synchronized (this) {
+                if (winner != null) return winner == leg;
+                winner = leg;
+                losers = new ArrayList<>(legs);
+                losers.remove(leg);
+            }
+            // 从原始请求开始计时：对冲胜出时原始调用的延迟至少是这么长，从对冲开始计时会使阈值越来越低
+            firstResponse.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            if (leg.hedge) {
+                LLMMetrics.increment("hedge.won");
+            }
+            for (Leg loser : losers) {
+                loser.cancellation.cancel();
+            }
+            return true;
+        }
+    }
+
+    private static final class Leg {
+        final CancellationToken cancellation = new CancellationToken();
+        final boolean hedge;
+
+        Leg(boolean hedge) {
+            this.hedge = hedge;
+        }
+    }
+}
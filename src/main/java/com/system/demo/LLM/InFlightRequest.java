@@ -0,0 +1,61 @@
+package com.system.demo.LLM;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一次正在进行的 LLM 调用。上下文相同的并发请求挂到同一个实例上，
+ * 共享最终结果；流式调用的增量文本同时转发给所有挂上来的监听器。
+ * HTTP 调用使用自己的取消令牌，只有所有等待方都取消后才真正取消。
+ */
+class InFlightRequest implements LLMClient.StreamListener {
+    final CompletableFuture<String> result = new CompletableFuture<>();
+    final CancellationToken cancellation = new CancellationToken();
+
+    private final List<LLMClient.StreamListener> listeners = new ArrayList<>();
+    private String latestPartial;
+    private int waiters;
+
+    /**
+     * 登记一个等待方；它的令牌取消时退出，最后一个等待方退出时取消 HTTP 调用
+     */
+    void attach(CancellationToken waiter) {
+        synchronized (this) {
+            waiters++;
+        }
+        waiter.onCancel(this::detach);
+    }
+
+    private void detach() {
+        boolean last;
+        synchronized (this) {
+            last = --waiters == 0;
+        }
+        if (last) {
+            cancellation.cancel();
+        }
+    }
+
+    /**
+     * 挂上监听器；如果已经收到过增量文本，立即回放当前累计的内容
+     */
+    synchronized void addListener(LLMClient.StreamListener listener) {
+        listeners.add(listener);
+        if (latestPartial != null) {
+            listener.onPartial(latestPartial);
+        }
+    }
+
+    synchronized void removeListener(LLMClient.StreamListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public synchronized void onPartial(String textSoFar) {
+        latestPartial = textSoFar;
+        for (LLMClient.StreamListener listener : listeners) {
+            listener.onPartial(textSoFar);
+        }
+    }
+}
@@ -1,225 +1,415 @@
 package com.system.demo.LLM;
 
-import okhttp3.*;
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Proxy;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import com.system.demo.LLM.cache.CacheEntry;
+import com.system.demo.LLM.cache.CacheKey;
+import com.system.demo.LLM.cache.CacheStats;
+import com.system.demo.LLM.cache.CompletionCache;
+import com.system.demo.LLM.cache.NearDuplicateIndex;
+import com.system.demo.LLM.cache.PersistentCompletionCache;
+import com.system.demo.LLM.backend.LLMBackend;
+import com.system.demo.LLM.cache.Fingerprint;
+import com.system.demo.LLM.transport.HttpTransport;
+import okhttp3.OkHttpClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * 大模型LLM部分，优化缓存机制
- * 更改为本地方法需要更改queryLLM和createHttpClient部分，将apiurl改为本地url,更改请求体，去掉代理，其他文件没必要改动
+ * 具体的模型服务由 {@link LLMBackend} 扩展实现（OpenAI 兼容、Ollama、llama.cpp、Mock），在设置页切换，
+ * 本类负责缓存、请求合并、取消、熔断（{@link CircuitBreaker}）、token 预算（{@link TokenBudget}）、
+ * 内联补全的对冲请求（{@link Hedging}）和多候选排序（{@link CandidateRanker}），
+ * 切换到本地模型不需要改动这里
  */
 public class LLMClient {
-    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    // 在完成结果的线程上直接回调
+    public static final Executor DIRECT = Runnable::run;
 
-    // 单例 OkHttpClient
-    private static final OkHttpClient client = createHttpClient();
+    /**
+     * 各后端共用的 HTTP 客户端（共享连接池）
+     */
+    public static OkHttpClient httpClient() {
+        return HttpTransport.client();
+    }
 
-    // 当前正在执行的请求
-    private static volatile Call currentCall = null;
+    // 缓存部分：分段加锁 + 字节预算的 LRU，键为 操作类型 + 上下文内容指纹
+    private static final CompletionCache cache =
+            new CompletionCache(LLMSettings.getInstance().cacheMaxKb * 1024L);
 
-    // 改进的缓存：基于上下文哈希
-    private static final int MAX_CACHE_SIZE = 100; // 可以设置更大，因为存储开销小了
+    // 近似重复上下文的第二级查找（仅内联补全）
+    private static final NearDuplicateIndex nearDuplicates = new NearDuplicateIndex();
 
-    private static class CacheEntry {
-        final String result;
-        final long timestamp;
+    // 正在进行的请求（键与缓存相同），相同上下文的并发请求只发一次 HTTP 调用
+    private static final ConcurrentHashMap<CacheKey, InFlightRequest> inFlight = new ConcurrentHashMap<>();
 
-        CacheEntry(String result) {
-            this.result = result;
-            this.timestamp = System.currentTimeMillis();
-        }
-
-        boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > CACHE_TTL_MS;
-        }
+    // 缓存键包含请求路由到的后端和模型，切换后端、模型或路由规则后不会命中其他模型的结果
+    private static CacheKey keyOf(LLMRequest request) {
+        return new CacheKey(request.operation, Fingerprint.combine(Fingerprint.of(request.cacheContext), routeOf(request)));
     }
 
-    private static final long CACHE_TTL_MS = 60000; // 缓存1分钟
-
-    // 创建HTTP客户端
-    private static OkHttpClient createHttpClient() {
-        // 是否需要代理，如果不需要就删掉Proxy
-        Proxy proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", 7897));
-
-        return new OkHttpClient.Builder()
-                .proxy(proxy)
-                .connectTimeout(5, TimeUnit.SECONDS)
-                .readTimeout(10, TimeUnit.SECONDS)
-                .writeTimeout(10, TimeUnit.SECONDS)
-                .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
-                .build();
+    // 近似查找同样按路由区分
+    private static long routeOf(LLMRequest request) {
+        return Fingerprint.of(request.route.identity());
     }
 
-    // 缓存部分
-    private static final Map<String, CacheEntry> cache = new LinkedHashMap<>(MAX_CACHE_SIZE, 0.75f, true);
-    private static final Map<String, CacheEntry> sessionCache = new LinkedHashMap<>(50, 0.75f, true); // 跨会话缓存
-
-    private static String generateContextKey(String context) {
-        if (context == null) return "empty";
-
-        // 预处理：去除注释和多余空格
-        String normalized = context
-                .replaceAll("/\\*.*?\\*/", "")
-                .replaceAll("//.*", "")
-                .replaceAll("\\s+", " ")
-                .trim();
+    // 先查内存，再查项目级磁盘缓存（命中后提升到内存），区域结构已变化的条目视为未命中
+    private static String getCachedSuggestion(LLMRequest request) {
+        CacheKey key = keyOf(request);
+        CacheEntry entry = cache.get(key, request.regionFingerprint);
+        if (entry != null) {
+            return entry.result;
+        }
 
-        // 提取特征：方法名、类名、操作符
-        String features = "";
-        if (normalized.contains("class ")) {
-            features += "class:";
+        PersistentCompletionCache diskCache = diskCacheFor(request);
+        if (diskCache != null) {
+            entry = diskCache.get(key);
+            if (entry != null && entry.matchesRegion(request.regionFingerprint)) {
+                LLMMetrics.increment("cache.disk.hit");
+                cache.put(key, new CacheEntry(entry.result, entry.regionFingerprint));
+                return entry.result;
+            }
+            LLMMetrics.increment(entry != null ? "cache.disk.stale" : "cache.disk.miss");
         }
-        if (normalized.contains("public") || normalized.contains("private")) {
-            features += "scope:";
+
+        LLMSettings settings = LLMSettings.getInstance();
+        if (request.operation == LLMOperation.INLINE && settings.nearDuplicateEnabled) {
+            String similar = nearDuplicates.find(request.operation, routeOf(request), request.cacheContext,
+                    request.cursorPrefix, request.regionFingerprint, settings.nearDuplicateThreshold);
+            if (similar != null) {
+                return similar;
+            }
         }
-        if (normalized.contains("(") && normalized.contains(")")) {
-            features += "func:";
+        return null;
+    }
+
+    private static void cacheSuggestion(LLMRequest request, String suggestion) {
+        if (suggestion == null || suggestion.trim().isEmpty()) {
+            return;
         }
-        if (normalized.contains("=")) {
-            features += "assign:";
+        CacheKey key = keyOf(request);
+        CacheEntry entry = new CacheEntry(suggestion, request.regionFingerprint);
+        cache.put(key, entry);
+        if (request.operation == LLMOperation.INLINE) {
+            nearDuplicates.add(request.operation, routeOf(request), request.cacheContext, request.cursorPrefix,
+                    request.regionFingerprint, suggestion);
         }
 
-        // 取光标前最后300字符提高准确性
-        int start = Math.max(0, normalized.length() - 300);
-        String recent = normalized.substring(start);
-
-        // 使用稳定哈希（避免不同 JVM 导致的 hashCode 差异）
-        String stableHash = Integer.toHexString(recent.getBytes().hashCode());
+        PersistentCompletionCache diskCache = diskCacheFor(request);
+        if (diskCache != null) {
+            diskCache.put(key, entry);
+        }
+    }
 
-        return features + "_" + stableHash;
+    private static PersistentCompletionCache diskCacheFor(LLMRequest request) {
+        if (request.project == null || request.project.isDisposed()
+                || !LLMSettings.getInstance().diskCacheEnabled) {
+            return null;
+        }
+        return PersistentCompletionCache.getInstance(request.project);
     }
 
-    private static String getCachedSuggestion(String context) {
-        String key = generateContextKey(context);
+    /**
+     * 流式输出回调：每收到一段增量文本就回调一次已累计的全文
+     */
+    public interface StreamListener {
+        void onPartial(String textSoFar);
+    }
 
-        CacheEntry entry = cache.get(key);
-        if (entry != null && !entry.isExpired()) {
-            return entry.result;
+    /**
+     * 异步查询LLM：缓存未命中时通过 {@link okhttp3.Call#enqueue} 发起请求，不占用调用线程等待网络。
+     * 失败、取消时以 null 完成，不会异常完成。
+     *
+     * @param callbackExecutor 结果回调所在的线程（如 EDT），不需要切换线程时传 {@link #DIRECT}
+     */
+    public static CompletableFuture<String> queryAsync(LLMRequest request, Executor callbackExecutor) {
+        if (request.cancellation.isCancelled() || isExpired(request)) {
+            return CompletableFuture.completedFuture(null);
         }
 
-        // 二级缓存命中（最近会话）
-        entry = sessionCache.get(key);
-        if (entry != null && !entry.isExpired()) {
-            cache.put(key, entry); // 升级到主缓存
-            return entry.result;
+        // 首先尝试从缓存获取
+        String cached = getCachedSuggestion(request);
+        if (cached != null) {
+            return deliver(CompletableFuture.completedFuture(cached), callbackExecutor);
+        }
+        String rejectedBy = rejectedBy(request);
+        if (rejectedBy != null) {
+            return deliver(CompletableFuture.completedFuture(fallback(request, rejectedBy)), callbackExecutor);
         }
 
-        return null;
+        return deliver(singleFlight(request, null, flight -> Hedging.complete(request, flight)), callbackExecutor);
     }
 
-    private static void cacheSuggestion(String context, String suggestion) {
-        if (suggestion == null || suggestion.trim().isEmpty()) return;
+    /**
+     * 批量查询（多光标）：每个请求先各自查缓存，未命中的合并为一次后端调用（{@link LLMBackend#completeBatch}），
+     * N 个光标只需一次往返。结果与请求一一对应，失败或取消的位置为 null。
+     * 所有请求应共用同一个取消令牌和截止时间（同一次按键），合并调用占用一个并发名额，不做请求合并和对冲。
+     * 合并调用只能发给一个模型：各光标的 Prompt 长度不同时可能匹配不同的路由规则，统一改用第一个光标的路由，
+     * 缓存的查找和写入也按这个路由，不会把一个模型的结果记成另一个模型的。
+     */
+    public static CompletableFuture<List<String>> queryBatchAsync(List<LLMRequest> requests, Executor callbackExecutor) {
+        LLMRequest first = requests.get(0);
+        requests = pinRoute(requests, first.route);
+        String[] results = new String[requests.size()];
+        if (first.cancellation.isCancelled() || isExpired(first)) {
+            return CompletableFuture.completedFuture(Arrays.asList(results));
+        }
 
-        String key = generateContextKey(context);
-        CacheEntry entry = new CacheEntry(suggestion);
+        List<LLMRequest> misses = new ArrayList<>();
+        List<Integer> missIndexes = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            results[i] = getCachedSuggestion(requests.get(i));
+            if (results[i] == null) {
+                misses.add(requests.get(i));
+                missIndexes.add(i);
+            }
+        }
+        if (misses.isEmpty()) {
+            return deliver(CompletableFuture.completedFuture(Arrays.asList(results)), callbackExecutor);
+        }
+        if (misses.size() == 1) {
+            return deliver(queryAsync(misses.get(0), DIRECT).thenApply(value -> {
+                results[missIndexes.get(0)] = value;
+                return Arrays.asList(results);
+            }), callbackExecutor);
+        }
 
-        // 自动LRU淘汰
-        cache.put(key, entry);
-        sessionCache.put(key, entry);
+        String rejectedBy = rejectedBy(first);
+        if (rejectedBy != null) {
+            for (int j = 0; j < misses.size(); j++) {
+                results[missIndexes.get(j)] = fallback(misses.get(j), rejectedBy);
+            }
+            return deliver(CompletableFuture.completedFuture(Arrays.asList(results)), callbackExecutor);
+        }
+
+        LLMMetrics.increment("batch.calls");
+        LLMMetrics.add("batch.prompts", misses.size());
+        CompletableFuture<List<String>> result = RequestScheduler.acquire(first, first.cancellation).thenCompose(permit -> {
+            if (permit == null) {
+                return CompletableFuture.<List<String>>completedFuture(null);
+            }
+            return first.route.backend().completeBatch(misses, first.cancellation).whenComplete((completions, error) ->
+                    permit.release(error == null && completions != null, first.deadline.isExpired()));
+        }).handle((completions, error) -> {
+            for (int j = 0; j < misses.size(); j++) {
+                String value = error == null && completions != null && j < completions.size() ? completions.get(j) : null;
+                if (value != null) {
+                    cacheSuggestion(misses.get(j), value);
+                }
+                results[missIndexes.get(j)] = value;
+            }
+            return Arrays.asList(results);
+        });
+        return deliver(result, callbackExecutor);
     }
 
+    private static List<LLMRequest> pinRoute(List<LLMRequest> requests, ModelRoute route) {
+        List<LLMRequest> pinned = new ArrayList<>(requests.size());
+        for (LLMRequest request : requests) {
+            pinned.add(request.route == route ? request : request.toBuilder().route(route).build());
+        }
+        return pinned;
+    }
 
     /**
-     * 取消当前请求
+     * 多候选查询（建议生成后在后台取回其余候选）：一次后端调用生成 {@link LLMRequest#candidates} 个候选
+     * （{@link LLMBackend#completeCandidates}），由 {@link CandidateRanker} 去重、排序后返回。
+     * 正在显示的建议就来自缓存或刚完成的调用，所以不查缓存、不写缓存，也不使用本地建议；
+     * 耗时不计入内联补全的自适应超时。失败、取消或被熔断/预算拒绝时以 null 完成。
+     * 不做请求合并和对冲（一次调用已经包含多个候选）。
      */
-    public static void cancelCurrentRequest() {
-        Call call = currentCall;
-        if (call != null && !call.isCanceled()) {
-            call.cancel();
+    public static CompletableFuture<List<String>> queryCandidatesAsync(LLMRequest request, Executor callbackExecutor) {
+        if (request.candidates <= 1) {
+            return deliver(queryAsync(request, DIRECT).thenApply(LLMClient::singleton), callbackExecutor);
+        }
+        if (request.cancellation.isCancelled() || isExpired(request)) {
+            return CompletableFuture.completedFuture(null);
         }
-        currentCall = null;
+        String rejectedBy = rejectedBy(request);
+        if (rejectedBy != null) {
+            LLMMetrics.increment(rejectedBy + ".rejected");
+            return deliver(CompletableFuture.completedFuture(null), callbackExecutor);
+        }
+
+        LLMMetrics.increment("candidates.calls");
+        CompletableFuture<List<String>> result = RequestScheduler.acquire(request, request.cancellation).thenCompose(permit -> {
+            if (permit == null) {
+                return CompletableFuture.<List<String>>completedFuture(null);
+            }
+            return request.route.backend().completeCandidates(request, request.cancellation).whenComplete((candidates, error) ->
+                    permit.release(error == null && candidates != null, request.deadline.isExpired()));
+        }).handle((candidates, error) -> {
+            List<String> ranked = error == null && candidates != null
+                    ? CandidateRanker.rank(request, candidates) : Collections.<String>emptyList();
+            if (ranked.isEmpty()) {
+                return null;
+            }
+            LLMMetrics.add("candidates.returned", ranked.size());
+            return ranked;
+        });
+        return deliver(result, callbackExecutor);
+    }
+
+    private static List<String> singleton(String suggestion) {
+        return suggestion != null ? Collections.singletonList(suggestion) : null;
     }
 
     /**
-     * 查询LLM， 需要更改为本地方法
+     * 相同上下文的请求合并：第一个请求真正发起调用，之后到达的请求挂到它上面等待同一个结果。
+     * 结果先写入缓存再移出 inFlight，保证新请求要么命中缓存、要么挂到进行中的调用上。
+     * HTTP 调用在所有等待方的令牌都取消后才中断，已取消的等待方立即得到 null。
+     * 真正发起调用前先由 {@link RequestScheduler} 按优先级分配并发名额，拿不到名额的内联补全直接以 null 结束。
+     *
+     * @param listener 流式调用的增量监听器，非流式传 null
      */
-    public static String queryLLM(String prompt, String context) {
-        // 首先尝试从缓存获取
-        String cached = getCachedSuggestion(context);
-        if (cached != null) {
-            return cached;
+    private static CompletableFuture<String> singleFlight(LLMRequest request, StreamListener listener,
+                                                          Function<InFlightRequest, CompletableFuture<String>> call) {
+        CacheKey key = keyOf(request);
+        InFlightRequest flight = new InFlightRequest();
+        InFlightRequest existing;
+        while ((existing = inFlight.putIfAbsent(key, flight)) != null && existing.cancellation.isCancelled()) {
+            // 所有等待方都已取消的调用即将结束，不再挂上去
+            inFlight.remove(key, existing);
+        }
+        if (existing != null) {
+            LLMMetrics.increment("inflight.coalesced");
+            return follow(existing, request.cancellation, listener);
         }
 
-        // 取消之前的请求
-        cancelCurrentRequest();
+        LLMMetrics.increment("inflight.started");
+        CompletableFuture<String> result = follow(flight, request.cancellation, listener);
+        long start = System.nanoTime();
+        RequestScheduler.acquire(request, flight.cancellation).thenCompose(permit -> {
+            if (permit == null) {
+                return CompletableFuture.<String>completedFuture(null);
+            }
+            return call.apply(flight).whenComplete((completion, error) ->
+                    permit.release(error == null && completion != null, request.deadline.isExpired()));
+        }).whenComplete((completion, error) -> {
+            String value = error == null ? completion : null;
+            // 成功和超时的调用都计入延迟窗口（超时按实际耗时），供自适应超时使用
+            if (value != null || request.deadline.isExpired()) {
+                DeadlinePolicy.recordLatency(request, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            try {
+                if (value != null) {
+                    // 缓存结果的上下文
+                    cacheSuggestion(request, value);
+                }
+            } finally {
+                inFlight.remove(key, flight);
+                flight.result.complete(value);
+            }
+        });
+        return result;
+    }
 
-        LLMSettings settings = LLMSettings.getInstance();
+    // 挂到进行中的调用上：调用结束或自己的令牌取消（得到 null）时完成
+    private static CompletableFuture<String> follow(InFlightRequest flight, CancellationToken cancellation,
+                                                    StreamListener listener) {
+        flight.attach(cancellation);
+        CompletableFuture<String> result = new CompletableFuture<>();
+        flight.result.whenComplete((completion, error) -> result.complete(completion));
+        cancellation.onCancel(() -> result.complete(null));
+        if (listener != null) {
+            flight.addListener(listener);
+            result.whenComplete((completion, error) -> flight.removeListener(listener));
+        }
+        return result;
+    }
 
-        String apiKey = settings.apiKey;
-        String apiUrl = settings.apiUrl;
-        String model = settings.model;
+    // 不发请求的原因（指标前缀）：token 预算不足或限流暂停、熔断打开；
+    // 这里不占用熔断器的探测名额，真正发出调用时才占用（见 HttpLLMBackend）
+    private static String rejectedBy(LLMRequest request) {
+        if (!TokenBudget.allowRequest(request)) return "budget";
+        if (CircuitBreaker.of(request.route).rejectsRequests()) return "circuit";
+        return null;
+    }
 
-        if (apiKey == null || apiKey.isEmpty()) {
-            return null;
+    // 不发请求时：内联补全使用本地建议（不缓存），其余返回 null
+    private static String fallback(LLMRequest request, String rejectedBy) {
+        LLMMetrics.increment(rejectedBy + ".rejected");
+        if (!LLMSettings.getInstance().localFallbackEnabled) return null;
+        String local = LocalSuggestions.suggest(request);
+        if (local != null) {
+            LLMMetrics.increment(rejectedBy + ".fallback");
         }
+        return local;
+    }
+
+    private static boolean isExpired(LLMRequest request) {
+        if (!request.deadline.isExpired()) return false;
+        LLMMetrics.increment("deadline.request");
+        return true;
+    }
 
-        if (apiUrl == null || apiUrl.isEmpty()) {
-            apiUrl = "https://api.openai.com/v1/chat/completions";
+    private static <T> CompletableFuture<T> deliver(CompletableFuture<T> result, Executor callbackExecutor) {
+        return callbackExecutor == DIRECT ? result : result.thenApplyAsync(Function.identity(), callbackExecutor);
+    }
+
+    /**
+     * 异步流式查询LLM（SSE，"stream": true）：增量文本通过 listener 回调（在 OkHttp 线程上），
+     * 累计长度达到 maxChars 后主动断开 HTTP 连接，不再为用不到的 token 等待。
+     * 首 token 延迟（TTFT）与末 token 延迟（TTLT）分别记录到 {@link LLMMetrics}。
+     *
+     * @return 完整（或截断后）的补全文本，失败时以 null 完成
+     */
+    public static CompletableFuture<String> streamAsync(LLMRequest request, int maxChars, StreamListener listener,
+                                                        Executor callbackExecutor) {
+        if (request.cancellation.isCancelled() || isExpired(request)) {
+            return CompletableFuture.completedFuture(null);
         }
 
-        JSONObject json = new JSONObject();
-        json.put("model", model != null && !model.isEmpty() ? model : "gpt-4o-mini");
-        json.put("max_tokens", 2000);
-        json.put("temperature", 0.3);
+        String cached = getCachedSuggestion(request);
+        if (cached != null) {
+            listener.onPartial(cached);
+            return deliver(CompletableFuture.completedFuture(cached), callbackExecutor);
+        }
+        String rejectedBy = rejectedBy(request);
+        if (rejectedBy != null) {
+            String local = fallback(request, rejectedBy);
+            if (local != null) {
+                listener.onPartial(local);
+            }
+            return deliver(CompletableFuture.completedFuture(local), callbackExecutor);
+        }
 
-        JSONArray messages = new JSONArray();
-        messages.put(new JSONObject().put("role", "system").put("content", "你是一个专业的代码助手，请提供简洁的代码补全。"));
-        messages.put(new JSONObject().put("role", "user").put("content", prompt));
-        json.put("messages", messages);
+        return deliver(singleFlight(request, listener, flight -> Hedging.stream(request, maxChars, flight)),
+                callbackExecutor);
+    }
 
-        RequestBody body = RequestBody.create(json.toString(), JSON);
-        Request request = new Request.Builder()
-                .url(apiUrl)
-                .addHeader("Authorization", "Bearer " + apiKey)
-                .addHeader("Content-Type", "application/json")
-                .post(body)
-                .build();
+    /**
+     * 获取缓存统计信息（命中/未命中/淘汰计数）
+     */
+    public static CacheStats getCacheStats() {
+        return cache.stats();
+    }
 
-        Call call = client.newCall(request);
-        currentCall = call;
+    /**
+     * 当前正在进行（未完成）的请求数
+     */
+    public static int getInFlightCount() {
+        return inFlight.size();
+    }
 
-        try (Response response = call.execute()) {
-            if (!response.isSuccessful()) {
-                return null;
-            }
-            if (response.body() == null) {
-                return null;
-            }
-            String responseBody = response.body().string();
-            JSONObject result = new JSONObject(responseBody);
-            String completion = result
-                    .getJSONArray("choices")
-                    .getJSONObject(0)
-                    .getJSONObject("message")
-                    .getString("content")
-                    .trim();
-
-            // 缓存结果的上下文
-            cacheSuggestion(context, completion);
-            return completion;
-        } catch (IOException e) {
-            if (call.isCanceled()) {
-                return null;
-            }
-            e.printStackTrace();
-            return null;
-        } finally {
-            currentCall = null;
-        }
+    /**
+     * 近似查找的命中率、相似度分布（用于调阈值）
+     */
+    public static String getNearDuplicateStats() {
+        return nearDuplicates.getStats(LLMSettings.getInstance().nearDuplicateThreshold);
     }
 
     /**
-     * 获取缓存统计信息（用于调试）
+     * 调整内存缓存容量（设置页修改后调用）
      */
-    public static String getCacheStats() {
-        return "缓存大小: " + cache.size() + "/" + MAX_CACHE_SIZE;
+    public static void setCacheMaxBytes(long maxBytes) {
+        cache.setMaxBytes(maxBytes);
     }
 
     /**
@@ -227,5 +417,6 @@ public class LLMClient {
      */
     public static void clearCache() {
         cache.clear();
+        nearDuplicates.clear();
     }
-}
\ No newline at end of file
+}
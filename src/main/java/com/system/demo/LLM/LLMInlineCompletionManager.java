@@ -5,42 +5,297 @@ import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.Inlay;
 import com.intellij.openapi.editor.InlayModel;
+import com.intellij.openapi.util.Key;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.UnaryOperator;
 
 public class LLMInlineCompletionManager {
-    private static Inlay<?> currentInlay;
-    private static String currentSuggestion = "";
+    // 每个编辑器各自的建议状态（显示的建议、多光标建议、多候选），一个编辑器中的操作不影响其他编辑器
+    private static final Key<SuggestionState> SUGGESTION_KEY = Key.create("llm.inline.suggestion");
+    private static final Executor EDT = runnable -> ApplicationManager.getApplication().invokeLater(runnable);
 
-    public static boolean hasSuggestion() {
-        return currentInlay != null && currentInlay.isValid() && !currentSuggestion.isEmpty();
+    /**
+     * 该编辑器中是否显示着建议（单个建议或多光标建议）
+     */
+    public static boolean hasSuggestion(Editor editor) {
+        SuggestionState state = editor.getUserData(SUGGESTION_KEY);
+        if (state == null) return false;
+        if (state.inlay != null && state.inlay.isValid() && !state.suggestion.isEmpty()) return true;
+        for (Inlay<?> inlay : state.caretInlays) {
+            if (inlay.isValid()) return true;
+        }
+        return false;
     }
 
     public static void showInlineSuggestion(Editor editor, String suggestion) {
         // 直接在调用线程中移除旧建议，提高响应速度
-        removeInlineSuggestion();
-        
+        removeInlineSuggestion(editor);
+
         if (suggestion == null || suggestion.isEmpty()) return;
-        
+
         ApplicationManager.getApplication().invokeLater(() -> {
-            currentSuggestion = suggestion;
+            SuggestionState state = stateOf(editor);
+            state.suggestion = suggestion;
             int offset = editor.getCaretModel().getOffset();
             InlayModel model = editor.getInlayModel();
-            currentInlay = model.addInlineElement(offset, true, new SimpleInlayRenderer(suggestion));
+            state.inlay = model.addInlineElement(offset, true, new SimpleInlayRenderer(suggestion));
         });
     }
-    // 移除旧的建议补全
-    public static void removeInlineSuggestion() {
-        if (currentInlay != null && currentInlay.isValid()) {
-            currentInlay.dispose();
+
+    /**
+     * 多候选：单个建议生成完毕后（在 EDT 上调用），按同一请求在后台一次取回 {@link LLMSettings#inlineCandidates} 个候选，
+     * 返回时建议仍未变化（没有继续输入、采纳、取消）才挂到当前建议上，之后 Alt+] / Alt+[ 只在本地切换。
+     * 输入时的补全仍只请求一个建议，保留流式、请求合并、对冲和置信度过滤；取回按预取调度，繁忙时可被丢弃
+     *
+     * @param shown   当前显示（或即将显示）的建议，排在第一位
+     * @param cleaner 对取回的候选做与显示的建议相同的清理
+     */
+    public static void prefetchCandidates(Editor editor, LLMRequest source, String shown, UnaryOperator<String> cleaner) {
+        int count = LLMSettings.getInstance().inlineCandidates;
+        if (count < 2 || source.cancellation.isCancelled()) return;
+        LLMRequest request = source.toBuilder()
+                .candidates(count)
+                .logprobs(false)
+                .priority(RequestPriority.PREFETCH)
+                .deadline(Deadline.after(DeadlinePolicy.inlineTimeoutMillis()))
+                .build();
+        if (request.candidates < 2) return;
+
+        LLMClient.queryCandidatesAsync(request, EDT).thenAccept(ranked -> {
+            if (ranked == null || source.cancellation.isCancelled() || !shown.equals(currentSuggestion(editor))) return;
+            SuggestionState state = stateOf(editor);
+            if (state.candidates.size() > 1) return;
+            List<String> all = new ArrayList<>();
+            all.add(shown);
+            for (String candidate : ranked) {
+                String cleaned = cleaner.apply(candidate);
+                if (cleaned != null && !cleaned.isEmpty() && !all.contains(cleaned)) {
+                    all.add(cleaned);
+                }
+            }
+            if (all.size() < 2) return;
+            // 只挂上候选并显示序号，当前建议和 Inlay 不变
+            state.candidates = all;
+            state.index = 0;
+            state.setHint(state.hint());
+        });
+    }
+
+    /**
+     * 多候选：在 EDT 上显示排在第一位的候选，其余候选用 {@link #cycleCandidate} 切换，空候选和重复候选跳过
+     */
+    public static void showCandidates(Editor editor, List<String> suggestions) {
+        List<String> unique = new ArrayList<>();
+        for (String suggestion : suggestions) {
+            if (suggestion != null && !suggestion.isEmpty() && !unique.contains(suggestion)) {
+                unique.add(suggestion);
+            }
+        }
+        removeInlineSuggestion(editor);
+        if (unique.isEmpty()) return;
+
+        SuggestionState state = stateOf(editor);
+        SimpleInlayRenderer renderer = new SimpleInlayRenderer(unique.get(0));
+        state.inlay = editor.getInlayModel().addInlineElement(editor.getCaretModel().getOffset(), true, renderer);
+        if (state.inlay == null) return;
+        state.candidates = unique;
+        state.index = 0;
+        state.suggestion = unique.get(0);
+        renderer.setHint(state.hint());
+        state.inlay.updateSize();
+    }
+
+    /**
+     * 切换到下一个（delta = 1）或上一个（delta = -1）候选，循环切换，只替换显示的文本，不发请求
+     *
+     * @return 是否有可切换的候选
+     */
+    public static boolean cycleCandidate(Editor editor, int delta) {
+        SuggestionState state = editor.getUserData(SUGGESTION_KEY);
+        if (state == null || state.renderer() == null || state.candidates.size() < 2) {
+            return false;
+        }
+        state.index = Math.floorMod(state.index + delta, state.candidates.size());
+        state.suggestion = state.candidates.get(state.index);
+        SimpleInlayRenderer renderer = state.renderer();
+        renderer.setText(state.suggestion);
+        renderer.setHint(state.hint());
+        state.inlay.updateSize();
+        LLMMetrics.increment("candidates.cycled");
+        return true;
+    }
+
+    private static SuggestionState stateOf(Editor editor) {
+        SuggestionState state = editor.getUserData(SUGGESTION_KEY);
+        if (state == null) {
+            state = new SuggestionState();
+            editor.putUserData(SUGGESTION_KEY, state);
+        }
+        return state;
+    }
+
+    /**
+     * 多光标补全：在 EDT 上把每个建议显示在各自的光标位置，空建议跳过
+     *
+     * @param offsets 读取上下文时各光标的位置，与 suggestions 一一对应
+     */
+    public static void showInlineSuggestions(Editor editor, int[] offsets, List<String> suggestions) {
+        removeInlineSuggestion(editor);
+        SuggestionState state = stateOf(editor);
+        InlayModel model = editor.getInlayModel();
+        for (int i = 0; i < offsets.length && i < suggestions.size(); i++) {
+            String suggestion = suggestions.get(i);
+            if (suggestion == null || suggestion.isEmpty()) continue;
+            Inlay<?> inlay = model.addInlineElement(offsets[i], true, new SimpleInlayRenderer(suggestion));
+            if (inlay != null) {
+                state.caretInlays.add(inlay);
+            }
+        }
+    }
+
+    /**
+     * 流式补全：在 EDT 上原地更新当前建议文本，没有可用的 Inlay 时新建
+     */
+    public static void updateInlineSuggestion(Editor editor, String suggestion) {
+        if (suggestion == null || suggestion.isEmpty()) return;
+
+        SuggestionState state = stateOf(editor);
+        SimpleInlayRenderer renderer = state.renderer();
+        if (renderer != null) {
+            state.suggestion = suggestion;
+            state.clearCandidates();
+            renderer.setText(suggestion);
+            renderer.setHint("");
+            state.inlay.updateSize();
+            return;
+        }
+
+        removeInlineSuggestion(editor);
+        state.suggestion = suggestion;
+        int offset = editor.getCaretModel().getOffset();
+        state.inlay = editor.getInlayModel().addInlineElement(offset, true, new SimpleInlayRenderer(suggestion));
+    }
+
+    /**
+     * 级联：当前显示在该编辑器中的单个建议，已采纳、已取消或显示的是多光标建议时返回 null
+     */
+    public static String currentSuggestion(Editor editor) {
+        SuggestionState state = editor.getUserData(SUGGESTION_KEY);
+        if (state == null || state.inlay == null || !state.inlay.isValid() || state.suggestion.isEmpty()) {
+            return null;
         }
-        currentInlay = null;
-        currentSuggestion = "";
+        return state.suggestion;
+    }
+
+    /**
+     * 级联：在 EDT 上用强模型的建议原地替换当前建议；显示多候选时强模型的建议排到第一位，其余候选仍可切换
+     */
+    public static void replaceSuggestion(Editor editor, String suggestion) {
+        List<String> candidates = stateOf(editor).candidates;
+        if (candidates.size() > 1) {
+            List<String> replaced = new ArrayList<>();
+            replaced.add(suggestion);
+            replaced.addAll(candidates);
+            showCandidates(editor, replaced);
+            return;
+        }
+        updateInlineSuggestion(editor, suggestion);
+    }
+
+    // 移除该编辑器中的建议，其他编辑器中的建议保留
+    public static void removeInlineSuggestion(Editor editor) {
+        SuggestionState state = editor.getUserData(SUGGESTION_KEY);
+        if (state == null) return;
+        state.clearCandidates();
+        if (state.inlay != null && state.inlay.isValid()) {
+            state.inlay.dispose();
+        }
+        state.inlay = null;
+        state.suggestion = "";
+        for (Inlay<?> inlay : state.caretInlays) {
+            if (inlay.isValid()) {
+                inlay.dispose();
+            }
+        }
+        state.caretInlays.clear();
     }
 
     public static void accept(Editor editor) {
-        if (currentInlay == null) return;
+        SuggestionState state = editor.getUserData(SUGGESTION_KEY);
+        if (state == null) return;
+        if (!state.caretInlays.isEmpty()) {
+            acceptAtCarets(editor, state);
+            return;
+        }
+        if (state.inlay == null) return;
+        if (state.candidates.size() > 1) {
+            // 采纳的是第几个候选，用于评估本地排序
+            LLMMetrics.increment("candidates.accepted." + state.index);
+        }
+        String suggestion = state.suggestion;
+        WriteCommandAction.runWriteCommandAction(editor.getProject(), () -> {
+            editor.getDocument().insertString(editor.getCaretModel().getOffset(), suggestion);
+        });
+        removeInlineSuggestion(editor);
+    }
+
+    // 多光标：在一次写命令中插入全部建议（一次撤销），从后往前插入，前面的位置不受影响
+    private static void acceptAtCarets(Editor editor, SuggestionState state) {
+        List<Inlay<?>> inlays = new ArrayList<>();
+        for (Inlay<?> inlay : state.caretInlays) {
+            if (inlay.isValid() && inlay.getRenderer() instanceof SimpleInlayRenderer) {
+                inlays.add(inlay);
+            }
+        }
+        inlays.sort(Comparator.comparingInt((Inlay<?> inlay) -> inlay.getOffset()).reversed());
         WriteCommandAction.runWriteCommandAction(editor.getProject(), () -> {
-            editor.getDocument().insertString(editor.getCaretModel().getOffset(), currentSuggestion);
+            for (Inlay<?> inlay : inlays) {
+                editor.getDocument().insertString(inlay.getOffset(),
+                        ((SimpleInlayRenderer) inlay.getRenderer()).getText());
+            }
         });
-        removeInlineSuggestion();
+        removeInlineSuggestion(editor);
+    }
+
+    // 一个编辑器的建议状态（只在 EDT 上读写），建议移除时清空候选
+    private static final class SuggestionState {
+        // 单个建议及其 Inlay
+        Inlay<?> inlay;
+        String suggestion = "";
+        // 多光标补全：每个光标各一个建议，建议文本保存在各自的渲染器中
+        final List<Inlay<?>> caretInlays = new ArrayList<>();
+        // 当前显示 candidates[index]，切换时只替换显示的文本，不再发请求
+        List<String> candidates = Collections.emptyList();
+        int index;
+
+        // 显示单个建议的渲染器，没有可用的 Inlay 时为 null
+        SimpleInlayRenderer renderer() {
+            if (inlay == null || !inlay.isValid() || !(inlay.getRenderer() instanceof SimpleInlayRenderer)) {
+                return null;
+            }
+            return (SimpleInlayRenderer) inlay.getRenderer();
+        }
+
+        void setHint(String hint) {
+            SimpleInlayRenderer renderer = renderer();
+            if (renderer != null) {
+                renderer.setHint(hint);
+                inlay.updateSize();
+            }
+        }
+
+        void clearCandidates() {
+            candidates = Collections.emptyList();
+            index = 0;
+        }
+
+        String hint() {
+            return candidates.size() > 1 ? "  (" + (index + 1) + "/" + candidates.size() + ")" : "";
+        }
     }
 }
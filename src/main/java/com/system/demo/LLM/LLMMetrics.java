@@ -0,0 +1,73 @@
+package com.system.demo.LLM;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 插件运行指标：计数器 + 延迟直方图，供统计面板和调优使用
+ */
+public class LLMMetrics {
+    // 延迟指标名称
+    public static final String REQUEST_LATENCY = "request.latency";
+    public static final String STREAM_TTFT = "stream.ttft";
+    public static final String STREAM_TTLT = "stream.ttlt";
+    // 服务端处理 Prompt 的耗时（本地模型返回）
+    public static final String PROMPT_PREFILL = "prompt.prefill";
+    // 服务端返回的 Prompt token 数及其中命中缓存的部分
+    public static final String PROMPT_TOKENS = "prompt.tokens";
+    public static final String PROMPT_CACHED_TOKENS = "prompt.tokens.cached";
+
+    private static final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    public static void add(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new AtomicLong()).addAndGet(delta);
+    }
+
+    /**
+     * 直接设置数值（用于当前值类指标，如并发上限）
+     */
+    public static void set(String name, long value) {
+        counters.computeIfAbsent(name, k -> new AtomicLong()).set(value);
+    }
+
+    public static long get(String name) {
+        AtomicLong counter = counters.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    public static void recordLatency(String name, long millis) {
+        latency(name).record(millis);
+    }
+
+    public static LatencyHistogram latency(String name) {
+        return latencies.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    /**
+     * 生成可读的统计报告
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("==== 延迟 ====\n");
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(latencies).entrySet()) {
+            sb.append(e.getKey()).append(": ").append(e.getValue()).append('\n');
+        }
+        sb.append("\n==== 计数 ====\n");
+        for (Map.Entry<String, AtomicLong> e : new TreeMap<>(counters).entrySet()) {
+            sb.append(e.getKey()).append(": ").append(e.getValue().get()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static void reset() {
+        counters.clear();
+        latencies.clear();
+    }
+}
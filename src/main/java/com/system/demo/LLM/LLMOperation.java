@@ -0,0 +1,10 @@
+package com.system.demo.LLM;
+
+/**
+ * 调用 LLM 的业务类型，参与缓存键计算，避免不同操作的结果互相命中
+ */
+public enum LLMOperation {
+    INLINE,   // 输入时的内联补全
+    IMPROVE,  // Shift + Alt + 1 改进选中代码
+    COMMENT   // Shift + Alt + 3 为选中代码加注释
+}
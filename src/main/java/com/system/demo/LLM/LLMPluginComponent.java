@@ -2,11 +2,16 @@ package com.system.demo.LLM;
 
 import com.intellij.openapi.actionSystem.IdeActions;
 import com.intellij.openapi.components.ProjectComponent;
+import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.editor.actionSystem.EditorActionHandler;
 import com.intellij.openapi.editor.actionSystem.EditorActionManager;
 import com.intellij.openapi.editor.actionSystem.TypedAction;
 import com.intellij.openapi.editor.actionSystem.TypedActionHandler;
+import com.intellij.openapi.editor.event.CaretEvent;
+import com.intellij.openapi.editor.event.CaretListener;
 import com.intellij.openapi.project.Project;
+import com.system.demo.LLM.cache.PersistentCompletionCache;
+import com.system.demo.LLM.transport.ConnectionWarmer;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -16,6 +21,7 @@ public class LLMPluginComponent implements ProjectComponent {
 
     private final Project project;
     private EditorActionHandler originalTabHandler;
+    private EditorActionHandler originalEscapeHandler;
     private TypedActionHandler originalTypedHandler;
 
     public LLMPluginComponent(Project project) {
@@ -29,10 +35,32 @@ public class LLMPluginComponent implements ProjectComponent {
         originalTabHandler = actionManager.getActionHandler(IdeActions.ACTION_EDITOR_TAB);
         actionManager.setActionHandler(IdeActions.ACTION_EDITOR_TAB, new TabAcceptHandler(originalTabHandler));
 
+        // 注册 Esc 键处理器：取消进行中的补全
+        originalEscapeHandler = actionManager.getActionHandler(IdeActions.ACTION_EDITOR_ESCAPE);
+        actionManager.setActionHandler(IdeActions.ACTION_EDITOR_ESCAPE, new EscapeCancelHandler(originalEscapeHandler));
+
+        // 光标移动时取消该编辑器上进行中的补全（只处理本项目的编辑器）
+        EditorFactory.getInstance().getEventMulticaster().addCaretListener(new CaretListener() {
+            @Override
+            public void caretPositionChanged(@NotNull CaretEvent event) {
+                if (event.getEditor().getProject() == project) {
+                    CancellationToken.cancelFor(event.getEditor());
+                }
+            }
+        }, project);
+
         // 注册输入监听器
         TypedAction typedAction = TypedAction.getInstance();
         originalTypedHandler = typedAction.getHandler();
         typedAction.setupHandler(new LLMTypedActionHandler(originalTypedHandler));
+
+        // 后台预热到模型服务的连接，第一次补全不再承担握手开销
+        ConnectionWarmer.warmUpInBackground();
+
+        // 后台懒加载磁盘缓存，不阻塞项目打开
+        if (LLMSettings.getInstance().diskCacheEnabled) {
+            PersistentCompletionCache.getInstance(project).loadInBackground();
+        }
     }
 
     @Override
@@ -42,6 +70,9 @@ public class LLMPluginComponent implements ProjectComponent {
         if (originalTabHandler != null) {
             actionManager.setActionHandler(IdeActions.ACTION_EDITOR_TAB, originalTabHandler);
         }
+        if (originalEscapeHandler != null) {
+            actionManager.setActionHandler(IdeActions.ACTION_EDITOR_ESCAPE, originalEscapeHandler);
+        }
 
         TypedAction typedAction = TypedAction.getInstance();
         if (originalTypedHandler != null) {
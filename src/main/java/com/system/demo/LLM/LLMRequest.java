@@ -0,0 +1,224 @@
+package com.system.demo.LLM;
+
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * 一次 LLM 调用的参数：操作类型、Prompt 以及用于缓存的上下文
+ */
+public class LLMRequest {
+    @NotNull
+    public final LLMOperation operation;
+    @NotNull
+    public final String prompt;
+    // 缓存键使用的上下文，为空时使用 prompt
+    @NotNull
+    public final String cacheContext;
+    // 所属项目，用于定位项目级的磁盘缓存，可为空
+    @Nullable
+    public final Project project;
+    // 读取上下文时光标所在代码区域的结构指纹，缓存条目只在区域未变时命中（0 为不校验）
+    public final long regionFingerprint;
+    // 当前行光标前的内容，近似查找复用旧建议时用于校验衔接
+    @Nullable
+    public final String cursorPrefix;
+    // 取消令牌：取消后不再发起调用，进行中的 HTTP 调用被中断
+    @NotNull
+    public final CancellationToken cancellation;
+    // 生成参数（最大 token 数、温度）与停止序列，最大 token 数和停止序列可以单独指定
+    @NotNull
+    public final RequestProfile profile;
+    public final int maxTokens;
+    // 一次调用生成的候选数（至少 1），温度随候选数调整
+    public final int candidates;
+    public final double temperature;
+    // 要求服务端返回每个 token 的对数概率，结果由 ConfidenceGate 截断或抑制（只用于单个建议的内联补全）
+    public final boolean logprobs;
+    @NotNull
+    public final List<String> stop;
+    // 截止时间：过期后各阶段不再继续，HTTP 调用按剩余时间设置整体超时
+    @NotNull
+    public final Deadline deadline;
+    // 服务端 Prompt 缓存的亲和键（如 OpenAI prompt_cache_key），同一文件的请求尽量落到同一份缓存上
+    @Nullable
+    public final String promptCacheKey;
+    // 调度优先级：并发名额不足时显式操作优先，并可抢占推测性的请求
+    @NotNull
+    public final RequestPriority priority;
+    // 模型路由：使用的后端、模型和服务地址，不设置时按操作类型和 Prompt 长度由 ModelRouter 选择
+    @NotNull
+    public final ModelRoute route;
+
+    private LLMRequest(Builder builder) {
+        this.operation = builder.operation;
+        this.prompt = builder.prompt;
+        this.cacheContext = builder.cacheContext != null ? builder.cacheContext : builder.prompt;
+        this.project = builder.project;
+        this.regionFingerprint = builder.regionFingerprint;
+        this.cursorPrefix = builder.cursorPrefix;
+        this.cancellation = builder.cancellation != null ? builder.cancellation : new CancellationToken();
+        this.promptCacheKey = builder.promptCacheKey;
+        this.deadline = builder.deadline != null ? builder.deadline : DeadlinePolicy.forOperation(builder.operation);
+        this.priority = builder.priority != null ? builder.priority : RequestPriority.forOperation(builder.operation);
+        this.profile = builder.profile != null ? builder.profile : RequestProfile.forOperation(builder.operation);
+        this.maxTokens = builder.maxTokens > 0 ? builder.maxTokens : profile.getMaxTokens();
+        this.route = builder.route != null ? builder.route : ModelRouter.route(builder.operation, builder.prompt.length());
+        // 候选数不超过路由到的后端一次能生成的数量
+        this.candidates = Math.max(1, Math.min(builder.candidates, route.backend().maxCandidates()));
+        this.temperature = profile.getTemperature(candidates);
+        this.logprobs = builder.logprobs && candidates == 1;
+        this.stop = builder.stop != null ? builder.stop : profile.stopSequences(builder.indent != null ? builder.indent : "");
+    }
+
+    public static Builder builder(@NotNull LLMOperation operation, @NotNull String prompt) {
+        return new Builder(operation, prompt);
+    }
+
+    /**
+     * 以本请求的全部参数（包括已经确定的最大 token 数、停止序列、截止时间和路由）为起点构建新请求
+     */
+    public Builder toBuilder() {
+        return new Builder(operation, prompt)
+                .cacheContext(cacheContext)
+                .project(project)
+                .regionFingerprint(regionFingerprint)
+                .cursorPrefix(cursorPrefix)
+                .cancellation(cancellation)
+                .promptCacheKey(promptCacheKey)
+                .profile(profile, "")
+                .maxTokens(maxTokens)
+                .candidates(candidates)
+                .logprobs(logprobs)
+                .stop(stop)
+                .deadline(deadline)
+                .priority(priority)
+                .route(route);
+    }
+
+    public static class Builder {
+        private final LLMOperation operation;
+        private final String prompt;
+        private String cacheContext;
+        private Project project;
+        private long regionFingerprint;
+        private String cursorPrefix;
+        private CancellationToken cancellation;
+        private String promptCacheKey;
+        private RequestProfile profile;
+        private String indent;
+        private int maxTokens;
+        private int candidates;
+        private boolean logprobs;
+        private List<String> stop;
+        private Deadline deadline;
+        private RequestPriority priority;
+        private ModelRoute route;
+
+        private Builder(LLMOperation operation, String prompt) {
+            this.operation = operation;
+            this.prompt = prompt;
+        }
+
+        public Builder cacheContext(String cacheContext) {
+            this.cacheContext = cacheContext;
+            return this;
+        }
+
+        public Builder project(Project project) {
+            this.project = project;
+            return this;
+        }
+
+        public Builder regionFingerprint(long fingerprint) {
+            this.regionFingerprint = fingerprint;
+            return this;
+        }
+
+        public Builder cursorPrefix(String cursorPrefix) {
+            this.cursorPrefix = cursorPrefix;
+            return this;
+        }
+
+        public Builder cancellation(CancellationToken cancellation) {
+            this.cancellation = cancellation;
+            return this;
+        }
+
+        public Builder promptCacheKey(String promptCacheKey) {
+            this.promptCacheKey = promptCacheKey;
+            return this;
+        }
+
+        /**
+         * @param indent 光标所在行的缩进，用于计算多行补全的停止序列
+         */
+        public Builder profile(RequestProfile profile, String indent) {
+            this.profile = profile;
+            this.indent = indent;
+            return this;
+        }
+
+        /**
+         * 最大生成 token 数，不设置时由生成参数决定
+         */
+        public Builder maxTokens(int maxTokens) {
+            this.maxTokens = maxTokens;
+            return this;
+        }
+
+        /**
+         * 一次调用生成的候选数，不设置时为 1；后端不支持多候选时仍只返回一个
+         */
+        public Builder candidates(int candidates) {
+            this.candidates = candidates;
+            return this;
+        }
+
+        /**
+         * 是否要求返回 token 对数概率并按置信度过滤结果，不设置时为 false；多候选的请求不过滤
+         */
+        public Builder logprobs(boolean logprobs) {
+            this.logprobs = logprobs;
+            return this;
+        }
+
+        /**
+         * 停止序列，不设置时由生成参数决定
+         */
+        public Builder stop(List<String> stop) {
+            this.stop = stop;
+            return this;
+        }
+
+        /**
+         * 截止时间，不设置时按操作类型从构建请求时开始计时
+         */
+        public Builder deadline(Deadline deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
+        /**
+         * 调度优先级，不设置时按操作类型：内联补全为 INLINE，其余为 EXPLICIT
+         */
+        public Builder priority(RequestPriority priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * 使用的模型路由，不设置时按操作类型和 Prompt 长度由 {@link ModelRouter} 选择
+         */
+        public Builder route(ModelRoute route) {
+            this.route = route;
+            return this;
+        }
+
+        public LLMRequest build() {
+            return new LLMRequest(this);
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
 import com.intellij.util.xmlb.XmlSerializerUtil;
+import com.system.demo.LLM.transport.RoutingPolicy;
+import com.system.demo.LLM.transport.TransportProfile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -16,11 +18,58 @@ import org.jetbrains.annotations.Nullable;
         storages = @Storage("LLMSettings.xml")
 )
 public class LLMSettings implements PersistentStateComponent<LLMSettings> {
+    public String backendId = "openai"; // 模型后端（LLMBackend 扩展的 id）
     public String apiUrl = "https://api.openai.com/v1/chat/completions";
     public String apiKey = "";
     public String model = "gpt-4o-mini";
+    public String endpointUrls = ""; // 其他相同的服务地址（逗号分隔），与 API URL 一起分担请求
+    public RoutingPolicy routingPolicy = RoutingPolicy.LEAST_OUTSTANDING; // 多个服务地址之间的分配方式
+    public int healthCheckSeconds = 10; // 多个服务地址时主动健康检查的间隔，0 为关闭
     public int triggerDelayMs = 200; // 降低延迟到200ms，提高响应速度
     public int maxSuggestionLength = 150;
+    public double inlineTimeoutFactor = 1.5; // 内联补全超时 = 最近延迟 p95 × 系数（限制在上下限之间）
+    public int inlineTimeoutMinMs = 1500;
+    public int inlineTimeoutMaxMs = 5000;
+    public int editTimeoutMs = 60000; // 改进/注释选中代码的超时，0 为不限
+    public boolean hedgingEnabled = false; // 内联补全慢于最近延迟分位数时再发一个相同请求，取先返回的
+    public double hedgePercentile = 0.9; // 对冲阈值：最近首次响应延迟的分位数
+    public boolean circuitBreakerEnabled = true; // 服务连续失败后暂停请求，冷却后自动探测恢复
+    public int circuitFailureThreshold = 5; // 连续失败多少次后熔断
+    public int circuitOpenSeconds = 15; // 熔断后首次探测前的冷却时间
+    public boolean localFallbackEnabled = true; // 熔断或预算不足期间用上下文中的标识符补全当前单词
+    public boolean adaptiveConcurrency = true; // 按延迟自适应限制同时进行的请求数
+    public int maxConcurrency = 16; // 自适应并发上限的最大值
+    public long tokensPerMinute = 0; // 每分钟 token 预算，0 不限
+    public long tokensPerDay = 0; // 每天 token 预算，0 不限
+    public int budgetReservePercent = 20; // 预算剩余不足该比例时停止内联补全，留给改进/注释
+    public int maxRetries = 2; // 429/503 时改进/注释请求的最大重试次数
+    public boolean streamingEnabled = true; // 流式返回，边生成边显示
+    public boolean multiCaretEnabled = true; // 多光标时每个光标都补全，合并为一次请求
+    public int inlineCandidates = 3; // 建议生成后在后台一次取回的候选数，Alt+] / Alt+[ 在本地切换（输入时只请求一个建议），1 为不取回
+    public boolean confidenceGateEnabled = true; // 按 token 对数概率截断/抑制低置信度的内联补全
+    public double confidenceTruncateBelow = 0.1; // token 概率低于该值时从这里截断
+    public double confidenceSuppressBelow = 0.4; // 平均 token 概率低于该值时不显示
+    public String modelRoutes = ""; // 按任务和 Prompt 长度选择后端和模型的规则（见 ModelRouter），分号分隔
+    public boolean cascadeEnabled = false; // 内联补全先显示快速模型的建议，强模型（cascade 规则）更好时原地替换
+    public int cascadeTimeoutMs = 8000; // 强模型请求的超时
+    public boolean gzipRequestBody = false; // 大请求体 gzip 压缩，需要服务端支持
+    public PromptLayout promptLayout = PromptLayout.PREFIX_STABLE; // 内联补全 Prompt 段落顺序
+    public int cacheMaxKb = 4096; // 内存缓存容量（按估算字节数淘汰）
+    public boolean diskCacheEnabled = true; // 项目级磁盘缓存，跨 IDE 重启保留
+    public int diskCacheMaxMb = 64; // 磁盘缓存日志上限，超出后后台压缩
+    public boolean nearDuplicateEnabled = true; // 近似上下文复用已有建议
+    public double nearDuplicateThreshold = 0.9; // MinHash 估算相似度阈值
+    public TransportProfile transportProfile = TransportProfile.PROXY; // 直连 / HTTP 代理 / h2c / Unix 域套接字
+    public String proxyHost = "127.0.0.1";
+    public int proxyPort = 7897;
+    public String unixSocketPath = "/tmp/llama.sock"; // Unix 域套接字传输使用的套接字文件
+    public int connectTimeoutMs = 5000;
+    public int readTimeoutMs = 10000;
+    public int writeTimeoutMs = 10000;
+    public int maxIdleConnections = 5; // 连接池最大空闲连接数
+    public int keepAliveMinutes = 5; // 空闲连接保留时间
+    public boolean warmUpEnabled = true; // 项目打开时后台预热连接
+    public int keepAlivePingSeconds = 240; // 本地服务空闲超过该时间后 ping 一次，防止卸载模型；0 为关闭
 
     public static LLMSettings getInstance() {
         return ServiceManager.getService(LLMSettings.class);
@@ -2,11 +2,23 @@ package com.system.demo.LLM;
 
 import com.intellij.openapi.options.Configurable;
 import com.intellij.openapi.options.ConfigurationException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.ui.components.JBScrollPane;
+import com.system.demo.LLM.backend.LLMBackend;
+import com.system.demo.LLM.backend.LLMBackends;
+import com.system.demo.LLM.cache.PersistentCompletionCache;
+import com.system.demo.LLM.transport.ConnectionWarmer;
+import com.system.demo.LLM.transport.HttpTransport;
+import com.system.demo.LLM.transport.RoutingPolicy;
+import com.system.demo.LLM.transport.TransportProfile;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ItemEvent;
+import java.util.List;
 
 /**
  * 设置界面
@@ -15,8 +27,56 @@ public class LLMSettingsConfigurable implements Configurable {
     private JTextField apiUrlField;
     private JTextField apiKeyField;
     private JTextField modelField;
+    private JComboBox<String> backendComboBox;
+    private List<LLMBackend> backends;
+    private JTextField endpointUrlsField;
+    private JComboBox<String> routingComboBox;
+    private JTextField healthCheckField;
     private JTextField triggerDelayField;
     private JTextField maxLengthField;
+    private JTextField inlineTimeoutFactorField;
+    private JTextField inlineTimeoutMinField;
+    private JTextField inlineTimeoutMaxField;
+    private JTextField editTimeoutField;
+    private JCheckBox hedgingCheckBox;
+    private JTextField hedgePercentileField;
+    private JCheckBox circuitBreakerCheckBox;
+    private JTextField circuitFailureThresholdField;
+    private JTextField circuitOpenSecondsField;
+    private JCheckBox localFallbackCheckBox;
+    private JCheckBox adaptiveConcurrencyCheckBox;
+    private JTextField maxConcurrencyField;
+    private JTextField tokensPerMinuteField;
+    private JTextField tokensPerDayField;
+    private JTextField budgetReservePercentField;
+    private JTextField maxRetriesField;
+    private JCheckBox streamingCheckBox;
+    private JCheckBox multiCaretCheckBox;
+    private JTextField inlineCandidatesField;
+    private JCheckBox confidenceGateCheckBox;
+    private JTextField confidenceTruncateField;
+    private JTextField confidenceSuppressField;
+    private JTextField modelRoutesField;
+    private JCheckBox cascadeCheckBox;
+    private JTextField cascadeTimeoutField;
+    private JCheckBox gzipRequestCheckBox;
+    private JComboBox<String> promptLayoutComboBox;
+    private JTextField cacheMaxKbField;
+    private JCheckBox diskCacheCheckBox;
+    private JTextField diskCacheMaxMbField;
+    private JCheckBox nearDuplicateCheckBox;
+    private JTextField nearDuplicateThresholdField;
+    private JComboBox<String> transportComboBox;
+    private JTextField proxyHostField;
+    private JTextField proxyPortField;
+    private JTextField unixSocketPathField;
+    private JTextField connectTimeoutField;
+    private JTextField readTimeoutField;
+    private JTextField writeTimeoutField;
+    private JTextField maxIdleConnectionsField;
+    private JTextField keepAliveMinutesField;
+    private JCheckBox warmUpCheckBox;
+    private JTextField keepAlivePingField;
     private JPanel mainPanel;
 
     @Nls
@@ -69,38 +129,203 @@ public class LLMSettingsConfigurable implements Configurable {
         modelField = new JTextField(settings.model, 40);
         mainPanel.add(modelField, gbc);
 
+        // Backend
+        backends = LLMBackends.all();
+        backendComboBox = new JComboBox<>();
+        for (LLMBackend backend : backends) {
+            backendComboBox.addItem(backend.getDisplayName());
+        }
+        backendComboBox.setSelectedIndex(indexOfBackend(settings.backendId));
+        backendComboBox.addItemListener(e -> {
+            if (e.getStateChange() != ItemEvent.DESELECTED) return;
+            // 切换后端时，如果 URL 还是旧后端的默认地址，换成新后端的默认地址
+            LLMBackend previous = backendByName(String.valueOf(e.getItem()));
+            LLMBackend selected = selectedBackend();
+            if (previous != null && selected != null
+                    && apiUrlField.getText().equals(previous.getDefaultUrl())) {
+                apiUrlField.setText(selected.getDefaultUrl());
+            }
+        });
+        addRow("模型后端:", backendComboBox, gbc);
+
+        // Endpoints
+        endpointUrlsField = new JTextField(settings.endpointUrls, 40);
+        addRow("其他服务地址 (逗号分隔):", endpointUrlsField, gbc);
+        routingComboBox = new JComboBox<>();
+        for (RoutingPolicy policy : RoutingPolicy.values()) {
+            routingComboBox.addItem(policy.getDisplayName());
+        }
+        routingComboBox.setSelectedIndex(settings.routingPolicy.ordinal());
+        addRow("请求分配:", routingComboBox, gbc);
+        healthCheckField = new JTextField(String.valueOf(settings.healthCheckSeconds), 40);
+        addRow("健康检查间隔 (秒, 0 关闭):", healthCheckField, gbc);
+
         // Trigger Delay
-        gbc.gridx = 0;
-        gbc.gridy = 3;
-        gbc.fill = GridBagConstraints.NONE;
-        gbc.weightx = 0;
-        mainPanel.add(new JLabel("触发延迟 (ms):"), gbc);
-        gbc.gridx = 1;
-        gbc.fill = GridBagConstraints.HORIZONTAL;
-        gbc.weightx = 1.0;
         triggerDelayField = new JTextField(String.valueOf(settings.triggerDelayMs), 40);
-        mainPanel.add(triggerDelayField, gbc);
+        addRow("触发延迟 (ms):", triggerDelayField, gbc);
 
         // Max Length
+        maxLengthField = new JTextField(String.valueOf(settings.maxSuggestionLength), 40);
+        addRow("最大建议长度:", maxLengthField, gbc);
+
+        // Deadlines
+        inlineTimeoutFactorField = new JTextField(String.valueOf(settings.inlineTimeoutFactor), 40);
+        addRow("内联超时系数 (× p95):", inlineTimeoutFactorField, gbc);
+        inlineTimeoutMinField = new JTextField(String.valueOf(settings.inlineTimeoutMinMs), 40);
+        addRow("内联超时下限 (ms):", inlineTimeoutMinField, gbc);
+        inlineTimeoutMaxField = new JTextField(String.valueOf(settings.inlineTimeoutMaxMs), 40);
+        addRow("内联超时上限 (ms):", inlineTimeoutMaxField, gbc);
+        editTimeoutField = new JTextField(String.valueOf(settings.editTimeoutMs), 40);
+        addRow("改进/注释超时 (ms, 0 不限):", editTimeoutField, gbc);
+        hedgingCheckBox = new JCheckBox("内联补全响应慢时再发一个相同请求，取先返回的", settings.hedgingEnabled);
+        addRow("对冲请求:", hedgingCheckBox, gbc);
+        hedgePercentileField = new JTextField(String.valueOf(settings.hedgePercentile), 40);
+        addRow("对冲阈值 (延迟分位数 0-1):", hedgePercentileField, gbc);
+
+        // Circuit breaker
+        circuitBreakerCheckBox = new JCheckBox("服务连续失败后暂停请求，冷却后自动探测恢复", settings.circuitBreakerEnabled);
+        addRow("熔断:", circuitBreakerCheckBox, gbc);
+        circuitFailureThresholdField = new JTextField(String.valueOf(settings.circuitFailureThreshold), 40);
+        addRow("熔断连续失败次数:", circuitFailureThresholdField, gbc);
+        circuitOpenSecondsField = new JTextField(String.valueOf(settings.circuitOpenSeconds), 40);
+        addRow("熔断冷却 (秒):", circuitOpenSecondsField, gbc);
+        localFallbackCheckBox = new JCheckBox("熔断或预算不足期间补全上下文中出现过的标识符", settings.localFallbackEnabled);
+        addRow("本地兜底:", localFallbackCheckBox, gbc);
+
+        // Concurrency limit
+        adaptiveConcurrencyCheckBox = new JCheckBox("服务变慢时减少同时进行的请求（内联补全放弃，改进/注释排队）",
+                settings.adaptiveConcurrency);
+        addRow("自适应并发:", adaptiveConcurrencyCheckBox, gbc);
+        maxConcurrencyField = new JTextField(String.valueOf(settings.maxConcurrency), 40);
+        addRow("最大并发请求数:", maxConcurrencyField, gbc);
+
+        // Token budget
+        tokensPerMinuteField = new JTextField(String.valueOf(settings.tokensPerMinute), 40);
+        addRow("每分钟 token 预算 (0 不限):", tokensPerMinuteField, gbc);
+        tokensPerDayField = new JTextField(String.valueOf(settings.tokensPerDay), 40);
+        addRow("每天 token 预算 (0 不限):", tokensPerDayField, gbc);
+        budgetReservePercentField = new JTextField(String.valueOf(settings.budgetReservePercent), 40);
+        addRow("预算保留给改进/注释 (%):", budgetReservePercentField, gbc);
+        maxRetriesField = new JTextField(String.valueOf(settings.maxRetries), 40);
+        addRow("限流重试次数:", maxRetriesField, gbc);
+
+        // Streaming
+        streamingCheckBox = new JCheckBox("边生成边显示（SSE）", settings.streamingEnabled);
+        addRow("流式补全:", streamingCheckBox, gbc);
+        multiCaretCheckBox = new JCheckBox("每个光标都显示补全（一次请求，不流式）", settings.multiCaretEnabled);
+        addRow("多光标补全:", multiCaretCheckBox, gbc);
+        inlineCandidatesField = new JTextField(String.valueOf(settings.inlineCandidates), 40);
+        addRow("后台取回的候选数 (Alt+] / Alt+[ 切换，1 为不取回):", inlineCandidatesField, gbc);
+        confidenceGateCheckBox = new JCheckBox("按 token 概率截断/隐藏没把握的建议（OpenAI 兼容、llama.cpp）", settings.confidenceGateEnabled);
+        addRow("置信度过滤:", confidenceGateCheckBox, gbc);
+        confidenceTruncateField = new JTextField(String.valueOf(settings.confidenceTruncateBelow), 40);
+        addRow("token 概率低于此值时截断 (0-1):", confidenceTruncateField, gbc);
+        confidenceSuppressField = new JTextField(String.valueOf(settings.confidenceSuppressBelow), 40);
+        addRow("平均概率低于此值时不显示 (0-1):", confidenceSuppressField, gbc);
+        modelRoutesField = new JTextField(settings.modelRoutes, 40);
+        addRow("模型路由 (分号分隔):", modelRoutesField, gbc);
+        cascadeCheckBox = new JCheckBox("先显示快速模型的建议，cascade 规则的强模型更好时原地替换", settings.cascadeEnabled);
+        addRow("级联补全:", cascadeCheckBox, gbc);
+        cascadeTimeoutField = new JTextField(String.valueOf(settings.cascadeTimeoutMs), 40);
+        addRow("强模型超时 (ms):", cascadeTimeoutField, gbc);
+        gzipRequestCheckBox = new JCheckBox("大请求使用 gzip 压缩（服务端需支持 Content-Encoding: gzip）", settings.gzipRequestBody);
+        addRow("请求压缩:", gzipRequestCheckBox, gbc);
+        promptLayoutComboBox = new JComboBox<>();
+        for (PromptLayout layout : PromptLayout.values()) {
+            promptLayoutComboBox.addItem(layout.getDisplayName());
+        }
+        promptLayoutComboBox.setSelectedIndex(settings.promptLayout.ordinal());
+        addRow("Prompt 布局:", promptLayoutComboBox, gbc);
+
+        // Cache
+        cacheMaxKbField = new JTextField(String.valueOf(settings.cacheMaxKb), 40);
+        addRow("缓存容量 (KB):", cacheMaxKbField, gbc);
+
+        // Disk Cache
+        diskCacheCheckBox = new JCheckBox("跨 IDE 重启保留补全结果", settings.diskCacheEnabled);
+        addRow("磁盘缓存:", diskCacheCheckBox, gbc);
+        diskCacheMaxMbField = new JTextField(String.valueOf(settings.diskCacheMaxMb), 40);
+        addRow("磁盘缓存上限 (MB):", diskCacheMaxMbField, gbc);
+
+        // Near-duplicate lookup
+        nearDuplicateCheckBox = new JCheckBox("相似上下文复用已有建议", settings.nearDuplicateEnabled);
+        addRow("近似查找:", nearDuplicateCheckBox, gbc);
+        nearDuplicateThresholdField = new JTextField(String.valueOf(settings.nearDuplicateThreshold), 40);
+        addRow("相似度阈值 (0~1):", nearDuplicateThresholdField, gbc);
+
+        // Transport
+        transportComboBox = new JComboBox<>();
+        for (TransportProfile profile : TransportProfile.values()) {
+            transportComboBox.addItem(profile.getDisplayName());
+        }
+        transportComboBox.setSelectedIndex(settings.transportProfile.ordinal());
+        addRow("传输方式:", transportComboBox, gbc);
+        proxyHostField = new JTextField(settings.proxyHost, 40);
+        addRow("代理地址:", proxyHostField, gbc);
+        proxyPortField = new JTextField(String.valueOf(settings.proxyPort), 40);
+        addRow("代理端口:", proxyPortField, gbc);
+        unixSocketPathField = new JTextField(settings.unixSocketPath, 40);
+        addRow("套接字文件:", unixSocketPathField, gbc);
+        connectTimeoutField = new JTextField(String.valueOf(settings.connectTimeoutMs), 40);
+        addRow("连接超时 (ms):", connectTimeoutField, gbc);
+        readTimeoutField = new JTextField(String.valueOf(settings.readTimeoutMs), 40);
+        addRow("读取超时 (ms):", readTimeoutField, gbc);
+        writeTimeoutField = new JTextField(String.valueOf(settings.writeTimeoutMs), 40);
+        addRow("写入超时 (ms):", writeTimeoutField, gbc);
+        maxIdleConnectionsField = new JTextField(String.valueOf(settings.maxIdleConnections), 40);
+        addRow("最大空闲连接数:", maxIdleConnectionsField, gbc);
+        keepAliveMinutesField = new JTextField(String.valueOf(settings.keepAliveMinutes), 40);
+        addRow("空闲连接保留 (分钟):", keepAliveMinutesField, gbc);
+        warmUpCheckBox = new JCheckBox("项目打开时后台预热连接", settings.warmUpEnabled);
+        addRow("连接预热:", warmUpCheckBox, gbc);
+        keepAlivePingField = new JTextField(String.valueOf(settings.keepAlivePingSeconds), 40);
+        addRow("本地服务保活 (秒, 0 关闭):", keepAlivePingField, gbc);
+
+        // 说明
         gbc.gridx = 0;
-        gbc.gridy = 4;
+        gbc.gridy++;
+        gbc.gridwidth = 2;
+        JLabel infoLabel = new JLabel("<html><i>提示：设置保存后立即生效，不需要重启 IDE</i></html>");
+        mainPanel.add(infoLabel, gbc);
+
+        // 设置项较多，放进滚动面板；靠上排列，不在窗口较高时垂直居中
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(mainPanel, BorderLayout.NORTH);
+        JBScrollPane scrollPane = new JBScrollPane(content);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        return scrollPane;
+    }
+
+    // 在下一行添加 "标签 + 输入组件"
+    private void addRow(String label, JComponent field, GridBagConstraints gbc) {
+        gbc.gridx = 0;
+        gbc.gridy++;
         gbc.fill = GridBagConstraints.NONE;
         gbc.weightx = 0;
-        mainPanel.add(new JLabel("最大建议长度:"), gbc);
+        mainPanel.add(new JLabel(label), gbc);
         gbc.gridx = 1;
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.weightx = 1.0;
-        maxLengthField = new JTextField(String.valueOf(settings.maxSuggestionLength), 40);
-        mainPanel.add(maxLengthField, gbc);
+        mainPanel.add(field, gbc);
+    }
 
-        // 说明
-        gbc.gridx = 0;
-        gbc.gridy = 5;
-        gbc.gridwidth = 2;
-        JLabel infoLabel = new JLabel("<html><i>提示：修改设置后需要重启 IDE 才能生效</i></html>");
-        mainPanel.add(infoLabel, gbc);
+    private int indexOfBackend(String id) {
+        for (int i = 0; i < backends.size(); i++) {
+            if (backends.get(i).getId().equals(id)) return i;
+        }
+        return backends.isEmpty() ? -1 : 0;
+    }
 
-        return mainPanel;
+    private LLMBackend backendByName(String displayName) {
+        for (LLMBackend backend : backends) {
+            if (backend.getDisplayName().equals(displayName)) return backend;
+        }
+        return null;
+    }
+
+    private LLMBackend selectedBackend() {
+        int index = backendComboBox.getSelectedIndex();
+        return index >= 0 ? backends.get(index) : null;
     }
 
     @Override
@@ -109,23 +334,238 @@ public class LLMSettingsConfigurable implements Configurable {
         return !apiUrlField.getText().equals(settings.apiUrl) ||
                 !apiKeyField.getText().equals(settings.apiKey) ||
                 !modelField.getText().equals(settings.model) ||
+                (selectedBackend() != null && !selectedBackend().getId().equals(settings.backendId)) ||
+                !endpointUrlsField.getText().equals(settings.endpointUrls) ||
+                routingComboBox.getSelectedIndex() != settings.routingPolicy.ordinal() ||
+                !healthCheckField.getText().equals(String.valueOf(settings.healthCheckSeconds)) ||
                 !triggerDelayField.getText().equals(String.valueOf(settings.triggerDelayMs)) ||
-                !maxLengthField.getText().equals(String.valueOf(settings.maxSuggestionLength));
+                !maxLengthField.getText().equals(String.valueOf(settings.maxSuggestionLength)) ||
+                !inlineTimeoutFactorField.getText().equals(String.valueOf(settings.inlineTimeoutFactor)) ||
+                !inlineTimeoutMinField.getText().equals(String.valueOf(settings.inlineTimeoutMinMs)) ||
+                !inlineTimeoutMaxField.getText().equals(String.valueOf(settings.inlineTimeoutMaxMs)) ||
+                !editTimeoutField.getText().equals(String.valueOf(settings.editTimeoutMs)) ||
+                hedgingCheckBox.isSelected() != settings.hedgingEnabled ||
+                !hedgePercentileField.getText().equals(String.valueOf(settings.hedgePercentile)) ||
+                circuitBreakerCheckBox.isSelected() != settings.circuitBreakerEnabled ||
+                !circuitFailureThresholdField.getText().equals(String.valueOf(settings.circuitFailureThreshold)) ||
+                !circuitOpenSecondsField.getText().equals(String.valueOf(settings.circuitOpenSeconds)) ||
+                localFallbackCheckBox.isSelected() != settings.localFallbackEnabled ||
+                adaptiveConcurrencyCheckBox.isSelected() != settings.adaptiveConcurrency ||
+                !maxConcurrencyField.getText().equals(String.valueOf(settings.maxConcurrency)) ||
+                !tokensPerMinuteField.getText().equals(String.valueOf(settings.tokensPerMinute)) ||
+                !tokensPerDayField.getText().equals(String.valueOf(settings.tokensPerDay)) ||
+                !budgetReservePercentField.getText().equals(String.valueOf(settings.budgetReservePercent)) ||
+                !maxRetriesField.getText().equals(String.valueOf(settings.maxRetries)) ||
+                streamingCheckBox.isSelected() != settings.streamingEnabled ||
+                multiCaretCheckBox.isSelected() != settings.multiCaretEnabled ||
+                !inlineCandidatesField.getText().equals(String.valueOf(settings.inlineCandidates)) ||
+                confidenceGateCheckBox.isSelected() != settings.confidenceGateEnabled ||
+                !confidenceTruncateField.getText().equals(String.valueOf(settings.confidenceTruncateBelow)) ||
+                !confidenceSuppressField.getText().equals(String.valueOf(settings.confidenceSuppressBelow)) ||
+                !modelRoutesField.getText().equals(settings.modelRoutes) ||
+                cascadeCheckBox.isSelected() != settings.cascadeEnabled ||
+                !cascadeTimeoutField.getText().equals(String.valueOf(settings.cascadeTimeoutMs)) ||
+                gzipRequestCheckBox.isSelected() != settings.gzipRequestBody ||
+                promptLayoutComboBox.getSelectedIndex() != settings.promptLayout.ordinal() ||
+                !cacheMaxKbField.getText().equals(String.valueOf(settings.cacheMaxKb)) ||
+                diskCacheCheckBox.isSelected() != settings.diskCacheEnabled ||
+                !diskCacheMaxMbField.getText().equals(String.valueOf(settings.diskCacheMaxMb)) ||
+                nearDuplicateCheckBox.isSelected() != settings.nearDuplicateEnabled ||
+                !nearDuplicateThresholdField.getText().equals(String.valueOf(settings.nearDuplicateThreshold)) ||
+                warmUpCheckBox.isSelected() != settings.warmUpEnabled ||
+                !keepAlivePingField.getText().equals(String.valueOf(settings.keepAlivePingSeconds)) ||
+                isTransportModified(settings);
+    }
+
+    private boolean isTransportModified(LLMSettings settings) {
+        return transportComboBox.getSelectedIndex() != settings.transportProfile.ordinal() ||
+                !proxyHostField.getText().equals(settings.proxyHost) ||
+                !proxyPortField.getText().equals(String.valueOf(settings.proxyPort)) ||
+                !unixSocketPathField.getText().equals(settings.unixSocketPath) ||
+                !connectTimeoutField.getText().equals(String.valueOf(settings.connectTimeoutMs)) ||
+                !readTimeoutField.getText().equals(String.valueOf(settings.readTimeoutMs)) ||
+                !writeTimeoutField.getText().equals(String.valueOf(settings.writeTimeoutMs)) ||
+                !maxIdleConnectionsField.getText().equals(String.valueOf(settings.maxIdleConnections)) ||
+                !keepAliveMinutesField.getText().equals(String.valueOf(settings.keepAliveMinutes));
     }
 
     @Override
     public void apply() throws ConfigurationException {
         LLMSettings settings = LLMSettings.getInstance();
-        settings.apiUrl = apiUrlField.getText();
-        settings.apiKey = apiKeyField.getText();
-        settings.model = modelField.getText();
-        
         try {
-            settings.triggerDelayMs = Integer.parseInt(triggerDelayField.getText());
-            settings.maxSuggestionLength = Integer.parseInt(maxLengthField.getText());
+            ModelRouter.validate(modelRoutesField.getText());
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationException(e.getMessage());
+        }
+
+        // 先解析并检查全部数字，全部有效后才写入设置，避免出错时只保存了一部分
+        int triggerDelayMs;
+        int maxSuggestionLength;
+        int healthCheckSeconds;
+        double inlineTimeoutFactor;
+        int inlineTimeoutMinMs;
+        int inlineTimeoutMaxMs;
+        int editTimeoutMs;
+        double hedgePercentile;
+        int circuitFailureThreshold;
+        int circuitOpenSeconds;
+        int maxConcurrency;
+        long tokensPerMinute;
+        long tokensPerDay;
+        int budgetReservePercent;
+        int maxRetries;
+        int inlineCandidates;
+        double confidenceTruncateBelow;
+        double confidenceSuppressBelow;
+        int cascadeTimeoutMs;
+        int cacheMaxKb;
+        int diskCacheMaxMb;
+        double nearDuplicateThreshold;
+        int keepAlivePingSeconds;
+        int proxyPort;
+        int connectTimeoutMs;
+        int readTimeoutMs;
+        int writeTimeoutMs;
+        int maxIdleConnections;
+        int keepAliveMinutes;
+        try {
+            triggerDelayMs = Integer.parseInt(triggerDelayField.getText());
+            maxSuggestionLength = Integer.parseInt(maxLengthField.getText());
+            healthCheckSeconds = Integer.parseInt(healthCheckField.getText());
+            inlineTimeoutFactor = Double.parseDouble(inlineTimeoutFactorField.getText());
+            inlineTimeoutMinMs = Integer.parseInt(inlineTimeoutMinField.getText());
+            inlineTimeoutMaxMs = Integer.parseInt(inlineTimeoutMaxField.getText());
+            editTimeoutMs = Integer.parseInt(editTimeoutField.getText());
+            hedgePercentile = Double.parseDouble(hedgePercentileField.getText());
+            circuitFailureThreshold = Integer.parseInt(circuitFailureThresholdField.getText());
+            circuitOpenSeconds = Integer.parseInt(circuitOpenSecondsField.getText());
+            maxConcurrency = Math.max(1, Integer.parseInt(maxConcurrencyField.getText()));
+            tokensPerMinute = Math.max(0, Long.parseLong(tokensPerMinuteField.getText()));
+            tokensPerDay = Math.max(0, Long.parseLong(tokensPerDayField.getText()));
+            budgetReservePercent = Math.max(0, Math.min(100, Integer.parseInt(budgetReservePercentField.getText())));
+            maxRetries = Math.max(0, Integer.parseInt(maxRetriesField.getText()));
+            inlineCandidates = Math.max(1, Math.min(8, Integer.parseInt(inlineCandidatesField.getText())));
+            confidenceTruncateBelow = Math.max(0, Math.min(1, Double.parseDouble(confidenceTruncateField.getText())));
+            confidenceSuppressBelow = Math.max(0, Math.min(1, Double.parseDouble(confidenceSuppressField.getText())));
+            cascadeTimeoutMs = Math.max(1, Integer.parseInt(cascadeTimeoutField.getText()));
+            cacheMaxKb = Integer.parseInt(cacheMaxKbField.getText());
+            diskCacheMaxMb = Integer.parseInt(diskCacheMaxMbField.getText());
+            nearDuplicateThreshold = Double.parseDouble(nearDuplicateThresholdField.getText());
+            keepAlivePingSeconds = Integer.parseInt(keepAlivePingField.getText());
+            proxyPort = Integer.parseInt(proxyPortField.getText());
+            connectTimeoutMs = Integer.parseInt(connectTimeoutField.getText());
+            readTimeoutMs = Integer.parseInt(readTimeoutField.getText());
+            writeTimeoutMs = Integer.parseInt(writeTimeoutField.getText());
+            maxIdleConnections = Integer.parseInt(maxIdleConnectionsField.getText());
+            keepAliveMinutes = Integer.parseInt(keepAliveMinutesField.getText());
         } catch (NumberFormatException e) {
             throw new ConfigurationException("请输入有效的数字");
         }
+        if (inlineTimeoutMinMs > inlineTimeoutMaxMs) {
+            throw new ConfigurationException("内联超时下限不能大于上限");
+        }
+        if (cacheMaxKb < 0) {
+            throw new ConfigurationException("缓存容量不能为负数");
+        }
+        if (diskCacheMaxMb < 0) {
+            throw new ConfigurationException("磁盘缓存上限不能为负数");
+        }
+        if (!isFraction(hedgePercentile)) {
+            throw new ConfigurationException("对冲阈值必须在 0 到 1 之间");
+        }
+        if (!isFraction(nearDuplicateThreshold)) {
+            throw new ConfigurationException("相似度阈值必须在 0 到 1 之间");
+        }
+
+        String previousTarget = warmUpTarget();
+        boolean transportModified = isTransportModified(settings);
+        boolean diskCacheTurnedOn = diskCacheCheckBox.isSelected() && !settings.diskCacheEnabled;
+        boolean concurrencyModified = maxConcurrency != settings.maxConcurrency;
+        settings.apiUrl = apiUrlField.getText();
+        settings.apiKey = apiKeyField.getText();
+        settings.model = modelField.getText();
+        if (selectedBackend() != null) {
+            settings.backendId = selectedBackend().getId();
+        }
+        settings.endpointUrls = endpointUrlsField.getText().trim();
+        settings.routingPolicy = RoutingPolicy.values()[routingComboBox.getSelectedIndex()];
+        settings.streamingEnabled = streamingCheckBox.isSelected();
+        settings.multiCaretEnabled = multiCaretCheckBox.isSelected();
+        settings.confidenceGateEnabled = confidenceGateCheckBox.isSelected();
+        settings.modelRoutes = modelRoutesField.getText().trim();
+        settings.cascadeEnabled = cascadeCheckBox.isSelected();
+        settings.gzipRequestBody = gzipRequestCheckBox.isSelected();
+        settings.hedgingEnabled = hedgingCheckBox.isSelected();
+        settings.circuitBreakerEnabled = circuitBreakerCheckBox.isSelected();
+        settings.localFallbackEnabled = localFallbackCheckBox.isSelected();
+        settings.adaptiveConcurrency = adaptiveConcurrencyCheckBox.isSelected();
+        settings.promptLayout = PromptLayout.values()[promptLayoutComboBox.getSelectedIndex()];
+        settings.diskCacheEnabled = diskCacheCheckBox.isSelected();
+        settings.nearDuplicateEnabled = nearDuplicateCheckBox.isSelected();
+        settings.warmUpEnabled = warmUpCheckBox.isSelected();
+        settings.triggerDelayMs = triggerDelayMs;
+        settings.maxSuggestionLength = maxSuggestionLength;
+        settings.healthCheckSeconds = healthCheckSeconds;
+        settings.inlineTimeoutFactor = inlineTimeoutFactor;
+        settings.inlineTimeoutMinMs = inlineTimeoutMinMs;
+        settings.inlineTimeoutMaxMs = inlineTimeoutMaxMs;
+        settings.editTimeoutMs = editTimeoutMs;
+        settings.hedgePercentile = hedgePercentile;
+        settings.circuitFailureThreshold = circuitFailureThreshold;
+        settings.circuitOpenSeconds = circuitOpenSeconds;
+        settings.maxConcurrency = maxConcurrency;
+        settings.tokensPerMinute = tokensPerMinute;
+        settings.tokensPerDay = tokensPerDay;
+        settings.budgetReservePercent = budgetReservePercent;
+        settings.maxRetries = maxRetries;
+        settings.inlineCandidates = inlineCandidates;
+        settings.confidenceTruncateBelow = confidenceTruncateBelow;
+        settings.confidenceSuppressBelow = confidenceSuppressBelow;
+        settings.cascadeTimeoutMs = cascadeTimeoutMs;
+        settings.cacheMaxKb = cacheMaxKb;
+        settings.diskCacheMaxMb = diskCacheMaxMb;
+        settings.nearDuplicateThreshold = nearDuplicateThreshold;
+        settings.keepAlivePingSeconds = keepAlivePingSeconds;
+        if (transportModified) {
+            settings.proxyPort = proxyPort;
+            settings.connectTimeoutMs = connectTimeoutMs;
+            settings.readTimeoutMs = readTimeoutMs;
+            settings.writeTimeoutMs = writeTimeoutMs;
+            settings.maxIdleConnections = maxIdleConnections;
+            settings.keepAliveMinutes = keepAliveMinutes;
+        }
+        LLMClient.setCacheMaxBytes(settings.cacheMaxKb * 1024L);
+
+        // 磁盘缓存原本只在项目打开时加载，刚开启时为已打开的项目补一次
+        if (diskCacheTurnedOn) {
+            for (Project project : ProjectManager.getInstance().getOpenProjects()) {
+                PersistentCompletionCache.getInstance(project).loadInBackground();
+            }
+        }
+
+        // 传输参数变化后重建连接池；连接目标变化后重新预热
+        if (transportModified) {
+            settings.transportProfile = TransportProfile.values()[transportComboBox.getSelectedIndex()];
+            settings.proxyHost = proxyHostField.getText();
+            settings.unixSocketPath = unixSocketPathField.getText();
+            HttpTransport.reconfigure();
+        } else if (concurrencyModified) {
+            // OkHttp 每个主机的并发上限按最大并发数设置，否则超出的请求在 OkHttp 中按到达顺序排队
+            HttpTransport.resizeDispatcher();
+        }
+        if (transportModified || !previousTarget.equals(warmUpTarget())) {
+            ConnectionWarmer.warmUpInBackground();
+        }
+    }
+
+    // 预热针对内联补全路由的地址和模型，两者任一变化都要重新预热
+    private static String warmUpTarget() {
+        ModelRoute route = ModelRouter.inline();
+        return route.identity() + "@" + route.effectiveUrl();
+    }
+
+    private static boolean isFraction(double value) {
+        return value >= 0 && value <= 1;
     }
 
     @Override
@@ -134,7 +574,54 @@ public class LLMSettingsConfigurable implements Configurable {
         apiUrlField.setText(settings.apiUrl);
         apiKeyField.setText(settings.apiKey);
         modelField.setText(settings.model);
+        backendComboBox.setSelectedIndex(indexOfBackend(settings.backendId));
+        endpointUrlsField.setText(settings.endpointUrls);
+        routingComboBox.setSelectedIndex(settings.routingPolicy.ordinal());
+        healthCheckField.setText(String.valueOf(settings.healthCheckSeconds));
         triggerDelayField.setText(String.valueOf(settings.triggerDelayMs));
         maxLengthField.setText(String.valueOf(settings.maxSuggestionLength));
+        inlineTimeoutFactorField.setText(String.valueOf(settings.inlineTimeoutFactor));
+        inlineTimeoutMinField.setText(String.valueOf(settings.inlineTimeoutMinMs));
+        inlineTimeoutMaxField.setText(String.valueOf(settings.inlineTimeoutMaxMs));
+        editTimeoutField.setText(String.valueOf(settings.editTimeoutMs));
+        hedgingCheckBox.setSelected(settings.hedgingEnabled);
+        hedgePercentileField.setText(String.valueOf(settings.hedgePercentile));
+        circuitBreakerCheckBox.setSelected(settings.circuitBreakerEnabled);
+        circuitFailureThresholdField.setText(String.valueOf(settings.circuitFailureThreshold));
+        circuitOpenSecondsField.setText(String.valueOf(settings.circuitOpenSeconds));
+        localFallbackCheckBox.setSelected(settings.localFallbackEnabled);
+        adaptiveConcurrencyCheckBox.setSelected(settings.adaptiveConcurrency);
+        maxConcurrencyField.setText(String.valueOf(settings.maxConcurrency));
+        tokensPerMinuteField.setText(String.valueOf(settings.tokensPerMinute));
+        tokensPerDayField.setText(String.valueOf(settings.tokensPerDay));
+        budgetReservePercentField.setText(String.valueOf(settings.budgetReservePercent));
+        maxRetriesField.setText(String.valueOf(settings.maxRetries));
+        streamingCheckBox.setSelected(settings.streamingEnabled);
+        multiCaretCheckBox.setSelected(settings.multiCaretEnabled);
+        inlineCandidatesField.setText(String.valueOf(settings.inlineCandidates));
+        confidenceGateCheckBox.setSelected(settings.confidenceGateEnabled);
+        confidenceTruncateField.setText(String.valueOf(settings.confidenceTruncateBelow));
+        confidenceSuppressField.setText(String.valueOf(settings.confidenceSuppressBelow));
+        modelRoutesField.setText(settings.modelRoutes);
+        cascadeCheckBox.setSelected(settings.cascadeEnabled);
+        cascadeTimeoutField.setText(String.valueOf(settings.cascadeTimeoutMs));
+        gzipRequestCheckBox.setSelected(settings.gzipRequestBody);
+        promptLayoutComboBox.setSelectedIndex(settings.promptLayout.ordinal());
+        cacheMaxKbField.setText(String.valueOf(settings.cacheMaxKb));
+        diskCacheCheckBox.setSelected(settings.diskCacheEnabled);
+        diskCacheMaxMbField.setText(String.valueOf(settings.diskCacheMaxMb));
+        nearDuplicateCheckBox.setSelected(settings.nearDuplicateEnabled);
+        nearDuplicateThresholdField.setText(String.valueOf(settings.nearDuplicateThreshold));
+        transportComboBox.setSelectedIndex(settings.transportProfile.ordinal());
+        proxyHostField.setText(settings.proxyHost);
+        proxyPortField.setText(String.valueOf(settings.proxyPort));
+        unixSocketPathField.setText(settings.unixSocketPath);
+        connectTimeoutField.setText(String.valueOf(settings.connectTimeoutMs));
+        readTimeoutField.setText(String.valueOf(settings.readTimeoutMs));
+        writeTimeoutField.setText(String.valueOf(settings.writeTimeoutMs));
+        maxIdleConnectionsField.setText(String.valueOf(settings.maxIdleConnections));
+        keepAliveMinutesField.setText(String.valueOf(settings.keepAliveMinutes));
+        warmUpCheckBox.setSelected(settings.warmUpEnabled);
+        keepAlivePingField.setText(String.valueOf(settings.keepAlivePingSeconds));
     }
 }
@@ -2,16 +2,25 @@ package com.system.demo.LLM;
 
 import com.intellij.openapi.actionSystem.DataContext;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Caret;
+import com.intellij.openapi.editor.CaretModel;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.actionSystem.TypedActionHandler;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
+import com.system.demo.LLM.cache.CodeRegion;
+import com.system.demo.LLM.cache.Fingerprint;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
 /**
  * 补全策略，模仿IDEA行为
@@ -20,7 +29,14 @@ public class LLMTypedActionHandler implements TypedActionHandler {
     private final TypedActionHandler originalHandler;
 
     private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private volatile ScheduledFuture<?> pendingTask = null;
+    // 多光标补全时最多合并的光标数，超出的光标不显示建议
+    private static final int MAX_BATCH_CARETS = 8;
+    // 稳定前缀布局的"光标附近"：起始行按 16 行对齐，至少包含光标前 8 行，最多约 2000 字符
+    private static final int ALIGN_LINES = 16;
+    private static final int MIN_PRECEDING_LINES = 8;
+    private static final int MAX_ALIGNED_CHARS = 2000;
+    // 补全结果直接回调到 EDT 上显示
+    private static final Executor EDT = runnable -> ApplicationManager.getApplication().invokeLater(runnable);
     private volatile String lastContextKey = "";
 
     public LLMTypedActionHandler(TypedActionHandler originalHandler) {
@@ -40,70 +56,261 @@ public class LLMTypedActionHandler implements TypedActionHandler {
         }
 
         // 立即清除旧的建议，提高响应性
-        LLMInlineCompletionManager.removeInlineSuggestion();
+        LLMInlineCompletionManager.removeInlineSuggestion(editor);
 
-        // 取消之前的延迟任务
-        if (pendingTask != null && !pendingTask.isDone()) {
-            pendingTask.cancel(false);
-        }
+        // 取消该编辑器上之前的请求（防抖任务、上下文读取、HTTP 调用、结果处理）
+        CancellationToken token = CancellationToken.startFor(editor);
+        // 截止时间从按键开始计时，包含防抖延迟；过期的建议不再显示
+        Deadline deadline = DeadlinePolicy.forOperation(LLMOperation.INLINE);
 
         // 使用防抖机制：延迟执行补全请求
         long triggerDelay = LLMSettings.getInstance().triggerDelayMs;
-        pendingTask = scheduler.schedule(() -> {
+        ScheduledFuture<?> pendingTask = scheduler.schedule(() -> {
+            if (isCancelled(token, "debounce")) return;
             ApplicationManager.getApplication().executeOnPooledThread(() -> {
+                if (isCancelled(token, "debounce") || isExpired(deadline, "debounce")) return;
                 // 安全读取 PSI 和光标
                 final String[] fileContentHolder = new String[1];
-                final int[] offsetHolder = new int[1];
+                final int[][] offsetsHolder = new int[1][];
                 final String[] fileTypeHolder = new String[1];
+                final String[] filePathHolder = new String[1];
                 final boolean[] shouldTriggerHolder = new boolean[1];
+                final CodeRegion[][] regionsHolder = new CodeRegion[1][];
 
                 ApplicationManager.getApplication().runReadAction(() -> {
-                    PsiFile psiFile = PsiDocumentManager.getInstance(editor.getProject())
-                            .getPsiFile(editor.getDocument());
+                    if (token.isCancelled() || editor.isDisposed()) return;
+                    Document document = editor.getDocument();
+                    PsiFile psiFile = PsiDocumentManager.getInstance(editor.getProject()).getPsiFile(document);
                     if (psiFile == null) return;
 
-                    fileContentHolder[0] = psiFile.getText();
-                    offsetHolder[0] = editor.getCaretModel().getOffset();
+                    // 使用文档文本而不是 PSI 文本：刚输入的字符可能还没有提交到 PSI，偏移量也以文档为准
+                    fileContentHolder[0] = document.getText();
+                    offsetsHolder[0] = caretOffsets(editor);
                     fileTypeHolder[0] = psiFile.getFileType().getName().toLowerCase();
+                    filePathHolder[0] = psiFile.getVirtualFile() != null ? psiFile.getVirtualFile().getPath() : psiFile.getName();
 
-                    // 在新的读操作中判断是否应该触发
+                    // 在新的读操作中判断是否应该触发（按主光标判断，多光标输入的是同一个字符）
                     shouldTriggerHolder[0] = shouldTriggerCompletion(editor, charTyped, psiFile);
+
+                    // 与上下文同一时刻记录每个光标所在的方法/类区域的指纹，读取缓存时据此校验
+                    if (shouldTriggerHolder[0]) {
+                        int[] offsets = offsetsHolder[0];
+                        regionsHolder[0] = new CodeRegion[offsets.length];
+                        for (int i = 0; i < offsets.length; i++) {
+                            regionsHolder[0][i] = CodeRegion.enclosing(document.getCharsSequence(), offsets[i]);
+                        }
+                    }
                 });
 
                 if (!shouldTriggerHolder[0]) return;
+                if (isCancelled(token, "context") || isExpired(deadline, "context")) return;
 
                 String fileContent = fileContentHolder[0];
                 if (fileContent == null) return;
 
-                int offset = offsetHolder[0];
+                int[] offsets = offsetsHolder[0];
                 String fileType = fileTypeHolder[0] != null ? fileTypeHolder[0] : "java";
 
-                // 使用优化的上下文获取策略
-                EnhancedContextInfo contextInfo = getEnhancedContext(fileContent, offset, editor);
+                // 使用优化的上下文获取策略，每个光标一份
+                EnhancedContextInfo[] contexts = new EnhancedContextInfo[offsets.length];
+                StringBuilder contextKey = new StringBuilder();
+                for (int i = 0; i < offsets.length; i++) {
+                    contexts[i] = getEnhancedContext(fileContent, offsets[i], editor);
+                    contextKey.append(generateContextKey(contexts[i], charTyped)).append('|');
+                }
 
                 // 检查上下文是否变化，避免重复请求
-                String currentContextKey = generateContextKey(contextInfo, charTyped);
-                if (currentContextKey.equals(lastContextKey)) {
+                String currentContextKey = contextKey.toString();
+                if (currentContextKey.equals(lastContextKey)) return;
+                lastContextKey = currentContextKey;
+                // 请求被取消时允许之后以相同上下文重新请求
+                token.onCancel(() -> {
+                    if (currentContextKey.equals(lastContextKey)) lastContextKey = "";
+                });
+
+                LLMSettings settings = LLMSettings.getInstance();
+                boolean prefixStable = settings.promptLayout == PromptLayout.PREFIX_STABLE;
+                // 同一文件的补全共享服务端的 Prompt 缓存
+                String promptCacheKey = prefixStable ? "inline-" + Long.toHexString(Fingerprint.of(filePathHolder[0])) : null;
+                List<LLMRequest> requests = new ArrayList<>(offsets.length);
+                for (int i = 0; i < offsets.length; i++) {
+                    // 构建优化的Prompt
+                    String prompt = prefixStable
+                            ? buildPrefixStablePrompt(contexts[i], fileType)
+                            : buildEnhancedPrompt(contexts[i], charTyped, fileType);
+                    requests.add(LLMRequest.builder(LLMOperation.INLINE, prompt)
+                            .cacheContext(contexts[i].getCacheKey())
+                            .project(editor.getProject())
+                            .regionFingerprint(regionsHolder[0][i].fingerprint)
+                            .cursorPrefix(contexts[i].beforeCursor)
+                            // 按显示需要生成：行中只补全当前行，空行补全一段
+                            .profile(RequestProfile.forInline(contexts[i].beforeCursor),
+                                    RequestProfile.indentOf(contexts[i].currentLine))
+                            .cancellation(token)
+                            .deadline(deadline)
+                            .promptCacheKey(promptCacheKey)
+                            // 单光标时按 token 概率截断或隐藏没把握的建议
+                            .logprobs(settings.confidenceGateEnabled && offsets.length == 1)
+                            .build());
+                }
+
+                if (requests.size() > 1) {
+                    // 多光标：所有光标的补全合并为一次请求，结果分别显示在各自的光标处
+                    LLMClient.queryBatchAsync(requests, EDT).thenAccept(suggestions -> {
+                        if (isCancelled(token, "result") || isExpired(deadline, "result")) return;
+                        List<String> cleaned = new ArrayList<>(suggestions.size());
+                        for (int i = 0; i < suggestions.size(); i++) {
+                            cleaned.add(cleanSuggestion(suggestions.get(i), contexts[i]));
+                        }
+                        LLMInlineCompletionManager.showInlineSuggestions(editor, offsets, cleaned);
+                    });
                     return;
                 }
-                lastContextKey = currentContextKey;
 
-                // 构建优化的Prompt
-                String prompt = buildEnhancedPrompt(contextInfo, charTyped, fileType);
-
-                // 不取消之前的请求，让它们自然完成（减少中断）
-                String suggestion = LLMClient.queryLLM(prompt, contextInfo.getCacheKey());
-                if (suggestion != null && !suggestion.isEmpty()) {
-                    suggestion = cleanSuggestion(suggestion, contextInfo);
-                    if (!suggestion.isEmpty()) {
-                        String finalSuggestion = suggestion;
-                        ApplicationManager.getApplication().invokeLater(() -> {
-                            LLMInlineCompletionManager.showInlineSuggestion(editor, finalSuggestion);
-                        });
-                    }
+                LLMRequest request = requests.get(0);
+                EnhancedContextInfo contextInfo = contexts[0];
+                // 级联：强模型与快速建议同时请求，结果在 EDT 上与快速建议比较
+                Cascade cascade = startCascade(editor, request, contextInfo, regionsHolder[0][0].fingerprint);
+                // 多候选：输入时只请求一个建议，建议生成完毕后再按这个请求在后台取回其余候选
+                UnaryOperator<String> cleaner = s -> cleanSuggestion(s, contextInfo);
+
+                if (settings.streamingEnabled) {
+                    // 流式模式：首个 token 到达即显示，随后原地追加
+                    LLMClient.streamAsync(request, settings.maxSuggestionLength, partial -> {
+                        if (token.isCancelled()) return;
+                        String cleaned = cleanPartialSuggestion(partial, contextInfo);
+                        if (!cleaned.isEmpty()) {
+                            ApplicationManager.getApplication().invokeLater(() -> {
+                                if (!token.isCancelled() && (cascade == null || !cascade.strongShown)) {
+                                    LLMInlineCompletionManager.updateInlineSuggestion(editor, cleaned);
+                                    if (cascade != null) cascade.fastShown = true;
+                                }
+                            });
+                        }
+                    }, EDT).thenAccept(suggestion -> {
+                        if (isCancelled(token, "result") || isExpired(deadline, "result")) return;
+                        if (cascade != null && cascade.strongShown) return;
+                        if (suggestion == null) {
+                            // 置信度过低被抑制（或调用失败）：已经显示的部分也不再保留
+                            LLMInlineCompletionManager.removeInlineSuggestion(editor);
+                            if (cascade != null) cascade.fastShown = false;
+                            return;
+                        }
+                        String finalSuggestion = cleanSuggestion(suggestion, contextInfo);
+                        if (!finalSuggestion.isEmpty()) {
+                            LLMInlineCompletionManager.updateInlineSuggestion(editor, finalSuggestion);
+                            if (cascade != null) cascade.fastShown = true;
+                            LLMInlineCompletionManager.prefetchCandidates(editor, request, finalSuggestion, cleaner);
+                        }
+                    });
+                    return;
                 }
+
+                // 不阻塞线程等待网络，结果在 EDT 上处理
+                LLMClient.queryAsync(request, EDT).thenAccept(suggestion -> {
+                    if (suggestion == null || suggestion.isEmpty() || isCancelled(token, "result")
+                            || isExpired(deadline, "result")) return;
+                    if (cascade != null && cascade.strongShown) return;
+                    String finalSuggestion = cleanSuggestion(suggestion, contextInfo);
+                    if (!finalSuggestion.isEmpty()) {
+                        LLMInlineCompletionManager.showInlineSuggestion(editor, finalSuggestion);
+                        if (cascade != null) cascade.fastShown = true;
+                        LLMInlineCompletionManager.prefetchCandidates(editor, request, finalSuggestion, cleaner);
+                    }
+                });
             });
         }, triggerDelay, TimeUnit.MILLISECONDS);
+        token.onCancel(() -> {
+            if (pendingTask.cancel(false)) {
+                LLMMetrics.increment("cancelled.debounce");
+            }
+        });
+    }
+
+    /**
+     * 快速模型与强模型的级联（见 {@link ModelRouter}）：两者同时请求，先到的快速建议立即显示；
+     * 强模型在用户操作（继续输入、采纳、取消）之前返回且本地打分不低于当前建议时原地替换，
+     * 快速模型还没有显示建议时直接显示强模型的建议，之后到达的快速建议不再覆盖它。
+     * 状态只在 EDT 上读写。
+     */
+    private static final class Cascade {
+        boolean fastShown;
+        boolean strongShown;
+    }
+
+    // 发起级联的强模型请求；未开启级联、没有 cascade 规则或强模型就是快速模型时返回 null
+    private Cascade startCascade(Editor editor, LLMRequest fast, EnhancedContextInfo contextInfo, long regionFingerprint) {
+        ModelRoute strongRoute = ModelRouter.cascade();
+        if (strongRoute == null || strongRoute.identity().equals(fast.route.identity())) return null;
+        LLMSettings settings = LLMSettings.getInstance();
+        // 强模型只取一个建议，不与输入时的内联补全争抢并发名额，区域指纹与快速请求相同
+        LLMRequest strong = LLMRequest.builder(LLMOperation.INLINE, fast.prompt)
+                .cacheContext(fast.cacheContext)
+                .project(fast.project)
+                .regionFingerprint(regionFingerprint)
+                .cursorPrefix(fast.cursorPrefix)
+                .profile(fast.profile, RequestProfile.indentOf(contextInfo.currentLine))
+                .cancellation(fast.cancellation)
+                .deadline(Deadline.after(settings.cascadeTimeoutMs))
+                .priority(RequestPriority.PREFETCH)
+                .promptCacheKey(fast.promptCacheKey)
+                .logprobs(settings.confidenceGateEnabled)
+                .route(strongRoute)
+                .build();
+
+        Cascade cascade = new Cascade();
+        LLMMetrics.increment("cascade.started");
+        LLMClient.queryAsync(strong, EDT).thenAccept(suggestion -> {
+            if (suggestion == null || isCancelled(fast.cancellation, "cascade")) return;
+            String strongSuggestion = cleanSuggestion(suggestion, contextInfo);
+            if (strongSuggestion.isEmpty()) return;
+            if (!cascade.fastShown) {
+                cascade.strongShown = true;
+                LLMInlineCompletionManager.updateInlineSuggestion(editor, strongSuggestion);
+                LLMMetrics.increment("cascade.shown");
+                return;
+            }
+            String current = LLMInlineCompletionManager.currentSuggestion(editor);
+            if (current == null) {
+                // 快速建议已被采纳或取消
+                LLMMetrics.increment("cascade.late");
+            } else if (current.equals(strongSuggestion) || !CandidateRanker.prefers(strong, strongSuggestion, current)) {
+                LLMMetrics.increment("cascade.kept");
+            } else {
+                cascade.strongShown = true;
+                LLMInlineCompletionManager.replaceSuggestion(editor, strongSuggestion);
+                LLMMetrics.increment("cascade.replaced");
+            }
+        });
+        return cascade;
+    }
+
+    // 多光标时每个光标（最多 MAX_BATCH_CARETS 个）各取一份上下文，否则只取主光标
+    private static int[] caretOffsets(Editor editor) {
+        CaretModel caretModel = editor.getCaretModel();
+        if (!LLMSettings.getInstance().multiCaretEnabled || caretModel.getCaretCount() == 1) {
+            return new int[]{caretModel.getOffset()};
+        }
+        List<Caret> carets = caretModel.getAllCarets();
+        int[] offsets = new int[Math.min(carets.size(), MAX_BATCH_CARETS)];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = carets.get(i).getOffset();
+        }
+        return offsets;
+    }
+
+    // 检查令牌，已取消时按阶段计数（统计快速输入时省下的工作量）
+    private static boolean isCancelled(CancellationToken token, String stage) {
+        if (!token.isCancelled()) return false;
+        LLMMetrics.increment("cancelled." + stage);
+        return true;
+    }
+
+    // 检查截止时间，已过期时按阶段计数
+    private static boolean isExpired(Deadline deadline, String stage) {
+        if (!deadline.isExpired()) return false;
+        LLMMetrics.increment("deadline." + stage);
+        return true;
     }
 
     /**
@@ -247,7 +454,10 @@ public class LLMTypedActionHandler implements TypedActionHandler {
                 beforeCursor,
                 afterCursor,
                 currentLine,
-                methodContext + "\n" + classContext
+                methodContext,
+                classContext,
+                extractMethodSignature(fileContent, offset),
+                alignedPrecedingLines(fileContent, lineStart)
         );
     }
 
@@ -278,6 +488,41 @@ public class LLMTypedActionHandler implements TypedActionHandler {
         return content.substring(classStart, classHeaderEnd);
     }
 
+    // 光标所在的最内层代码块的首行（到 '{' 为止，在方法体内直接输入时就是方法签名），在块内输入时不变
+    private String extractMethodSignature(String content, int offset) {
+        int balance = 0;
+        for (int i = offset - 1; i >= 0; i--) {
+            char c = content.charAt(i);
+            if (c == '}') balance++;
+            else if (c == '{' && balance-- == 0) {
+                int sigStart = content.lastIndexOf('\n', i - 1) + 1;
+                return content.substring(sigStart, i + 1).trim();
+            }
+        }
+        return "";
+    }
+
+    /**
+     * 稳定前缀布局的"光标附近"：当前行之前的若干整行，起始行按 {@link #ALIGN_LINES} 对齐，
+     * 在同一行内输入时完全不变，换行时只在末尾追加，越过对齐边界时才整体后移。
+     * 总长超过 {@link #MAX_ALIGNED_CHARS} 时从前面去掉整行
+     */
+    private static String alignedPrecedingLines(String content, int lineStart) {
+        int line = 0;
+        for (int i = 0; i < lineStart; i++) {
+            if (content.charAt(i) == '\n') line++;
+        }
+        int firstLine = Math.max(0, (line - MIN_PRECEDING_LINES) / ALIGN_LINES * ALIGN_LINES);
+        int start = 0;
+        for (int skipped = 0; skipped < firstLine; skipped++) {
+            start = content.indexOf('\n', start) + 1;
+        }
+        while (lineStart - start > MAX_ALIGNED_CHARS) {
+            start = content.indexOf('\n', start) + 1;
+        }
+        return content.substring(start, lineStart);
+    }
+
 
     /**
      * 构建Prompt
@@ -290,12 +535,30 @@ public class LLMTypedActionHandler implements TypedActionHandler {
                         "==== 当前上下文（光标附近） ====\n%s\n\n" +
                         "==== 方法上下文 ====\n%s\n\n" +
                         "==== 当前行 ====\n%s|\n\n" +
-                        "请仅输出 **应在光标处插入的补全内容**，不要重复上下文或添加解释。",
+                        "请仅输出 **应在光标处插入的补全内容**，不要使用 markdown 代码块，不要重复上下文或添加解释。",
                 fileType.toUpperCase(), fileType, lastChar,
-                context.previousLines, context.methodContext, context.beforeCursor
+                context.previousLines, context.methodContext + "\n" + context.classContext, context.beforeCursor
         );
     }
 
+    /**
+     * 稳定前缀的 Prompt：按从稳定到易变排列（说明 → 类声明 → 方法签名 → 光标之前的整行 → 当前行），
+     * 在同一行内连续输入时只有当前行变化，换行时光标之前的整行只在末尾追加，服务端可以复用前面部分的 Prompt/KV 缓存。
+     * 不使用随光标滑动的字符窗口和截到光标处的方法体，也不包含最后输入的字符（它已经在当前行里）。
+     */
+    private String buildPrefixStablePrompt(EnhancedContextInfo context, String fileType) {
+        StringBuilder prompt = new StringBuilder(256 + context.classContext.length()
+                + context.methodSignature.length() + context.alignedLines.length() + context.beforeCursor.length());
+        prompt.append("你是一个专业的 ").append(fileType.toUpperCase()).append(" 代码补全助手。\n")
+                .append("当前文件类型: ").append(fileType).append('\n')
+                .append("请仅输出 **应在光标处插入的补全内容**，不要使用 markdown 代码块，不要重复上下文或添加解释。\n\n")
+                .append("==== 类上下文 ====\n").append(context.classContext).append("\n\n")
+                .append("==== 方法签名 ====\n").append(context.methodSignature).append("\n\n")
+                .append("==== 当前上下文（光标之前的整行） ====\n").append(context.alignedLines).append('\n')
+                .append("==== 当前行 ====\n").append(context.beforeCursor).append('|');
+        return prompt.toString();
+    }
+
 
     private String generateContextKey(EnhancedContextInfo context, char lastChar) {
         // 使用更精细的上下文键
@@ -312,6 +575,14 @@ public class LLMTypedActionHandler implements TypedActionHandler {
         suggestion = suggestion.replaceAll("```", "");
         suggestion = suggestion.trim();
 
+        // 单行补全只保留第一行代码（对话模型不带换行停止序列，可能继续输出后面的行）
+        if (RequestProfile.forInline(context.beforeCursor) == RequestProfile.SINGLE_LINE) {
+            int newline = suggestion.indexOf('\n');
+            if (newline >= 0) {
+                suggestion = suggestion.substring(0, newline).trim();
+            }
+        }
+
         // 去除与当前行重复的内容
         if (suggestion.startsWith(context.beforeCursor)) {
             suggestion = suggestion.substring(context.beforeCursor.length()).trim();
@@ -326,6 +597,21 @@ public class LLMTypedActionHandler implements TypedActionHandler {
         return suggestion;
     }
 
+    /**
+     * 清理流式中间结果：还在输出代码块标记或重复当前行时先不显示
+     */
+    private String cleanPartialSuggestion(String partial, EnhancedContextInfo context) {
+        String trimmed = partial.trim();
+        if (trimmed.startsWith("```") && trimmed.indexOf('\n') < 0) {
+            return "";
+        }
+        String before = context.beforeCursor.trim();
+        if (!before.isEmpty() && before.startsWith(trimmed)) {
+            return "";
+        }
+        return cleanSuggestion(partial, context);
+    }
+
     /**
      * 增强的上下文信息
      */
@@ -335,14 +621,20 @@ public class LLMTypedActionHandler implements TypedActionHandler {
         final String afterCursor;      // 当前行光标后内容
         final String currentLine;      // 整行内容
         final String methodContext;    // 方法级上下文
+        final String classContext;     // 类声明
+        final String methodSignature;  // 方法签名行（稳定前缀布局）
+        final String alignedLines;     // 按行块对齐的前几行（稳定前缀布局）
 
-        EnhancedContextInfo(String previousLines, String beforeCursor,
-                            String afterCursor, String currentLine, String methodContext) {
+        EnhancedContextInfo(String previousLines, String beforeCursor, String afterCursor, String currentLine,
+                            String methodContext, String classContext, String methodSignature, String alignedLines) {
             this.previousLines = previousLines;
             this.beforeCursor = beforeCursor;
             this.afterCursor = afterCursor;
             this.currentLine = currentLine;
             this.methodContext = methodContext;
+            this.classContext = classContext;
+            this.methodSignature = methodSignature;
+            this.alignedLines = alignedLines;
         }
 
         String getCacheKey() {
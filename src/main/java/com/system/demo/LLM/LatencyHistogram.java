@@ -0,0 +1,96 @@
+package com.system.demo.LLM;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 线程安全的延迟直方图（毫秒），按指数分桶，用于统计 p50/p95 等分位数
+ */
+public class LatencyHistogram {
+    // 桶上界按 1.25 倍递增，覆盖 1ms ~ 约 2 分钟
+    private static final double GROWTH = 1.25;
+    private static final long[] BOUNDS = createBounds();
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    private static long[] createBounds() {
+        long[] bounds = new long[56];
+        double bound = 1;
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = (long) Math.ceil(bound);
+            bound *= GROWTH;
+        }
+        return bounds;
+    }
+
+    private static int bucketOf(long millis) {
+        int lo = 0;
+        int hi = BOUNDS.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (BOUNDS[mid] < millis) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    public void record(long millis) {
+        if (millis < 0) millis = 0;
+        buckets.incrementAndGet(bucketOf(millis));
+        count.incrementAndGet();
+        sum.addAndGet(millis);
+        long prev;
+        while ((prev = max.get()) < millis && !max.compareAndSet(prev, millis)) {
+            // 重试直到写入最大值
+        }
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long mean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * 返回分位数的桶上界（毫秒），无样本时返回 -1
+     */
+    public long percentile(double p) {
+        long n = count.get();
+        if (n == 0) return -1;
+        long rank = (long) Math.ceil(n * Math.min(1.0, Math.max(0.0, p)));
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return i < BOUNDS.length ? Math.min(BOUNDS[i], max.get()) : max.get();
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        if (count() == 0) return "无数据";
+        return "n=" + count() + " avg=" + mean() + "ms p50=" + percentile(0.5) +
+                "ms p95=" + percentile(0.95) + "ms max=" + max() + "ms";
+    }
+}
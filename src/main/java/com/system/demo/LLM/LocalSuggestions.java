@@ -0,0 +1,61 @@
+package com.system.demo.LLM;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 不调用模型的本地建议（熔断打开、token 预算不足或被限流时的兜底）：补全光标前正在输入的标识符，
+ * 候选来自 Prompt 中的上下文代码，取出现次数最多的、以已输入部分开头的标识符，
+ * 同样次数时取较短的。只处理内联补全，已输入不足 {@link #MIN_PREFIX} 个字符时不建议。
+ */
+final class LocalSuggestions {
+    private static final int MIN_PREFIX = 2;
+
+    private LocalSuggestions() {
+    }
+
+    /**
+     * 返回需要追加在光标后的文本，没有合适的候选时返回 null
+     */
+    @Nullable
+    static String suggest(LLMRequest request) {
+        if (request.operation != LLMOperation.INLINE || request.cursorPrefix == null) return null;
+        String typed = trailingIdentifier(request.cursorPrefix);
+        if (typed.length() < MIN_PREFIX) return null;
+
+        Map<String, Integer> counts = new HashMap<>();
+        String text = request.prompt;
+        int i = 0;
+        while (i < text.length()) {
+            if (!Character.isJavaIdentifierStart(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && Character.isJavaIdentifierPart(text.charAt(i))) i++;
+            if (i - start > typed.length() && text.startsWith(typed, start)) {
+                counts.merge(text.substring(start, i), 1, Integer::sum);
+            }
+        }
+
+        String best = null;
+        int bestCount = 0;
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            int count = e.getValue();
+            if (count > bestCount || (count == bestCount && e.getKey().length() < best.length())) {
+                best = e.getKey();
+                bestCount = count;
+            }
+        }
+        return best != null ? best.substring(typed.length()) : null;
+    }
+
+    private static String trailingIdentifier(String line) {
+        int start = line.length();
+        while (start > 0 && Character.isJavaIdentifierPart(line.charAt(start - 1))) start--;
+        if (start == line.length() || !Character.isJavaIdentifierStart(line.charAt(start))) return "";
+        return line.substring(start);
+    }
+}
@@ -0,0 +1,100 @@
+package com.system.demo.LLM;
+
+import com.system.demo.LLM.backend.LLMBackend;
+import com.system.demo.LLM.backend.LLMBackends;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 一条模型路由规则（见 {@link ModelRouter}）：按操作类型和 Prompt 长度匹配，
+ * 指定后端、模型和服务地址，未指定的部分沿用全局设置
+ */
+public final class ModelRoute {
+    // 不匹配任何规则时使用全局设置
+    public static final ModelRoute DEFAULT = new ModelRoute("默认", null, 0, null, null, null);
+
+    // 规则原文，用于统计
+    final String rule;
+    // 为 null 时匹配所有操作
+    @Nullable
+    final LLMOperation operation;
+    // Prompt 字符数上限，0 为不限
+    final int maxPromptChars;
+    @Nullable
+    public final String backendId;
+    @Nullable
+    public final String model;
+    @Nullable
+    public final String url;
+
+    ModelRoute(String rule, @Nullable LLMOperation operation, int maxPromptChars,
+               @Nullable String backendId, @Nullable String model, @Nullable String url) {
+        this.rule = rule;
+        this.operation = operation;
+        this.maxPromptChars = maxPromptChars;
+        this.backendId = backendId;
+        this.model = model;
+        this.url = url;
+    }
+
+    boolean matches(LLMOperation operation, int promptChars) {
+        return (this.operation == null || this.operation == operation)
+                && (maxPromptChars <= 0 || promptChars <= maxPromptChars);
+    }
+
+    /**
+     * 本路由使用的后端，未指定时为设置中选中的后端
+     */
+    @NotNull
+    public LLMBackend backend() {
+        return backendId != null ? LLMBackends.find(backendId) : LLMBackends.current();
+    }
+
+    /**
+     * 是否沿用设置中的后端（此时地址、其他服务地址和模型都随全局设置）
+     */
+    public boolean usesDefaultBackend() {
+        return backendId == null || backendId.equals(LLMSettings.getInstance().backendId);
+    }
+
+    /**
+     * 路由指定的服务地址：换了后端且未指定地址时为该后端的默认地址，沿用设置中的地址时返回 null
+     */
+    @Nullable
+    public String urlFor(@NotNull LLMBackend backend) {
+        if (url != null) return url;
+        return usesDefaultBackend() ? null : backend.getDefaultUrl();
+    }
+
+    /**
+     * 本路由实际请求的地址：路由指定的地址，否则为设置中的地址（未填写时为后端默认地址）
+     */
+    @NotNull
+    public String effectiveUrl() {
+        LLMBackend backend = backend();
+        String routed = urlFor(backend);
+        return routed != null ? routed : LLMBackends.effectiveUrl(backend);
+    }
+
+    /**
+     * 请求使用的模型：未指定时沿用设置中的模型，换了后端时为该后端的默认模型
+     */
+    @NotNull
+    public String modelOr(@NotNull String defaultModel) {
+        if (model != null) return model;
+        String global = LLMSettings.getInstance().model;
+        return usesDefaultBackend() && global != null && !global.isEmpty() ? global : defaultModel;
+    }
+
+    // 缓存键中的后端和模型，不同路由的结果互不命中
+    String identity() {
+        LLMSettings settings = LLMSettings.getInstance();
+        return (backendId != null ? backendId : settings.backendId) + "/"
+                + (model != null ? model : usesDefaultBackend() ? settings.model : "");
+    }
+
+    @Override
+    public String toString() {
+        return rule;
+    }
+}
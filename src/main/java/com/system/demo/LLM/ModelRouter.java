@@ -0,0 +1,198 @@
+package com.system.demo.LLM;
+
+import com.system.demo.LLM.backend.LLMBackend;
+import com.system.demo.LLM.backend.LLMBackends;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 按任务和上下文大小选择模型（设置页"模型路由"）：
+ * <ul>
+ *   <li>规则用分号或换行分隔，每条为 {@code 操作 [maxChars=N] [backend=id] [model=名称] [url=地址]}，
+ *   操作为 inline / improve / comment / *，如
+ *   {@code inline maxChars=6000 backend=ollama model=qwen2.5-coder:1.5b; improve model=gpt-4o}</li>
+ *   <li>按顺序取第一条匹配的规则（操作相同且 Prompt 字符数不超过 maxChars），都不匹配时使用全局设置</li>
+ *   <li>{@code cascade ...} 规则指定级联的强模型：开启级联后内联补全先显示路由到的快速模型的结果，
+ *   强模型在用户操作之前返回且本地打分不差时原地替换</li>
+ * </ul>
+ * 各规则的命中次数和级联的结果记录到 {@link LLMMetrics}。
+ */
+public final class ModelRouter {
+    private static final String CASCADE = "cascade";
+    private static final String ANY = "*";
+
+    private static volatile String parsedText = "";
+    private static volatile Routes routes = new Routes(Collections.emptyList(), null);
+
+    private ModelRouter() {
+    }
+
+    /**
+     * 请求使用的路由，没有匹配的规则时为 {@link ModelRoute#DEFAULT}
+     */
+    @NotNull
+    public static ModelRoute route(@NotNull LLMOperation operation, int promptChars) {
+        ModelRoute route = match(operation, promptChars);
+        LLMMetrics.increment("route." + route.rule);
+        return route;
+    }
+
+    /**
+     * 输入时的内联补全使用的路由（按最短的 Prompt 匹配），连接预热和保活针对它的后端和模型；不计入路由统计
+     */
+    @NotNull
+    public static ModelRoute inline() {
+        return match(LLMOperation.INLINE, 0);
+    }
+
+    private static ModelRoute match(LLMOperation operation, int promptChars) {
+        for (ModelRoute route : routes().rules) {
+            if (route.matches(operation, promptChars)) {
+                return route;
+            }
+        }
+        return ModelRoute.DEFAULT;
+    }
+
+    /**
+     * 级联的强模型：未开启级联或没有 cascade 规则时返回 null
+     */
+    @Nullable
+    public static ModelRoute cascade() {
+        return LLMSettings.getInstance().cascadeEnabled ? routes().cascade : null;
+    }
+
+    // 设置变化后重新解析；设置文件被改坏时忽略全部规则
+    private static Routes routes() {
+        String text = LLMSettings.getInstance().modelRoutes;
+        if (text == null) text = "";
+        if (!text.equals(parsedText)) {
+            synchronized (ModelRouter.class) {
+                if (!text.equals(parsedText)) {
+                    Routes parsed;
+                    try {
+                        parsed = parse(text);
+                    } catch (IllegalArgumentException e) {
+                        parsed = new Routes(Collections.emptyList(), null);
+                    }
+                    routes = parsed;
+                    parsedText = text;
+                }
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * 检查规则文本（设置页保存前调用）
+     *
+     * @throws IllegalArgumentException 规则格式错误，消息说明是哪一条
+     */
+    public static void validate(@NotNull String text) {
+        parse(text);
+    }
+
+    private static Routes parse(String text) {
+        List<ModelRoute> rules = new ArrayList<>();
+        ModelRoute cascade = null;
+        String[] lines = text.split("[;\\n]");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty()) continue;
+            String[] parts = line.split("\\s+");
+            String operationName = parts[0].toLowerCase(Locale.ROOT);
+            boolean isCascade = operationName.equals(CASCADE);
+            LLMOperation operation = null;
+            if (!isCascade && !operationName.equals(ANY)) {
+                try {
+                    operation = LLMOperation.valueOf(operationName.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw invalid(i, "未知的操作 " + parts[0]);
+                }
+            }
+
+            int maxChars = 0;
+            String backendId = null;
+            String model = null;
+            String url = null;
+            for (int j = 1; j < parts.length; j++) {
+                int eq = parts[j].indexOf('=');
+                if (eq <= 0) throw invalid(i, "应为 键=值：" + parts[j]);
+                String key = parts[j].substring(0, eq);
+                String value = parts[j].substring(eq + 1);
+                switch (key) {
+                    case "maxChars":
+                        try {
+                            maxChars = Integer.parseInt(value);
+                        } catch (NumberFormatException e) {
+                            throw invalid(i, "maxChars 应为数字");
+                        }
+                        break;
+                    case "backend":
+                        if (!isRegistered(value)) throw invalid(i, "未知的后端 " + value);
+                        backendId = value;
+                        break;
+                    case "model":
+                        model = value;
+                        break;
+                    case "url":
+                        url = value;
+                        break;
+                    default:
+                        throw invalid(i, "未知的参数 " + key);
+                }
+            }
+
+            ModelRoute route = new ModelRoute(line, operation, maxChars, backendId, model, url);
+            if (isCascade) {
+                cascade = route;
+            } else {
+                rules.add(route);
+            }
+        }
+        return new Routes(Collections.unmodifiableList(rules), cascade);
+    }
+
+    private static boolean isRegistered(String backendId) {
+        for (LLMBackend backend : LLMBackends.all()) {
+            if (backend.getId().equals(backendId)) return true;
+        }
+        return false;
+    }
+
+    private static IllegalArgumentException invalid(int index, String message) {
+        return new IllegalArgumentException("模型路由第 " + (index + 1) + " 条规则：" + message);
+    }
+
+    public static String getStats() {
+        Routes current = routes();
+        StringBuilder sb = new StringBuilder(String.format("模型路由: %d 条规则", current.rules.size()));
+        for (ModelRoute route : current.rules) {
+            sb.append(String.format("%n  %s: %d", route.rule, LLMMetrics.get("route." + route.rule)));
+        }
+        sb.append(String.format("%n  %s: %d", ModelRoute.DEFAULT.rule, LLMMetrics.get("route." + ModelRoute.DEFAULT.rule)));
+        if (current.cascade != null) {
+            sb.append(String.format("%n级联 (%s, %s): 发起 %d, 替换 %d, 保留快速建议 %d, 直接显示 %d, 返回时已操作 %d",
+                    current.cascade.rule, LLMSettings.getInstance().cascadeEnabled ? "开启" : "关闭",
+                    LLMMetrics.get("cascade.started"), LLMMetrics.get("cascade.replaced"), LLMMetrics.get("cascade.kept"),
+                    LLMMetrics.get("cascade.shown"), LLMMetrics.get("cascade.late")));
+        }
+        return sb.toString();
+    }
+
+    private static final class Routes {
+        final List<ModelRoute> rules;
+        @Nullable
+        final ModelRoute cascade;
+
+        Routes(List<ModelRoute> rules, @Nullable ModelRoute cascade) {
+            this.rules = rules;
+            this.cascade = cascade;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.system.demo.LLM;
+
+/**
+ * 内联补全 Prompt 的段落顺序
+ */
+public enum PromptLayout {
+    // 原始顺序：输入字符、文件类型在前，上下文在后
+    CLASSIC("原始顺序"),
+    // 从最稳定到最易变：说明 → 类 → 方法 → 光标附近 → 当前行。
+    // 连续输入时 Prompt 前缀保持不变，服务端的 Prompt 缓存（OpenAI）/ KV 缓存（llama.cpp cache_prompt）可以复用
+    PREFIX_STABLE("稳定前缀（复用服务端 Prompt 缓存）");
+
+    private final String displayName;
+
+    PromptLayout(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
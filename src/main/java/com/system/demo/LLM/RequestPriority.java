@@ -0,0 +1,37 @@
+package com.system.demo.LLM;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 请求的优先级，由 {@link RequestScheduler} 按此顺序分配并发名额（声明顺序即优先顺序）
+ */
+public enum RequestPriority {
+    // 用户主动触发的操作（改进/注释选中代码），等待结果
+    EXPLICIT("显式操作"),
+    // 输入时的内联补全，随时可能被下一次按键作废
+    INLINE("内联补全"),
+    // 预先请求、不一定会显示的补全
+    PREFETCH("预取");
+
+    private final String displayName;
+
+    RequestPriority(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * 推测性的请求：没有名额时直接放弃，而不是排队
+     */
+    public boolean isSpeculative() {
+        return this != EXPLICIT;
+    }
+
+    @NotNull
+    public static RequestPriority forOperation(@NotNull LLMOperation operation) {
+        return operation == LLMOperation.INLINE ? INLINE : EXPLICIT;
+    }
+}
@@ -0,0 +1,121 @@
+package com.system.demo.LLM;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 各调用场景的生成参数：最大 token 数、停止序列、温度。
+ * 内联补全的 token 上限按实际显示的长度（maxSuggestionLength）换算，不再生成 2000 个 token 再截断到 150 个字符。
+ */
+public enum RequestProfile {
+    // 光标在行中：只补全当前行，遇到换行即停止
+    SINGLE_LINE(0.2),
+    // 光标在空行：补全一段代码，遇到外层代码块的右括号即停止
+    MULTI_LINE(0.2),
+    // 改进选中代码：输出与选区大小相当的代码
+    EDIT(0.3),
+    // 为选中代码添加注释
+    COMMENT(0.3);
+
+    private static final int EDIT_MAX_TOKENS = 2000;
+    private static final int SINGLE_LINE_MAX_TOKENS = 64;
+    // 代码大约 3 个字符一个 token，另留少量余量
+    private static final int CHARS_PER_TOKEN = 3;
+    private static final int TOKEN_MARGIN = 8;
+    // 多候选时的最低温度：温度太低时各候选几乎相同
+    private static final double CANDIDATE_TEMPERATURE = 0.6;
+
+    private final double temperature;
+
+    RequestProfile(double temperature) {
+        this.temperature = temperature;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * 一次生成 candidates 个候选时使用的温度
+     */
+    public double getTemperature(int candidates) {
+        return candidates > 1 ? Math.max(temperature, CANDIDATE_TEMPERATURE) : temperature;
+    }
+
+    public int getMaxTokens() {
+        switch (this) {
+            case SINGLE_LINE:
+                return Math.min(SINGLE_LINE_MAX_TOKENS, inlineMaxTokens());
+            case MULTI_LINE:
+                return inlineMaxTokens();
+            default:
+                return EDIT_MAX_TOKENS;
+        }
+    }
+
+    private static int inlineMaxTokens() {
+        return LLMSettings.getInstance().maxSuggestionLength / CHARS_PER_TOKEN + TOKEN_MARGIN;
+    }
+
+    /**
+     * 停止序列（停止序列本身不包含在结果中）
+     *
+     * @param indent 光标所在行的缩进
+     */
+    @NotNull
+    public List<String> stopSequences(@NotNull String indent) {
+        switch (this) {
+            case SINGLE_LINE:
+                return Collections.singletonList("\n");
+            case MULTI_LINE:
+                // 缩进回到外层并出现右括号，说明当前代码块已经结束；连续空行也不再继续
+                List<String> stops = new ArrayList<>(2);
+                stops.add("\n" + outerIndent(indent) + "}");
+                stops.add("\n\n\n");
+                return stops;
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 内联补全：光标前只有空白（新的一行）时补全整段，否则只补全当前行
+     */
+    @NotNull
+    public static RequestProfile forInline(@NotNull String beforeCursor) {
+        return beforeCursor.trim().isEmpty() ? MULTI_LINE : SINGLE_LINE;
+    }
+
+    @NotNull
+    public static RequestProfile forOperation(@NotNull LLMOperation operation) {
+        switch (operation) {
+            case IMPROVE:
+                return EDIT;
+            case COMMENT:
+                return COMMENT;
+            default:
+                return SINGLE_LINE;
+        }
+    }
+
+    /**
+     * 行首的缩进
+     */
+    @NotNull
+    public static String indentOf(@NotNull String line) {
+        int end = 0;
+        while (end < line.length() && (line.charAt(end) == ' ' || line.charAt(end) == '\t')) end++;
+        return line.substring(0, end);
+    }
+
+    // 外层缩进：去掉一级（一个制表符或最多 4 个空格）
+    private static String outerIndent(String indent) {
+        if (indent.endsWith("\t")) {
+            return indent.substring(0, indent.length() - 1);
+        }
+        return indent.substring(0, Math.max(0, indent.length() - 4));
+    }
+}
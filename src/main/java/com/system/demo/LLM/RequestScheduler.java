@@ -0,0 +1,229 @@
+package com.system.demo.LLM;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按 {@link RequestPriority} 分配并发名额（上限由 {@link ConcurrencyLimiter} 给出）：
+ * <ul>
+ *   <li>有空余名额、且没有同级或更高优先级的请求在排队时立即获得</li>
+ *   <li>名额已满时，如果有优先级更低的请求正在进行，取消其中最低、最新的一个（抢占），自己排队接替它的名额</li>
+ *   <li>无可抢占时，推测性的请求（内联补全、预取）直接放弃，显式操作排队；队列按优先级、同级按到达顺序</li>
+ * </ul>
+ * 排队期间取消或截止时间到达的请求以 null 结束。每个优先级的排队等待时间分别记录（立即获得的记为 0）。
+ */
+final class RequestScheduler {
+    private static final String QUEUE_WAIT_PREFIX = "scheduler.wait.";
+
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparingInt((Waiter w) -> w.request.priority.ordinal()).thenComparingLong(w -> w.sequence));
+    private static final List<Permit> running = new ArrayList<>();
+
+    private RequestScheduler() {
+    }
+
+    /**
+     * 获取一个并发名额，放弃、取消或排队超时时以 null 完成
+     *
+     * @param cancellation 本次调用的取消令牌，被抢占时取消
+     */
+    static CompletableFuture<Permit> acquire(LLMRequest request, CancellationToken cancellation) {
+        Waiter waiter;
+        Permit victim;
+        synchronized (RequestScheduler.class) {
+            if (running.size() < ConcurrencyLimiter.currentLimit() && !hasQueued(request.priority)) {
+                recordWait(request.priority, 0);
+                return CompletableFuture.completedFuture(grant(request, cancellation));
+            }
+            victim = preemptible(request.priority);
+            if (victim == null && request.priority.isSpeculative()) {
+                LLMMetrics.increment("scheduler.shed." + metricName(request.priority));
+                return CompletableFuture.completedFuture(null);
+            }
+            if (victim != null) {
+                victim.preempted = true;
+            }
+            waiter = new Waiter(request, cancellation);
+            queue.add(waiter);
+            LLMMetrics.increment("scheduler.queued." + metricName(request.priority));
+        }
+        if (victim != null) {
+            LLMMetrics.increment("scheduler.preempted." + metricName(victim.priority));
+            victim.cancellation.cancel();
+        }
+
+        cancellation.onCancel(() -> abandon(waiter));
+        if (request.deadline.isFinite()) {
+            ScheduledFuture<?> timer = AppExecutorUtil.getAppScheduledExecutorService()
+                    .schedule(() -> abandon(waiter), request.deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+            waiter.result.whenComplete((permit, error) -> timer.cancel(false));
+        }
+        return waiter.result;
+    }
+
+    /**
+     * 非阻塞获取（对冲请求用）：只在有空余名额且没有请求排队时成功
+     */
+    @Nullable
+    static Permit tryAcquire(LLMRequest request, CancellationToken cancellation) {
+        synchronized (RequestScheduler.class) {
+            if (running.size() < ConcurrencyLimiter.currentLimit() && queue.isEmpty()) {
+                return grant(request, cancellation);
+            }
+            return null;
+        }
+    }
+
+    // 调用方持有类锁
+    private static boolean hasQueued(RequestPriority priority) {
+        Waiter head = queue.peek();
+        return head != null && head.request.priority.ordinal() <= priority.ordinal();
+    }
+
+    // 调用方持有类锁；优先级最低的请求中最新开始的一个（已做的工作最少），不重复抢占
+    private static Permit preemptible(RequestPriority priority) {
+        Permit victim = null;
+        for (Permit permit : running) {
+            if (permit.preempted || permit.priority.ordinal() <= priority.ordinal()) continue;
+            if (victim == null || permit.priority.ordinal() > victim.priority.ordinal()
+                    || (permit.priority == victim.priority && permit.grantedNanos > victim.grantedNanos)) {
+                victim = permit;
+            }
+        }
+        return victim;
+    }
+
+    // 调用方持有类锁
+    private static Permit grant(LLMRequest request, CancellationToken cancellation) {
+        Permit permit = new Permit(request, cancellation, running.size() + 1 >= ConcurrencyLimiter.currentLimit());
+        running.add(permit);
+        return permit;
+    }
+
+    private static void abandon(Waiter waiter) {
+        boolean removed;
+        synchronized (RequestScheduler.class) {
+            removed = queue.remove(waiter);
+        }
+        if (removed) {
+            waiter.result.complete(null);
+        }
+    }
+
+    private static void release(Permit permit) {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (RequestScheduler.class) {
+            running.remove(permit);
+            while (!queue.isEmpty() && running.size() < ConcurrencyLimiter.currentLimit()) {
+                Waiter waiter = queue.poll();
+                waiter.permit = grant(waiter.request, waiter.cancellation);
+                granted.add(waiter);
+            }
+        }
+        for (Waiter waiter : granted) {
+            recordWait(waiter.request.priority, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waiter.enqueuedNanos));
+            if (!waiter.result.complete(waiter.permit)) {
+                // 已经放弃（取消或超时）
+                waiter.permit.release();
+            }
+        }
+    }
+
+    private static void recordWait(RequestPriority priority, long millis) {
+        LLMMetrics.recordLatency(QUEUE_WAIT_PREFIX + metricName(priority), millis);
+    }
+
+    private static String metricName(RequestPriority priority) {
+        return priority.name().toLowerCase();
+    }
+
+    static synchronized String getStats() {
+        StringBuilder sb = new StringBuilder(String.format("调度: 进行中 %d, 排队 %d", running.size(), queue.size()));
+        for (RequestPriority priority : RequestPriority.values()) {
+            String name = metricName(priority);
+            sb.append(String.format("%n  %s: 排队等待 %s, 排队 %d, 放弃 %d, 被抢占 %d", priority.getDisplayName(),
+                    LLMMetrics.latency(QUEUE_WAIT_PREFIX + name), LLMMetrics.get("scheduler.queued." + name),
+                    LLMMetrics.get("scheduler.shed." + name), LLMMetrics.get("scheduler.preempted." + name)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 一个并发名额，调用结束时以 {@link #release(boolean, boolean)} 或 {@link #release()} 归还（只有第一次有效）
+     */
+    static final class Permit {
+        private final LLMOperation operation;
+        private final RequestPriority priority;
+        private final CancellationToken cancellation;
+        private final long grantedNanos = System.nanoTime();
+        // 获取时并发已达上限
+        private final boolean saturated;
+        private boolean preempted;
+        private boolean released;
+
+        private Permit(LLMRequest request, CancellationToken cancellation, boolean saturated) {
+            this.operation = request.operation;
+            this.priority = request.priority;
+            this.cancellation = cancellation;
+            this.saturated = saturated;
+        }
+
+        /**
+         * 归还并把结果报告给 {@link ConcurrencyLimiter}
+         *
+         * @param success    是否拿到了结果（只有成功的调用计入延迟）
+         * @param overloaded 是否超时（视为服务过载）
+         */
+        void release(boolean success, boolean overloaded) {
+            if (!markReleased()) return;
+            if (overloaded) {
+                ConcurrencyLimiter.onOverload();
+            } else if (success) {
+                ConcurrencyLimiter.onSample(operation,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - grantedNanos), saturated);
+            }
+            RequestScheduler.release(this);
+        }
+
+        /**
+         * 归还，不报告结果
+         */
+        void release() {
+            if (markReleased()) {
+                RequestScheduler.release(this);
+            }
+        }
+
+        private boolean markReleased() {
+            synchronized (RequestScheduler.class) {
+                if (released) return false;
+                released = true;
+                return true;
+            }
+        }
+    }
+
+    private static final class Waiter {
+        final LLMRequest request;
+        final CancellationToken cancellation;
+        final long sequence = RequestScheduler.sequence.incrementAndGet();
+        final long enqueuedNanos = System.nanoTime();
+        final CompletableFuture<Permit> result = new CompletableFuture<>();
+        Permit permit;
+
+        Waiter(LLMRequest request, CancellationToken cancellation) {
+            this.request = request;
+            this.cancellation = cancellation;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.system.demo.LLM;
+
+import java.util.Arrays;
+
+/**
+ * 最近 N 次延迟（毫秒）的环形窗口，用于按近期延迟自动调整超时、对冲阈值等参数。
+ * 与 {@link LatencyHistogram} 不同，旧样本会被新样本覆盖，分位数只反映最近的情况。
+ */
+public class RollingLatencyWindow {
+    private final long[] samples;
+    private final int minSamples;
+    private int count;
+    private int next;
+
+    /**
+     * @param minSamples 样本数少于该值时分位数视为未知
+     */
+    public RollingLatencyWindow(int capacity, int minSamples) {
+        this.samples = new long[capacity];
+        this.minSamples = minSamples;
+    }
+
+    public synchronized void record(long millis) {
+        samples[next] = Math.max(0, millis);
+        next = (next + 1) % samples.length;
+        if (count < samples.length) count++;
+    }
+
+    /**
+     * 分位数（毫秒），样本不足时返回 -1
+     */
+    public long percentile(double p) {
+        long[] sorted;
+        synchronized (this) {
+            if (count < minSamples) return -1;
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(sorted.length * Math.min(1.0, Math.max(0.0, p)));
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+}
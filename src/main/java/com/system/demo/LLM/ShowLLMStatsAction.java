@@ -0,0 +1,43 @@
+package com.system.demo.LLM;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.ui.Messages;
+import com.system.demo.LLM.cache.PersistentCompletionCache;
+import com.system.demo.LLM.transport.EndpointPool;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 显示补全延迟、缓存等运行统计（用于调优）
+ */
+public class ShowLLMStatsAction extends AnAction {
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        StringBuilder report = new StringBuilder();
+        report.append(LLMClient.getCacheStats()).append('\n');
+        report.append(LLMClient.getNearDuplicateStats()).append('\n');
+        report.append(String.format("进行中请求: %d, 已发起 %d, 合并 %d%n", LLMClient.getInFlightCount(),
+                LLMMetrics.get("inflight.started"), LLMMetrics.get("inflight.coalesced")));
+        report.append(DeadlinePolicy.getStats()).append('\n');
+        report.append(Hedging.getStats()).append('\n');
+        report.append(EndpointPool.getStats()).append('\n');
+        report.append(CircuitBreaker.getStats()).append('\n');
+        report.append(ConcurrencyLimiter.getStats()).append('\n');
+        report.append(RequestScheduler.getStats()).append('\n');
+        report.append(TokenBudget.getStats()).append('\n');
+        report.append(CandidateRanker.getStats()).append('\n');
+        report.append(ConfidenceGate.getStats()).append('\n');
+        report.append(ModelRouter.getStats()).append('\n');
+        long promptTokens = LLMMetrics.get(LLMMetrics.PROMPT_TOKENS);
+        long cachedTokens = LLMMetrics.get(LLMMetrics.PROMPT_CACHED_TOKENS);
+        report.append(String.format("Prompt 缓存: 命中 %d / %d token (%.1f%%), 预填充 %s%n", cachedTokens, promptTokens,
+                promptTokens == 0 ? 0.0 : cachedTokens * 100.0 / promptTokens,
+                LLMMetrics.latency(LLMMetrics.PROMPT_PREFILL)));
+        if (e.getProject() != null) {
+            report.append(PersistentCompletionCache.getInstance(e.getProject()).getStats()).append('\n');
+        }
+        report.append('\n').append(LLMMetrics.report());
+        Messages.showInfoMessage(e.getProject(), report.toString(), "AI Completion Stats");
+    }
+}
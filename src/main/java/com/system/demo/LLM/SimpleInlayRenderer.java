@@ -12,23 +12,44 @@ import java.awt.*;
  * 灰色 inline 渲染器
  */
 public class SimpleInlayRenderer implements EditorCustomElementRenderer {
-    private final String text;
+    private String text;
+    // 显示在建议之后的提示（如多候选的 "1/3"），不属于建议文本
+    private String hint = "";
 
     public SimpleInlayRenderer(String text) {
         this.text = text;
     }
 
+    public String getText() {
+        return text;
+    }
+
+    // 流式补全时更新显示内容，调用方需随后 updateSize()
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    // 调用方需随后 updateSize()
+    public void setHint(String hint) {
+        this.hint = hint != null ? hint : "";
+    }
+
     @Override
     public int calcWidthInPixels(@NotNull Inlay inlay) {
         FontMetrics fm = inlay.getEditor().getContentComponent()
                 .getFontMetrics(inlay.getEditor().getColorsScheme().getFont(EditorFontType.PLAIN));
-        return fm.stringWidth(text);
+        return fm.stringWidth(text + hint);
     }
 
     @Override
     public void paint(@NotNull Inlay inlay, @NotNull Graphics g,
                       @NotNull Rectangle targetRegion, @NotNull TextAttributes textAttributes) {
         g.setColor(Color.GRAY);
-        g.drawString(text, targetRegion.x, targetRegion.y + g.getFontMetrics().getAscent());
+        int baseline = targetRegion.y + g.getFontMetrics().getAscent();
+        g.drawString(text, targetRegion.x, baseline);
+        if (!hint.isEmpty()) {
+            g.setColor(Color.LIGHT_GRAY);
+            g.drawString(hint, targetRegion.x + g.getFontMetrics().stringWidth(text), baseline);
+        }
     }
 }
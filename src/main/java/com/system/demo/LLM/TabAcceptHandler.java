@@ -19,7 +19,7 @@ public class TabAcceptHandler extends EditorActionHandler {
     @Override
     public void execute(@NotNull Editor editor, DataContext dataContext) {
 
-        if (LLMInlineCompletionManager.hasSuggestion()) {
+        if (LLMInlineCompletionManager.hasSuggestion(editor)) {
             LLMInlineCompletionManager.accept(editor);
         } else if (originalHandler != null) {
             originalHandler.execute(editor, dataContext);
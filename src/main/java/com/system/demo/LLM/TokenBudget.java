@@ -0,0 +1,211 @@
+package com.system.demo.LLM;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * token 预算、服务端限流和用量统计：
+ * <ul>
+ *   <li>每分钟、每天两个令牌桶（容量即预算，按时间匀速补充，0 为不限）。每次 HTTP 调用发出前按估算
+ *   （Prompt 字符数 / 4 + 最大生成 token 数 × 候选数）预扣，结束后按服务端返回的实际用量多退少补</li>
+ *   <li>任一桶剩余不足 {@link LLMSettings#budgetReservePercent}% 时推测性请求（内联补全）不再发出，改用本地建议，
+ *   剩下的预算留给显式操作；桶用完后显式操作也不再发出</li>
+ *   <li>服务端返回 429（或带 Retry-After 的 503）时暂停到 Retry-After 指定的时间：期间推测性请求不发，
+ *   显式操作等暂停结束再发</li>
+ * </ul>
+ * 实际用量按功能（操作类型）和项目分别累计，供统计面板查看。
+ */
+public final class TokenBudget {
+    private static final long MINUTE_MILLIS = 60_000;
+    private static final long DAY_MILLIS = 24 * 60 * 60_000L;
+    // Retry-After 过大（或服务端异常）时最多暂停这么久
+    private static final long MAX_PAUSE_MILLIS = 5 * 60_000;
+    private static final String NO_PROJECT = "(无项目)";
+
+    private static final Bucket perMinute = new Bucket(MINUTE_MILLIS);
+    private static final Bucket perDay = new Bucket(DAY_MILLIS);
+    private static final Map<LLMOperation, Usage> byOperation = new EnumMap<>(LLMOperation.class);
+    private static final Map<String, Usage> byProject = new TreeMap<>();
+    private static LocalDate today = LocalDate.now();
+    private static long todayTokens;
+    private static long rateLimitedUntil;
+
+    private TokenBudget() {
+    }
+
+    /**
+     * 按字符数估算 token 数（代码和英文约 4 个字符一个 token）
+     */
+    public static long estimateTokens(@Nullable String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+
+    /**
+     * 是否允许发出请求：检查限流暂停和剩余预算，不扣预算（发出时由 {@link #reserve} 预扣）
+     */
+    public static synchronized boolean allowRequest(LLMRequest request) {
+        long now = System.currentTimeMillis();
+        boolean speculative = request.priority.isSpeculative();
+        if (speculative && now < rateLimitedUntil) return false;
+
+        LLMSettings settings = LLMSettings.getInstance();
+        double remaining = Math.min(perMinute.remaining(settings.tokensPerMinute, now),
+                perDay.remaining(settings.tokensPerDay, now));
+        if (remaining <= 0) return false;
+        return !speculative || remaining * 100 >= settings.budgetReservePercent;
+    }
+
+    /**
+     * 发起一次调用前预扣估算的用量（多候选按候选数计生成部分），调用结束后必须 {@link Reservation#settle}
+     */
+    public static Reservation reserve(LLMRequest request) {
+        long estimate = estimateTokens(request.prompt) + (long) request.maxTokens * request.candidates;
+        charge(estimate);
+        return new Reservation(request, estimate);
+    }
+
+    /**
+     * 服务端要求暂停（429 / Retry-After），暂停期间推测性请求直接放弃
+     */
+    public static synchronized void rateLimited(long pauseMillis) {
+        long until = System.currentTimeMillis() + Math.min(pauseMillis, MAX_PAUSE_MILLIS);
+        rateLimitedUntil = Math.max(rateLimitedUntil, until);
+        LLMMetrics.increment("budget.ratelimited");
+    }
+
+    /**
+     * 距离限流暂停结束的时间，未暂停时为 0
+     */
+    public static synchronized long rateLimitRemainingMillis() {
+        return Math.max(0, rateLimitedUntil - System.currentTimeMillis());
+    }
+
+    private static synchronized void charge(long tokens) {
+        LLMSettings settings = LLMSettings.getInstance();
+        long now = System.currentTimeMillis();
+        perMinute.take(tokens, settings.tokensPerMinute, now);
+        perDay.take(tokens, settings.tokensPerDay, now);
+    }
+
+    private static synchronized void record(LLMRequest request, long promptTokens, long completionTokens) {
+        if (promptTokens + completionTokens == 0) return;
+        byOperation.computeIfAbsent(request.operation, k -> new Usage()).add(promptTokens, completionTokens);
+        String project = request.project != null ? request.project.getName() : NO_PROJECT;
+        byProject.computeIfAbsent(project, k -> new Usage()).add(promptTokens, completionTokens);
+
+        LocalDate date = LocalDate.now();
+        if (!date.equals(today)) {
+            today = date;
+            todayTokens = 0;
+        }
+        todayTokens += promptTokens + completionTokens;
+    }
+
+    public static synchronized String getStats() {
+        LLMSettings settings = LLMSettings.getInstance();
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder(String.format("Token 预算: 每分钟 %s, 每天 %s, 今日已用 %d",
+                perMinute.describe(settings.tokensPerMinute, now), perDay.describe(settings.tokensPerDay, now),
+                todayTokens));
+        if (now < rateLimitedUntil) {
+            sb.append(String.format(", 限流暂停 %ds", (rateLimitedUntil - now + 999) / 1000));
+        }
+        sb.append(String.format("%n  限流 %d 次, 重试 %d, 未发出 %d（其中本地建议 %d）", LLMMetrics.get("budget.ratelimited"),
+                LLMMetrics.get("http.retry"), LLMMetrics.get("budget.rejected"), LLMMetrics.get("budget.fallback")));
+        for (Map.Entry<LLMOperation, Usage> e : byOperation.entrySet()) {
+            sb.append(String.format("%n  %s: %s", e.getKey(), e.getValue()));
+        }
+        for (Map.Entry<String, Usage> e : byProject.entrySet()) {
+            sb.append(String.format("%n  项目 %s: %s", e.getKey(), e.getValue()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 一次调用预扣的用量
+     */
+    public static final class Reservation {
+        private final LLMRequest request;
+        private final long estimate;
+        private boolean settled;
+
+        private Reservation(LLMRequest request, long estimate) {
+            this.request = request;
+            this.estimate = estimate;
+        }
+
+        /**
+         * 按实际用量结算（只有第一次有效）：请求没有被服务端处理时传 0，退回全部预扣
+         */
+        public void settle(long promptTokens, long completionTokens) {
+            synchronized (TokenBudget.class) {
+                if (settled) return;
+                settled = true;
+                charge(promptTokens + completionTokens - estimate);
+                record(request, promptTokens, completionTokens);
+            }
+        }
+    }
+
+    // 令牌桶：容量为一个周期的预算，按 容量/周期 的速度补充；实际用量超出预扣时可以短暂为负
+    private static final class Bucket {
+        private final long periodMillis;
+        private double tokens;
+        // 0 表示还没有使用过，第一次使用时装满
+        private long refilledAt;
+
+        Bucket(long periodMillis) {
+            this.periodMillis = periodMillis;
+        }
+
+        private void refill(long capacity, long now) {
+            if (refilledAt == 0) {
+                tokens = capacity;
+            } else {
+                tokens += (double) (now - refilledAt) * capacity / periodMillis;
+            }
+            tokens = Math.min(tokens, capacity);
+            refilledAt = now;
+        }
+
+        void take(long amount, long capacity, long now) {
+            if (capacity <= 0) return;
+            refill(capacity, now);
+            tokens -= amount;
+        }
+
+        // 剩余比例，不限时为 1
+        double remaining(long capacity, long now) {
+            if (capacity <= 0) return 1;
+            refill(capacity, now);
+            return tokens / capacity;
+        }
+
+        String describe(long capacity, long now) {
+            if (capacity <= 0) return "不限";
+            refill(capacity, now);
+            return String.format("剩余 %d / %d", Math.round(tokens), capacity);
+        }
+    }
+
+    private static final class Usage {
+        long requests;
+        long promptTokens;
+        long completionTokens;
+
+        void add(long prompt, long completion) {
+            requests++;
+            promptTokens += prompt;
+            completionTokens += completion;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("请求 %d, Prompt %d, 生成 %d token", requests, promptTokens, completionTokens);
+        }
+    }
+}
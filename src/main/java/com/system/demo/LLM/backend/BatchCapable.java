@@ -0,0 +1,27 @@
+package com.system.demo.LLM.backend;
+
+import com.system.demo.LLM.LLMRequest;
+import com.system.demo.LLM.LLMSettings;
+import okio.BufferedSource;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 能一次提交多个 Prompt（Prompt 数组）的 {@link HttpLLMBackend} 实现此接口：
+ * 批量补全和多候选不必多路复用 Prompt，由 {@link HttpLLMBackend#completeBatch} 按 instanceof 判断
+ */
+public interface BatchCapable {
+    /**
+     * 写出批量请求体（Prompt 数组），combined 提供合并后的生成参数
+     */
+    void writeBatchBody(JsonWriter json, List<LLMRequest> requests, LLMRequest combined, LLMSettings settings)
+            throws IOException;
+
+    /**
+     * 从批量响应中取出每个 Prompt 的补全文本，顺序与请求一致；响应中的 token 用量写入 usage
+     */
+    @Nullable
+    List<String> parseBatchCompletion(BufferedSource response, TokenUsage usage) throws IOException;
+}
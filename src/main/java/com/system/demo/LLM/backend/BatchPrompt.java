@@ -0,0 +1,141 @@
+package com.system.demo.LLM.backend;
+
+import com.system.demo.LLM.CancellationToken;
+import com.system.demo.LLM.LLMRequest;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 多个补全请求（多光标）合并为一次调用：
+ * <ul>
+ *   <li>多路复用：多个 Prompt 拼成一个，要求模型依次输出每个位置的结果，每段以单独一行的 {@code <<<序号>>>} 开头，
+ *   按分隔行拆回各个请求（任何后端都可以用）</li>
+ *   <li>Prompt 数组：后端原生支持一次提交多个 Prompt 时（llama.cpp），返回的结果按同样的分隔格式拼接，统一拆分</li>
+ * </ul>
+ * 拆出的每段再按各自请求的停止序列截断（合并调用只能使用所有请求共有的停止序列）。
+ */
+final class BatchPrompt {
+    private static final Pattern SEPARATOR = Pattern.compile("^<<<(\\d+)>>>[ \\t]*\\r?\\n?", Pattern.MULTILINE);
+    // 每段分隔行及段间换行大约占用的 token 数
+    private static final int SEPARATOR_TOKENS = 6;
+
+    private BatchPrompt() {
+    }
+
+    /**
+     * 默认的批量实现：多路复用为一次 {@link LLMBackend#complete} 调用
+     */
+    @NotNull
+    static CompletableFuture<List<String>> complete(@NotNull LLMBackend backend, @NotNull List<LLMRequest> requests,
+                                                    @NotNull CancellationToken cancellation) {
+        return backend.complete(multiplexed(requests), cancellation).thenApply(text -> split(text, requests));
+    }
+
+    /**
+     * 多路复用的合并请求：生成上限为各请求之和，不带停止序列（单行补全的换行不能结束整个输出）
+     */
+    @NotNull
+    static LLMRequest multiplexed(@NotNull List<LLMRequest> requests) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("以下有 ").append(requests.size()).append(" 个相互独立的补全位置，请依次为每个位置输出应在光标处插入的补全内容。\n")
+                .append("每个位置的结果以单独一行的 <<<序号>>> 开头（序号从 1 开始），不要输出其他内容。\n");
+        int maxTokens = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            prompt.append("\n==== 位置 ").append(i + 1).append(" ====\n").append(requests.get(i).prompt).append('\n');
+            maxTokens += requests.get(i).maxTokens + SEPARATOR_TOKENS;
+        }
+        return combined(requests, prompt.toString(), maxTokens, Collections.emptyList());
+    }
+
+    /**
+     * Prompt 数组的合并请求：Prompt 只用于估算用量和决定是否压缩，生成上限取各请求最大值（每个 Prompt 分别生成），
+     * 停止序列取所有请求共有的部分
+     */
+    @NotNull
+    static LLMRequest promptArray(@NotNull List<LLMRequest> requests) {
+        StringBuilder prompt = new StringBuilder();
+        int maxTokens = 0;
+        List<String> stop = new ArrayList<>(requests.get(0).stop);
+        for (LLMRequest request : requests) {
+            prompt.append(request.prompt).append('\n');
+            maxTokens = Math.max(maxTokens, request.maxTokens);
+            stop.retainAll(request.stop);
+        }
+        return combined(requests, prompt.toString(), maxTokens, stop);
+    }
+
+    // 合并请求沿用第一个请求的操作、截止时间、取消令牌、优先级、项目、模型路由和候选数，不带区域（各请求的区域由调用方分别处理）；
+    // 同一请求的多个副本（多候选）保留候选数，温度和预扣的用量随之调整
+    private static LLMRequest combined(List<LLMRequest> requests, String prompt, int maxTokens, List<String> stop) {
+        LLMRequest first = requests.get(0);
+        return LLMRequest.builder(first.operation, prompt)
+                .project(first.project)
+                .cancellation(first.cancellation)
+                .deadline(first.deadline)
+                .priority(first.priority)
+                .route(first.route)
+                .profile(first.profile, "")
+                .candidates(first.candidates)
+                .maxTokens(maxTokens)
+                .stop(stop)
+                .build();
+    }
+
+    /**
+     * Prompt 数组的各个结果拼成多路复用的输出格式
+     */
+    @NotNull
+    static String join(@NotNull List<String> results) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < results.size(); i++) {
+            String result = results.get(i);
+            text.append("<<<").append(i + 1).append(">>>\n").append(result != null ? result : "").append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * 按分隔行拆分合并调用的输出，结果与请求一一对应，缺失或为空的位置为 null；整个调用失败时返回 null
+     */
+    @Nullable
+    static List<String> split(@Nullable String text, @NotNull List<LLMRequest> requests) {
+        if (text == null) return null;
+        String[] results = new String[requests.size()];
+        Matcher matcher = SEPARATOR.matcher(text);
+        int index = -1;
+        int start = 0;
+        while (matcher.find()) {
+            store(results, requests, index, text.substring(start, matcher.start()));
+            index = Integer.parseInt(matcher.group(1)) - 1;
+            start = matcher.end();
+        }
+        store(results, requests, index, text.substring(start));
+        return Arrays.asList(results);
+    }
+
+    private static void store(String[] results, List<LLMRequest> requests, int index, String segment) {
+        if (index < 0 || index >= results.length || results[index] != null) return;
+        String result = truncateAtStop(segment, requests.get(index).stop).trim();
+        results[index] = result.isEmpty() ? null : result;
+    }
+
+    // 按请求自己的停止序列截断（停止序列本身不保留）
+    private static String truncateAtStop(String segment, List<String> stop) {
+        // 先去掉段首空白（分隔行后的换行）和代码块标记，否则单行补全的停止序列 "\n" 会把结果截成空串
+        String text = segment.replaceAll("^\\s*(```[A-Za-z]*\\s*)?", "");
+        int end = text.length();
+        for (String sequence : stop) {
+            int at = text.indexOf(sequence);
+            if (at >= 0) end = Math.min(end, at);
+        }
+        return text.substring(0, end);
+    }
+}
@@ -0,0 +1,583 @@
+package com.system.demo.LLM.backend;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.system.demo.LLM.CancellationToken;
+import com.system.demo.LLM.CircuitBreaker;
+import com.system.demo.LLM.LLMClient;
+import com.system.demo.LLM.LLMMetrics;
+import com.system.demo.LLM.LLMRequest;
+import com.system.demo.LLM.LLMSettings;
+import com.system.demo.LLM.ModelRoute;
+import com.system.demo.LLM.RequestPriority;
+import com.system.demo.LLM.TokenBudget;
+import com.system.demo.LLM.transport.ConnectionWarmer;
+import com.system.demo.LLM.transport.Endpoint;
+import com.system.demo.LLM.transport.EndpointPool;
+import com.system.demo.LLM.transport.HttpTransport;
+import okhttp3.*;
+import okio.BufferedSource;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 HTTP + JSON 的后端：负责发请求、逐行读取流式响应、记录延迟，
+ * 子类只需要描述请求体和响应格式。
+ * 配置了多个服务地址时，每次调用由 {@link EndpointPool} 选择节点，并把结果（延迟、失败）报告给该节点。
+ * 每次调用的 token 用量计入 {@link TokenBudget}，服务端限流（429 / Retry-After）时按退避重试。
+ */
+public abstract class HttpLLMBackend implements LLMBackend {
+    private static final Logger LOG = Logger.getInstance(HttpLLMBackend.class);
+    protected static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    protected static final String SYSTEM_PROMPT = "你是一个专业的代码助手，请提供简洁的代码补全。";
+    // Prompt 超过该长度才压缩请求体，短请求压缩得不偿失
+    private static final int GZIP_MIN_CHARS = 8 * 1024;
+    // 429/503 后重试的退避时间：首次上限 500ms，之后每次翻倍
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 8_000;
+    // 一次调用最多生成的候选数
+    private static final int MAX_CANDIDATES = 8;
+
+    /**
+     * 写出请求体，直接写入连接（Prompt 不经过中间 String）
+     */
+    protected abstract void writeBody(JsonWriter json, LLMRequest request, LLMSettings settings, boolean stream)
+            throws IOException;
+
+    /**
+     * 从非流式响应中取出补全文本，只读取需要的字段；响应中的 token 用量写入 usage
+     */
+    @Nullable
+    protected abstract String parseCompletion(JsonReader response, TokenUsage usage) throws IOException;
+
+    /**
+     * 解析流式响应中的一行，与本次调用无关的行（空行、注释、keep-alive）返回 null；
+     * 带有 token 用量的行（通常是最后一行）写入 usage
+     */
+    @Nullable
+    protected abstract StreamChunk parseStreamLine(String line, TokenUsage usage);
+
+    /**
+     * 请求体能否写出候选数（{@link LLMRequest#candidates}，如 OpenAI 的 n），支持时需要实现 parseCandidates
+     */
+    protected boolean supportsCandidates() {
+        return false;
+    }
+
+    /**
+     * 从非流式响应中取出全部候选，顺序与响应一致；响应中的 token 用量写入 usage
+     */
+    @Nullable
+    protected List<String> parseCandidates(JsonReader response, int count, TokenUsage usage) throws IOException {
+        String completion = parseCompletion(response, usage);
+        return completion != null ? Collections.singletonList(completion) : null;
+    }
+
+    /**
+     * 是否必须配置 API Key（本地模型通常不需要）
+     */
+    protected boolean requiresApiKey() {
+        return false;
+    }
+
+    /**
+     * 预热请求，默认对服务根路径发 HEAD，只为建立连接；需要预加载模型的后端可以覆盖
+     */
+    @Nullable
+    protected Request warmUpRequest(ModelRoute route) {
+        HttpUrl url = HttpUrl.parse(route.effectiveUrl());
+        if (url == null) return null;
+        return new Request.Builder().url(url.newBuilder().encodedPath("/").build()).head().build();
+    }
+
+    @Override
+    public void warmUp(@NotNull ModelRoute route) {
+        Request request = warmUpRequest(route);
+        if (request == null) return;
+
+        long start = System.nanoTime();
+        HttpTransport.client().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                LLMMetrics.increment("transport.warmup.failed");
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                LLMMetrics.recordLatency("transport.warmup", elapsedMillis(start));
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<String> complete(@NotNull LLMRequest request, @NotNull CancellationToken cancellation) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        send(request, false, bodyOf(request, false), cancellation, 0, result, (call, response, endpoint, usage, start) -> {
+            String completion = usage.confidence().apply(parseCompletion(new JsonReader(response.body().source()), usage));
+            respondedIn(endpoint, start);
+            return completion != null ? completion.trim() : null;
+        });
+        return result;
+    }
+
+    /**
+     * 支持 Prompt 数组（{@link BatchCapable}）时一次提交全部 Prompt，否则多路复用为一个 Prompt；两种方式都只有一次往返
+     */
+    @NotNull
+    @Override
+    public CompletableFuture<List<String>> completeBatch(@NotNull List<LLMRequest> requests,
+                                                         @NotNull CancellationToken cancellation) {
+        if (!(this instanceof BatchCapable)) {
+            return BatchPrompt.complete(this, requests, cancellation);
+        }
+        BatchCapable batch = (BatchCapable) this;
+        LLMRequest combined = BatchPrompt.promptArray(requests);
+        LLMSettings settings = LLMSettings.getInstance();
+        CompletableFuture<String> result = new CompletableFuture<>();
+        send(combined, false, json -> batch.writeBatchBody(json, requests, combined, settings), cancellation, 0, result,
+                (call, response, endpoint, usage, start) -> {
+                    List<String> completions = batch.parseBatchCompletion(response.body().source(), usage);
+                    respondedIn(endpoint, start);
+                    return completions != null ? BatchPrompt.join(completions) : null;
+                });
+        return result.thenApply(text -> BatchPrompt.split(text, requests));
+    }
+
+    @Override
+    public int maxCandidates() {
+        return supportsCandidates() || this instanceof BatchCapable ? MAX_CANDIDATES : 1;
+    }
+
+    /**
+     * 请求体支持候选数时一次返回全部候选；否则支持 Prompt 数组时把同一 Prompt 提交多份；都不支持时只有一个候选
+     */
+    @NotNull
+    @Override
+    public CompletableFuture<List<String>> completeCandidates(@NotNull LLMRequest request,
+                                                              @NotNull CancellationToken cancellation) {
+        List<LLMRequest> copies = Collections.nCopies(request.candidates, request);
+        if (request.candidates <= 1 || maxCandidates() <= 1) {
+            return LLMBackend.super.completeCandidates(request, cancellation);
+        }
+        if (!supportsCandidates()) {
+            return completeBatch(copies, cancellation);
+        }
+        CompletableFuture<String> result = new CompletableFuture<>();
+        send(request, false, bodyOf(request, false), cancellation, 0, result, (call, response, endpoint, usage, start) -> {
+            List<String> candidates = parseCandidates(new JsonReader(response.body().source()), request.candidates, usage);
+            respondedIn(endpoint, start);
+            return candidates != null ? BatchPrompt.join(candidates) : null;
+        });
+        // 与批量结果相同的格式拆分，并按请求的停止序列截断
+        return result.thenApply(text -> BatchPrompt.split(text, copies));
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<String> stream(@NotNull LLMRequest request, int maxChars,
+                                            @NotNull LLMClient.StreamListener listener,
+                                            @NotNull CancellationToken cancellation) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        send(request, true, bodyOf(request, true), cancellation, 0, result, (call, response, endpoint, usage, start) ->
+                readStream(call, response, maxChars, listener, endpoint, usage, start));
+        return result;
+    }
+
+    /**
+     * 发起一次调用：服务端限流暂停期间先等到暂停结束（超过截止时间则放弃）；
+     * 返回 429/503 时由 {@link #retryDelay} 决定是否在退避后重试（每次重试重新选择节点、重新预扣预算）
+     */
+    private void send(LLMRequest request, boolean stream, JsonRequestBody.Content body, CancellationToken cancellation,
+                      int attempt, CompletableFuture<String> result, ResponseHandler handler) {
+        long pause = TokenBudget.rateLimitRemainingMillis();
+        if (pause > 0 && !cancellation.isCancelled()) {
+            if (request.deadline.isFinite() && pause >= request.deadline.remainingMillis()) {
+                LLMMetrics.increment("http.ratelimit.dropped");
+                result.complete(null);
+            } else {
+                schedule(() -> send(request, stream, body, cancellation, attempt, result, handler), pause);
+            }
+            return;
+        }
+
+        // 路由指定了服务地址（或换了后端）时单独使用该地址，否则在设置中的节点间分配
+        String routedUrl = request.route.urlFor(this);
+        Endpoint.Lease endpoint = routedUrl != null
+                ? EndpointPool.acquireRouted(routedUrl) : EndpointPool.acquire(LLMBackends.effectiveUrl(this));
+        // 熔断器在真正发出调用前才占用半开状态的探测名额，之后由租约报告结果
+        CircuitBreaker breaker = CircuitBreaker.of(request.route);
+        if (!breaker.allowRequest()) {
+            LLMMetrics.increment("circuit.rejected");
+            endpoint.release();
+            result.complete(null);
+            return;
+        }
+        endpoint.reportTo(breaker, request.priority != RequestPriority.PREFETCH);
+        Call call = newCall(request, stream, body, cancellation, endpoint);
+        if (call == null) {
+            endpoint.release();
+            result.complete(null);
+            return;
+        }
+
+        TokenBudget.Reservation reservation = TokenBudget.reserve(request);
+        TokenUsage usage = new TokenUsage(request.logprobs);
+        long start = System.nanoTime();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                reservation.settle(0, 0);
+                result.complete(onCallFailure(call, e, endpoint, start));
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                String completion = null;
+                long retryDelay = -1;
+                try (Response r = response) {
+                    if (!r.isSuccessful() || r.body() == null) {
+                        onErrorResponse(r, endpoint);
+                        retryDelay = retryDelay(r, request, attempt);
+                    } else {
+                        usage.received();
+                        completion = handler.handle(call, r, endpoint, usage, start);
+                    }
+                } catch (IOException e) {
+                    completion = onCallFailure(call, e, endpoint, start);
+                } catch (RuntimeException e) {
+                    // 响应格式不符合预期：代理或服务异常时每次请求都会出现，只计数，细节在 debug 日志中
+                    LLMMetrics.increment("http.malformed");
+                    LOG.debug("响应格式不符合预期", e);
+                } finally {
+                    endpoint.release();
+                    reservation.settle(usage.promptTokens(request.prompt), usage.completionTokens(completion));
+                }
+
+                if (retryDelay >= 0) {
+                    LLMMetrics.increment("http.retry");
+                    schedule(() -> send(request, stream, body, cancellation, attempt + 1, result, handler), retryDelay);
+                } else {
+                    result.complete(completion);
+                }
+            }
+        });
+    }
+
+    private JsonRequestBody.Content bodyOf(LLMRequest request, boolean stream) {
+        LLMSettings settings = LLMSettings.getInstance();
+        return json -> writeBody(json, request, settings, stream);
+    }
+
+    private static void respondedIn(Endpoint.Lease endpoint, long start) {
+        long latency = elapsedMillis(start);
+        LLMMetrics.recordLatency(LLMMetrics.REQUEST_LATENCY, latency);
+        endpoint.responded(latency);
+    }
+
+    private static void schedule(Runnable task, long delayMillis) {
+        AppExecutorUtil.getAppScheduledExecutorService().schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Nullable
+    private Call newCall(LLMRequest request, boolean stream, JsonRequestBody.Content body, CancellationToken cancellation,
+                         Endpoint.Lease endpoint) {
+        LLMSettings settings = LLMSettings.getInstance();
+        if (request.deadline.isExpired()) {
+            LLMMetrics.increment("deadline.http");
+            return null;
+        }
+        if (cancellation.isCancelled()
+                || (requiresApiKey() && (settings.apiKey == null || settings.apiKey.isEmpty()))) {
+            return null;
+        }
+
+        boolean gzip = settings.gzipRequestBody && request.prompt.length() >= GZIP_MIN_CHARS;
+        Request.Builder builder = new Request.Builder()
+                .url(endpoint.url())
+                .addHeader("Content-Type", "application/json")
+                .post(new JsonRequestBody(body, gzip));
+        if (gzip) {
+            builder.addHeader("Content-Encoding", "gzip");
+        }
+        if (settings.apiKey != null && !settings.apiKey.isEmpty()) {
+            builder.addHeader("Authorization", "Bearer " + settings.apiKey);
+        }
+        if (stream) {
+            builder.addHeader("Accept", "text/event-stream");
+        }
+
+        ConnectionWarmer.markActivity();
+        Call call = HttpTransport.clientFor(request.deadline).newCall(builder.build());
+        if (request.deadline.isFinite()) {
+            // 整个调用（连接、发送、等待、读取）共用剩余时间；0 在 OkHttp 中表示不限，至少取 1ms
+            call.timeout().timeout(Math.max(1, request.deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+        }
+        cancellation.onCancel(call::cancel);
+        return call;
+    }
+
+    // 在 OkHttp 回调线程上逐行读取流式响应（SSE 或 NDJSON），响应状态已由 send 检查
+    private String readStream(Call call, Response response, int maxChars, LLMClient.StreamListener listener,
+                              Endpoint.Lease endpoint, TokenUsage usage, long start) {
+        StringBuilder text = new StringBuilder();
+        boolean truncated = false;
+        boolean unconfident = false;
+        try {
+            BufferedSource source = response.body().source();
+            String line;
+            while ((line = source.readUtf8Line()) != null) {
+                StreamChunk chunk = parseStreamLine(line, usage);
+                if (chunk == null) continue;
+
+                if (chunk.text != null && !chunk.text.isEmpty()) {
+                    if (text.length() == 0) {
+                        long ttft = elapsedMillis(start);
+                        LLMMetrics.recordLatency(LLMMetrics.STREAM_TTFT, ttft);
+                        endpoint.responded(ttft);
+                    }
+                    text.append(chunk.text);
+                    if (usage.confidence().isStopped()) {
+                        // 置信度过低：之后的内容不会显示，提前结束生成（最后由 ConfidenceGate 截断或抑制）
+                        unconfident = true;
+                        LLMMetrics.increment("confidence.cancelled");
+                        call.cancel();
+                        break;
+                    }
+                    listener.onPartial(text.toString());
+
+                    if (maxChars > 0 && text.length() >= maxChars) {
+                        // 已经够显示了，提前结束生成
+                        truncated = true;
+                        call.cancel();
+                        break;
+                    }
+                }
+                if (chunk.done) break;
+            }
+        } catch (IOException e) {
+            if (!truncated && !unconfident) {
+                return onCallFailure(call, e, endpoint, start);
+            }
+        }
+
+        if (text.length() == 0) {
+            return null;
+        }
+        LLMMetrics.recordLatency(LLMMetrics.STREAM_TTLT, elapsedMillis(start));
+        if (truncated) {
+            LLMMetrics.increment("stream.truncated");
+        }
+
+        String completion = usage.confidence().apply(text.toString());
+        return completion != null ? completion.trim() : null;
+    }
+
+    private static String onCallFailure(Call call, IOException e, Endpoint.Lease endpoint, long start) {
+        if (e instanceof InterruptedIOException && "timeout".equals(e.getMessage())) {
+            // 截止时间到达（Call.timeout 触发时调用也处于已取消状态，先判断）
+            LLMMetrics.increment("deadline.http");
+            endpoint.timedOut(elapsedMillis(start));
+        } else if (call.isCanceled()) {
+            LLMMetrics.increment("cancelled.http");
+            endpoint.release();
+        } else if (isConnectFailure(e)) {
+            // 服务或代理不可用：很常见，只计数，不打印堆栈
+            LLMMetrics.increment("http.connect.failed");
+            endpoint.failed();
+        } else if (e instanceof InterruptedIOException) {
+            LLMMetrics.increment("http.timeout");
+            endpoint.timedOut(elapsedMillis(start));
+        } else {
+            // 连接中途断开、SSL 错误等：与连接失败一样按请求出现，只计数，细节在 debug 日志中
+            LLMMetrics.increment("http.failed");
+            LOG.debug("请求失败", e);
+            endpoint.failed();
+        }
+        return null;
+    }
+
+    private static boolean isConnectFailure(IOException e) {
+        if (e instanceof ConnectException || e instanceof UnknownHostException || e instanceof NoRouteToHostException) {
+            return true;
+        }
+        String message = e.getMessage();
+        return e instanceof SocketTimeoutException && message != null && message.toLowerCase().contains("connect");
+    }
+
+    // 服务端错误计入节点失败；限流（429）由 TokenBudget 暂停处理，其余（如 401、404）是配置问题，都不影响节点状态
+    private static void onErrorResponse(Response response, Endpoint.Lease endpoint) {
+        LLMMetrics.increment("http.status." + response.code());
+        if (response.code() >= 500) {
+            endpoint.failed();
+        }
+    }
+
+    /**
+     * 限流（429）或服务暂时不可用（503）：429 和带 Retry-After 的响应让 {@link TokenBudget} 暂停请求；
+     * 显式操作在重试次数和截止时间允许时重试，等待 Retry-After 与带抖动的指数退避中较长的一个。
+     * 不重试时返回 -1（推测性请求从不重试，下一次按键会发新的请求）
+     */
+    private static long retryDelay(Response response, LLMRequest request, int attempt) {
+        int code = response.code();
+        if (code != 429 && code != 503) return -1;
+        long retryAfter = parseRetryAfter(response.header("Retry-After"));
+        long backoff = backoffMillis(attempt);
+        if (code == 429 || retryAfter >= 0) {
+            TokenBudget.rateLimited(retryAfter >= 0 ? retryAfter : backoff);
+        }
+
+        if (request.priority.isSpeculative() || attempt >= LLMSettings.getInstance().maxRetries) return -1;
+        long delay = Math.max(retryAfter, backoff);
+        if (request.deadline.isFinite() && delay >= request.deadline.remainingMillis()) {
+            LLMMetrics.increment("http.retry.deadline");
+            return -1;
+        }
+        return delay;
+    }
+
+    // 第 attempt 次重试前的等待：上限按次数翻倍，在 [上限/2, 上限] 内随机，避免多个客户端同时重试
+    private static long backoffMillis(int attempt) {
+        long cap = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 10));
+        return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+    }
+
+    // Retry-After 为秒数或 HTTP 日期，缺失或无法解析时返回 -1
+    private static long parseRetryAfter(@Nullable String value) {
+        if (value == null || value.trim().isEmpty()) return -1;
+        try {
+            return Math.max(0, Long.parseLong(value.trim())) * 1000;
+        } catch (NumberFormatException e) {
+            // 不是秒数，按日期解析
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    // SSE 数据行 "data: {...}" 去掉前缀，其他行返回 null
+    @Nullable
+    protected static String sseData(String line) {
+        if (!line.startsWith("data:")) return null;
+        String data = line.substring(5).trim();
+        return data.isEmpty() ? null : data;
+    }
+
+    /**
+     * 写出停止序列，为空时不写；limit 为服务端允许的最大个数（不限制传 0）
+     */
+    protected static void writeStop(JsonWriter json, List<String> stop, int limit) throws IOException {
+        if (stop.isEmpty()) return;
+        json.name("stop").beginArray();
+        for (int i = 0; i < stop.size() && (limit <= 0 || i < limit); i++) {
+            json.value(stop.get(i));
+        }
+        json.endArray();
+    }
+
+    /**
+     * 对话模型的停止序列：去掉单独的换行。对话模型常以 {@code ```java} 加换行或空行开头，
+     * 遇到第一个换行就停止会只剩代码块标记（清理后为空），单行补全改由调用方截取第一行代码
+     */
+    protected static List<String> chatStop(List<String> stop) {
+        if (!stop.contains("\n")) return stop;
+        List<String> filtered = new ArrayList<>(stop);
+        filtered.removeIf("\n"::equals);
+        return filtered;
+    }
+
+    /**
+     * 从 {@link JsonReader#readValues} 的结果中按下标依次取出 token 和对数概率，
+     * prefix 为数组路径（如 {@code "choices.0.logprobs.content"}），读取时需要带上 prefix + ".*.token" 和 ".*.logprob"
+     */
+    protected static void readLogprobs(Map<String, String> values, String prefix, TokenUsage usage) {
+        for (int i = 0; ; i++) {
+            String logprob = values.get(prefix + "." + i + ".logprob");
+            if (logprob == null) return;
+            usage.token(values.get(prefix + "." + i + ".token"), doubleValue(logprob));
+        }
+    }
+
+    /**
+     * 流式响应中的 token 数组：每个元素为 {@code {"token": "...", "logprob": -0.1, ...}}
+     */
+    protected static void readLogprobs(@Nullable JSONArray tokens, TokenUsage usage) {
+        if (tokens == null) return;
+        for (int i = 0; i < tokens.length(); i++) {
+            JSONObject token = tokens.optJSONObject(i);
+            if (token != null && token.has("logprob")) {
+                usage.token(token.optString("token", ""), token.optDouble("logprob"));
+            }
+        }
+    }
+
+    private static double doubleValue(String number) {
+        try {
+            return Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            return Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    // 响应中的数字（可能带小数或指数），缺失或格式不对时返回 -1
+    protected static long longValue(@Nullable String number) {
+        if (number == null) return -1;
+        try {
+            return (long) Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 处理成功（2xx）的响应，返回补全文本
+     */
+    private interface ResponseHandler {
+        @Nullable
+        String handle(Call call, Response response, Endpoint.Lease endpoint, TokenUsage usage, long start)
+                throws IOException;
+    }
+
+    /**
+     * 流式响应中的一段：增量文本 + 是否结束
+     */
+    protected static final class StreamChunk {
+        public static final StreamChunk END = new StreamChunk(null, true);
+
+        @Nullable
+        public final String text;
+        public final boolean done;
+
+        public StreamChunk(@Nullable String text, boolean done) {
+            this.text = text;
+            this.done = done;
+        }
+    }
+}
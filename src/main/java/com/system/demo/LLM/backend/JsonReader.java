@@ -0,0 +1,294 @@
+package com.system.demo.LLM.backend;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 从 OkHttp 响应流上按需读取 JSON 的拉取式解析器：只解码用到的字符串，
+ * 其余的值直接在字节流上跳过，不构建 JSONObject 树，也不把整个响应读成 String。
+ * 逗号在每个值之后立即消费，不检查缺失的逗号。
+ */
+public final class JsonReader {
+    private static final ByteString STRING_SPECIAL = ByteString.encodeUtf8("\"\\");
+    private static final String WILDCARD = "*";
+
+    private final BufferedSource source;
+    private final Buffer buffer;
+
+    JsonReader(@NotNull BufferedSource source) {
+        this.source = source;
+        this.buffer = source.getBuffer();
+    }
+
+    /**
+     * 按路径读取一个字符串值，找到后立即返回（不再读取剩余内容）。
+     * 路径中的数字表示数组下标，如 {@code "choices", "0", "message", "content"}；
+     * 路径不存在或值不是字符串时返回 null
+     */
+    @Nullable
+    public String readString(@NotNull String... path) throws IOException {
+        String key = String.join(".", path);
+        return readValues(key).get(key);
+    }
+
+    /**
+     * 一次遍历读取多个路径上的值（用 "." 连接，如 {@code "usage.prompt_tokens"}），全部找到后立即返回。
+     * 路径中的 {@code *} 匹配任意一个键或下标（如 {@code "choices.0.logprobs.content.*.token"}），
+     * 结果以实际路径为键；带通配符时读完整个响应。
+     * 字符串返回解码后的内容，数字和布尔值返回原文，null 和对象/数组不返回
+     */
+    @NotNull
+    public Map<String, String> readValues(@NotNull String... paths) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        Set<String> targets = new HashSet<>(Arrays.asList(paths));
+        boolean wildcard = false;
+        for (String path : targets) {
+            wildcard |= path.contains(WILDCARD);
+        }
+        collect("", targets, wildcard ? Integer.MAX_VALUE : targets.size(), values);
+        return values;
+    }
+
+    // 只进入可能包含目标路径的对象/数组，其余直接跳过；返回是否已全部找到
+    private boolean collect(String path, Set<String> paths, int expected, Map<String, String> values)
+            throws IOException {
+        byte next = peek();
+        boolean container = next == '{' || next == '[';
+        if (matchesAny(paths, path)) {
+            if (next == '"') {
+                values.put(path, nextString());
+            } else if (container) {
+                skipValue();
+            } else {
+                String literal = nextLiteral();
+                if (!literal.equals("null")) values.put(path, literal);
+            }
+            return values.size() >= expected;
+        }
+        if (!container || !containsChild(paths, path)) {
+            skipValue();
+            return false;
+        }
+
+        boolean object = next == '{';
+        if (object) beginObject();
+        else beginArray();
+        for (int i = 0; hasNext(); i++) {
+            String child = object ? nextName() : String.valueOf(i);
+            if (collect(path.isEmpty() ? child : path + "." + child, paths, expected, values)) {
+                return true;
+            }
+        }
+        if (object) endObject();
+        else endArray();
+        return false;
+    }
+
+    private static boolean matchesAny(Set<String> paths, String path) {
+        if (paths.contains(path)) return true;
+        for (String pattern : paths) {
+            if (pattern.contains(WILDCARD) && matches(pattern, path, false)) return true;
+        }
+        return false;
+    }
+
+    private static boolean containsChild(Set<String> paths, String path) {
+        if (path.isEmpty()) return true;
+        for (String candidate : paths) {
+            if (matches(candidate, path, true)) return true;
+        }
+        return false;
+    }
+
+    // 逐段比较，"*" 匹配任意一段；prefix 为 true 时要求 path 是 pattern 的真前缀
+    private static boolean matches(String pattern, String path, boolean prefix) {
+        if (!pattern.contains(WILDCARD)) {
+            if (!prefix) return pattern.equals(path);
+            return pattern.startsWith(path) && pattern.length() > path.length() && pattern.charAt(path.length()) == '.';
+        }
+        String[] expected = pattern.split("\\.");
+        String[] actual = path.split("\\.");
+        if (prefix ? actual.length >= expected.length : actual.length != expected.length) return false;
+        for (int i = 0; i < actual.length; i++) {
+            if (!expected[i].equals(WILDCARD) && !expected[i].equals(actual[i])) return false;
+        }
+        return true;
+    }
+
+    public void beginObject() throws IOException {
+        expect('{');
+    }
+
+    public void endObject() throws IOException {
+        expect('}');
+        afterValue();
+    }
+
+    public void beginArray() throws IOException {
+        expect('[');
+    }
+
+    public void endArray() throws IOException {
+        expect(']');
+        afterValue();
+    }
+
+    /**
+     * 当前对象/数组是否还有元素
+     */
+    public boolean hasNext() throws IOException {
+        byte next = peek();
+        return next != '}' && next != ']';
+    }
+
+    public String nextName() throws IOException {
+        expect('"');
+        String name = readStringBody();
+        expect(':');
+        return name;
+    }
+
+    public String nextString() throws IOException {
+        expect('"');
+        String value = readStringBody();
+        afterValue();
+        return value;
+    }
+
+    /**
+     * 跳过下一个值（包括嵌套的对象和数组），字符串只扫描不解码
+     */
+    public void skipValue() throws IOException {
+        byte next = peek();
+        switch (next) {
+            case '{':
+                beginObject();
+                while (hasNext()) {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+                return;
+            case '[':
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                endArray();
+                return;
+            case '"':
+                source.skip(1);
+                skipStringBody();
+                afterValue();
+                return;
+            default:
+                nextLiteral();
+        }
+    }
+
+    // 数字、true、false、null：读到分隔符为止
+    private String nextLiteral() throws IOException {
+        long length = 0;
+        while (source.request(length + 1) && !isDelimiter(buffer.getByte(length))) {
+            length++;
+        }
+        String literal = buffer.readUtf8(length);
+        afterValue();
+        return literal;
+    }
+
+    private String readStringBody() throws IOException {
+        StringBuilder result = null;
+        while (true) {
+            long special = source.indexOfElement(STRING_SPECIAL);
+            if (special == -1) throw new IOException("JSON 字符串未结束");
+            String run = buffer.readUtf8(special);
+            if (buffer.readByte() == '"') {
+                if (result == null) return run;
+                return result.append(run).toString();
+            }
+            if (result == null) result = new StringBuilder(run.length() + 16);
+            result.append(run).append(readEscape());
+        }
+    }
+
+    private void skipStringBody() throws IOException {
+        while (true) {
+            long special = source.indexOfElement(STRING_SPECIAL);
+            if (special == -1) throw new IOException("JSON 字符串未结束");
+            buffer.skip(special);
+            if (buffer.readByte() == '"') return;
+            source.require(1);
+            if (buffer.readByte() == 'u') {
+                source.skip(4);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        source.require(1);
+        byte escaped = buffer.readByte();
+        switch (escaped) {
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'u':
+                source.require(4);
+                return (char) Integer.parseInt(buffer.readUtf8(4), 16);
+            default:
+                // \" \\ \/
+                return (char) escaped;
+        }
+    }
+
+    // 消费值后面的逗号（如果有）
+    private void afterValue() throws IOException {
+        skipWhitespace();
+        if (source.request(1) && buffer.getByte(0) == ',') {
+            buffer.skip(1);
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        byte next = peek();
+        if (next != expected) {
+            throw new IOException("JSON 格式错误: 期望 '" + expected + "'，实际 '" + (char) next + "'");
+        }
+        buffer.skip(1);
+    }
+
+    private byte peek() throws IOException {
+        skipWhitespace();
+        source.require(1);
+        return buffer.getByte(0);
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (source.request(1)) {
+            byte b = buffer.getByte(0);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return;
+            buffer.skip(1);
+        }
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
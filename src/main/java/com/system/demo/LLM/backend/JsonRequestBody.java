@@ -0,0 +1,81 @@
+package com.system.demo.LLM.backend;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.GzipSink;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * 在 OkHttp 写请求时才生成的 JSON 请求体：{@link JsonWriter} 直接写入连接的 sink，
+ * 可选 gzip 压缩（带 Content-Encoding: gzip，服务端需要支持）。
+ * 不压缩时先空写一遍统计长度（只计数、不保留数据），保证发送带 Content-Length 的普通请求，
+ * 大文件的 Prompt 不会在内存中再复制一份；压缩时长度未知，使用分块传输，边序列化边压缩。
+ */
+public final class JsonRequestBody extends RequestBody {
+    /**
+     * 写出请求体内容；每次发送（包括重试）都会重新调用
+     */
+    public interface Content {
+        void writeTo(@NotNull JsonWriter json) throws IOException;
+    }
+
+    private final Content content;
+    private final boolean gzip;
+    // 不压缩时的请求体长度，-2 表示还没统计；OkHttp 重试同一请求时重复使用
+    private long contentLength = -2;
+
+    public JsonRequestBody(@NotNull Content content, boolean gzip) {
+        this.content = content;
+        this.gzip = gzip;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return HttpLLMBackend.JSON;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        if (gzip) return -1;
+        if (contentLength == -2) {
+            CountingSink counter = new CountingSink();
+            BufferedSink sink = Okio.buffer(counter);
+            content.writeTo(new JsonWriter(sink));
+            sink.flush();
+            contentLength = counter.count;
+        }
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(@NotNull BufferedSink sink) throws IOException {
+        if (!gzip) {
+            content.writeTo(new JsonWriter(sink));
+            return;
+        }
+        BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+        content.writeTo(new JsonWriter(gzipSink));
+        gzipSink.close();
+    }
+
+    // 丢弃写入的数据，只记录字节数
+    private static final class CountingSink extends ForwardingSink {
+        long count;
+
+        CountingSink() {
+            super(Okio.blackhole());
+        }
+
+        @Override
+        public void write(@NotNull Buffer source, long byteCount) throws IOException {
+            count += byteCount;
+            super.write(source, byteCount);
+        }
+    }
+}
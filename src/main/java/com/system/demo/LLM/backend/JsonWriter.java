@@ -0,0 +1,172 @@
+package com.system.demo.LLM.backend;
+
+import okio.BufferedSink;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * 直接写入 OkHttp sink 的 JSON 输出，字符串按 {@link CharSequence} 逐段转义写出，
+ * 不经过 JSONObject 和中间 String，整文件 Prompt 不会被复制。
+ * 只做最基本的结构检查（逗号、冒号由本类负责），不校验对象/数组是否配对。
+ */
+public final class JsonWriter {
+    private final BufferedSink sink;
+    // 每层是否已经写过元素（决定下一个元素前是否需要逗号）
+    private boolean[] hasElements = new boolean[8];
+    private int depth;
+    private boolean afterName;
+
+    JsonWriter(@NotNull BufferedSink sink) {
+        this.sink = sink;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    public JsonWriter name(@NotNull String name) throws IOException {
+        separator();
+        writeString(name);
+        sink.writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(@NotNull CharSequence value) throws IOException {
+        separator();
+        writeString(value);
+        return this;
+    }
+
+    /**
+     * 多段内容拼接为一个字符串值，省去拼接 Prompt 时的复制
+     */
+    public JsonWriter value(@NotNull CharSequence... parts) throws IOException {
+        separator();
+        sink.writeByte('"');
+        for (CharSequence part : parts) {
+            writeEscaped(part);
+        }
+        sink.writeByte('"');
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separator();
+        sink.writeDecimalLong(value);
+        return this;
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("JSON 不支持的数值: " + value);
+        }
+        separator();
+        sink.writeUtf8(Double.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separator();
+        sink.writeUtf8(value ? "true" : "false");
+        return this;
+    }
+
+    private JsonWriter open(char bracket) throws IOException {
+        separator();
+        sink.writeByte(bracket);
+        if (++depth == hasElements.length) {
+            boolean[] grown = new boolean[depth * 2];
+            System.arraycopy(hasElements, 0, grown, 0, depth);
+            hasElements = grown;
+        }
+        hasElements[depth] = false;
+        return this;
+    }
+
+    private JsonWriter close(char bracket) throws IOException {
+        depth--;
+        sink.writeByte(bracket);
+        return this;
+    }
+
+    // 值紧跟在名字之后不需要逗号；同一层的第二个元素开始需要逗号
+    private void separator() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (hasElements[depth]) {
+            sink.writeByte(',');
+        }
+        hasElements[depth] = true;
+    }
+
+    // 不需要转义的连续字符整段写出（String 直接按区间写，不产生子串）
+    private void writeString(CharSequence value) throws IOException {
+        sink.writeByte('"');
+        writeEscaped(value);
+        sink.writeByte('"');
+    }
+
+    private void writeEscaped(CharSequence value) throws IOException {
+        int length = value.length();
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escape = escapeOf(c);
+            if (escape == null) continue;
+            writeRun(value, runStart, i);
+            sink.writeUtf8(escape);
+            runStart = i + 1;
+        }
+        writeRun(value, runStart, length);
+    }
+
+    private void writeRun(CharSequence value, int start, int end) throws IOException {
+        if (start >= end) return;
+        if (value instanceof String) {
+            sink.writeUtf8((String) value, start, end);
+            return;
+        }
+        for (int i = start; i < end; ) {
+            int codePoint = Character.codePointAt(value, i);
+            sink.writeUtf8CodePoint(codePoint);
+            i += Character.charCount(codePoint);
+        }
+    }
+
+    private static String escapeOf(char c) {
+        switch (c) {
+            case '"':
+                return "\\\"";
+            case '\\':
+                return "\\\\";
+            case '\n':
+                return "\\n";
+            case '\r':
+                return "\\r";
+            case '\t':
+                return "\\t";
+            case '\u2028':
+                return "\\u2028";
+            case '\u2029':
+                return "\\u2029";
+            default:
+                return c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.system.demo.LLM.backend;
+
+import com.intellij.openapi.extensions.ExtensionPointName;
+import com.system.demo.LLM.CancellationToken;
+import com.system.demo.LLM.LLMClient;
+import com.system.demo.LLM.LLMRequest;
+import com.system.demo.LLM.ModelRoute;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 模型后端扩展点：把一次请求发送给具体的模型服务并取回补全文本。
+ * 在 plugin.xml 中通过 {@code <llmBackend implementation="..."/>} 注册，设置页按 id 选择。
+ * 缓存、请求合并和取消由 {@link LLMClient} 统一处理，后端只负责单次调用；
+ * 失败或取消时以 null 完成，不要异常完成。
+ */
+public interface LLMBackend {
+    ExtensionPointName<LLMBackend> EP_NAME = ExtensionPointName.create("com.system.demo.llmBackend");
+
+    /**
+     * 保存在设置中的唯一标识
+     */
+    @NotNull
+    String getId();
+
+    @NotNull
+    String getDisplayName();
+
+    /**
+     * 设置中未填写 API URL 时使用的地址，不需要地址的后端返回空字符串
+     */
+    @NotNull
+    String getDefaultUrl();
+
+    /**
+     * 后台预热：提前建立到该路由地址的连接，本地服务顺带让路由的模型加载到内存。只发起请求，不等待结果
+     */
+    default void warmUp(@NotNull ModelRoute route) {
+    }
+
+    @NotNull
+    CompletableFuture<String> complete(@NotNull LLMRequest request, @NotNull CancellationToken cancellation);
+
+    /**
+     * 批量调用（多光标）：一次往返得到多个请求的结果，结果与请求一一对应，缺失的位置为 null，整个调用失败时以 null 完成。
+     * 默认把多个 Prompt 多路复用为一次 {@link #complete} 调用（{@link BatchPrompt}），原生支持 Prompt 数组的后端可以覆盖
+     */
+    @NotNull
+    default CompletableFuture<List<String>> completeBatch(@NotNull List<LLMRequest> requests,
+                                                          @NotNull CancellationToken cancellation) {
+        return BatchPrompt.complete(this, requests, cancellation);
+    }
+
+    /**
+     * 一次调用最多生成的候选数，不支持多候选的后端为 1
+     */
+    default int maxCandidates() {
+        return 1;
+    }
+
+    /**
+     * 多候选调用：一次往返生成 {@link LLMRequest#candidates} 个候选（顺序即模型给出的顺序），整个调用失败时以 null 完成。
+     * 默认只调用一次 {@link #complete}，得到一个候选
+     */
+    @NotNull
+    default CompletableFuture<List<String>> completeCandidates(@NotNull LLMRequest request,
+                                                               @NotNull CancellationToken cancellation) {
+        return complete(request, cancellation).thenApply(text -> text != null ? Collections.singletonList(text) : null);
+    }
+
+    /**
+     * 流式调用：增量文本通过 listener 回调已累计的全文，累计长度达到 maxChars 后可以提前结束
+     */
+    @NotNull
+    CompletableFuture<String> stream(@NotNull LLMRequest request, int maxChars,
+                                     @NotNull LLMClient.StreamListener listener,
+                                     @NotNull CancellationToken cancellation);
+}
@@ -0,0 +1,55 @@
+package com.system.demo.LLM.backend;
+
+import com.system.demo.LLM.LLMSettings;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * 查找已注册的模型后端
+ */
+public final class LLMBackends {
+    public static final String DEFAULT_ID = OpenAIBackend.ID;
+
+    private LLMBackends() {
+    }
+
+    /**
+     * 当前设置选中的后端
+     */
+    @NotNull
+    public static LLMBackend current() {
+        return find(LLMSettings.getInstance().backendId);
+    }
+
+    /**
+     * 按 id 查找，找不到时（如提供该后端的插件已卸载）回退到 OpenAI 兼容后端
+     */
+    @NotNull
+    public static LLMBackend find(String id) {
+        LLMBackend fallback = null;
+        for (LLMBackend backend : all()) {
+            if (backend.getId().equals(id)) {
+                return backend;
+            }
+            if (backend.getId().equals(DEFAULT_ID)) {
+                fallback = backend;
+            }
+        }
+        return fallback != null ? fallback : new OpenAIBackend();
+    }
+
+    /**
+     * 实际请求的地址：设置中的 API URL，未填写时使用后端默认地址
+     */
+    @NotNull
+    public static String effectiveUrl(LLMBackend backend) {
+        String apiUrl = LLMSettings.getInstance().apiUrl;
+        return apiUrl == null || apiUrl.isEmpty() ? backend.getDefaultUrl() : apiUrl;
+    }
+
+    @NotNull
+    public static List<LLMBackend> all() {
+        return LLMBackend.EP_NAME.getExtensionList();
+    }
+}
@@ -0,0 +1,146 @@
+package com.system.demo.LLM.backend;
+
+import com.system.demo.LLM.LLMRequest;
+import com.system.demo.LLM.LLMSettings;
+import com.system.demo.LLM.ModelRoute;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okio.BufferedSource;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * llama.cpp server 原生补全接口（/completion）。
+ * cache_prompt 让服务端复用上一次请求的 KV 缓存，连续补全只需处理新增的 Prompt 后缀。
+ * 请求 logprobs 时用 n_probs，新版服务端在 completion_probabilities 中返回每个 token 的 logprob（旧版格式不读取）。
+ */
+public class LlamaCppBackend extends HttpLLMBackend implements BatchCapable {
+    public static final String ID = "llama.cpp";
+    private static final String PROBABILITIES = "completion_probabilities";
+
+    @NotNull
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return "llama.cpp server (/completion)";
+    }
+
+    @NotNull
+    @Override
+    public String getDefaultUrl() {
+        return "http://127.0.0.1:8080/completion";
+    }
+
+    @Nullable
+    @Override
+    protected Request warmUpRequest(ModelRoute route) {
+        HttpUrl url = HttpUrl.parse(route.effectiveUrl());
+        if (url == null) return null;
+        return new Request.Builder().url(url.newBuilder().encodedPath("/health").build()).build();
+    }
+
+    @Override
+    protected void writeBody(JsonWriter json, LLMRequest request, LLMSettings settings, boolean stream)
+            throws IOException {
+        json.beginObject()
+                .name("prompt").value(SYSTEM_PROMPT, "\n\n", request.prompt)
+                .name("n_predict").value(request.maxTokens)
+                .name("temperature").value(request.temperature)
+                .name("stream").value(stream)
+                .name("cache_prompt").value(true);
+        if (request.logprobs) {
+            json.name("n_probs").value(1);
+        }
+        writeStop(json, request.stop, 0);
+        json.endObject();
+    }
+
+    // 新版 llama.cpp server 的 prompt 可以是字符串数组，按顺序返回结果数组
+    @Override
+    public void writeBatchBody(JsonWriter json, List<LLMRequest> requests, LLMRequest combined, LLMSettings settings)
+            throws IOException {
+        json.beginObject().name("prompt").beginArray();
+        for (LLMRequest request : requests) {
+            json.value(SYSTEM_PROMPT, "\n\n", request.prompt);
+        }
+        json.endArray()
+                .name("n_predict").value(combined.maxTokens)
+                .name("temperature").value(combined.temperature)
+                .name("stream").value(false)
+                .name("cache_prompt").value(true);
+        writeStop(json, combined.stop, 0);
+        json.endObject();
+    }
+
+    // 响应是结果对象数组，用拉取式解析按下标取出各结果的字段
+    @Override
+    public List<String> parseBatchCompletion(BufferedSource response, TokenUsage usage) throws IOException {
+        Map<String, String> values = new JsonReader(response)
+                .readValues("*.content", "*.tokens_evaluated", "*.tokens_predicted");
+        int count = 0;
+        for (String path : values.keySet()) {
+            count = Math.max(count, Integer.parseInt(path.substring(0, path.indexOf('.'))) + 1);
+        }
+        List<String> completions = new ArrayList<>(count);
+        long promptTokens = 0;
+        long predicted = 0;
+        for (int i = 0; i < count; i++) {
+            completions.add(values.get(i + ".content"));
+            promptTokens += Math.max(0, longValue(values.get(i + ".tokens_evaluated")));
+            predicted += Math.max(0, longValue(values.get(i + ".tokens_predicted")));
+        }
+        usage.prompt(promptTokens, -1, -1);
+        usage.completion(predicted);
+        return completions;
+    }
+
+    @Override
+    protected String parseCompletion(JsonReader response, TokenUsage usage) throws IOException {
+        Map<String, String> values = response.readValues("content", "tokens_evaluated", "tokens_predicted",
+                "timings.prompt_n", "timings.prompt_ms", PROBABILITIES + ".*.token", PROBABILITIES + ".*.logprob");
+        recordUsage(usage, longValue(values.get("tokens_evaluated")), longValue(values.get("timings.prompt_n")),
+                longValue(values.get("timings.prompt_ms")), longValue(values.get("tokens_predicted")));
+        readLogprobs(values, PROBABILITIES, usage);
+        return values.get("content");
+    }
+
+    // tokens_evaluated 为 Prompt 总 token 数，timings.prompt_n 为本次实际计算的部分，差值即复用的 KV 缓存；
+    // tokens_predicted 为生成的 token 数
+    private static void recordUsage(TokenUsage usage, long promptTokens, long evaluated, long prefillMillis,
+                                    long predicted) {
+        long cached = promptTokens >= 0 && evaluated >= 0 ? Math.max(0, promptTokens - evaluated) : -1;
+        usage.prompt(promptTokens, cached, prefillMillis);
+        usage.completion(predicted);
+    }
+
+    // SSE 格式："data: {"content": "...", "stop": false}"
+    @Nullable
+    @Override
+    protected StreamChunk parseStreamLine(String line, TokenUsage usage) {
+        String data = sseData(line);
+        if (data == null) return null;
+        try {
+            JSONObject chunk = new JSONObject(data);
+            readLogprobs(chunk.optJSONArray(PROBABILITIES), usage);
+            JSONObject timings = chunk.optJSONObject("timings");
+            if (chunk.optBoolean("stop") && timings != null) {
+                recordUsage(usage, chunk.optLong("tokens_evaluated", -1), timings.optLong("prompt_n", -1),
+                        timings.optLong("prompt_ms", -1), chunk.optLong("tokens_predicted", -1));
+            }
+            return new StreamChunk(chunk.optString("content", null), chunk.optBoolean("stop"));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
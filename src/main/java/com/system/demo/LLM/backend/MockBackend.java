@@ -0,0 +1,103 @@
+package com.system.demo.LLM.backend;
+
+import com.system.demo.LLM.CancellationToken;
+import com.system.demo.LLM.LLMClient;
+import com.system.demo.LLM.LLMRequest;
+import com.system.demo.LLM.cache.Fingerprint;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 进程内的确定性后端：不访问网络，同一 Prompt 总是返回同样的结果。
+ * 用于离线调试、演示以及把缓存/调度等本地开销和模型延迟分开测量。
+ */
+public class MockBackend implements LLMBackend {
+    public static final String ID = "mock";
+    // 流式输出时每段的字符数
+    private static final int CHUNK_CHARS = 4;
+
+    @NotNull
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return "Mock（本地确定性结果，不联网）";
+    }
+
+    @NotNull
+    @Override
+    public String getDefaultUrl() {
+        return "";
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<String> complete(@NotNull LLMRequest request, @NotNull CancellationToken cancellation) {
+        return CompletableFuture.completedFuture(cancellation.isCancelled() ? null : completionFor(request));
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<List<String>> completeBatch(@NotNull List<LLMRequest> requests,
+                                                         @NotNull CancellationToken cancellation) {
+        if (cancellation.isCancelled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<String> results = new ArrayList<>(requests.size());
+        for (LLMRequest request : requests) {
+            results.add(completionFor(request));
+        }
+        return CompletableFuture.completedFuture(results);
+    }
+
+    @Override
+    public int maxCandidates() {
+        return 8;
+    }
+
+    // 第一个候选与 complete 的结果相同，其余在末尾加序号
+    @NotNull
+    @Override
+    public CompletableFuture<List<String>> completeCandidates(@NotNull LLMRequest request,
+                                                              @NotNull CancellationToken cancellation) {
+        if (cancellation.isCancelled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String completion = completionFor(request);
+        List<String> results = new ArrayList<>(request.candidates);
+        results.add(completion);
+        for (int i = 1; i < request.candidates; i++) {
+            results.add(completion.substring(0, completion.length() - 3) + "_" + i + "();");
+        }
+        return CompletableFuture.completedFuture(results);
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<String> stream(@NotNull LLMRequest request, int maxChars,
+                                            @NotNull LLMClient.StreamListener listener,
+                                            @NotNull CancellationToken cancellation) {
+        String completion = completionFor(request);
+        int end = maxChars > 0 ? Math.min(maxChars, completion.length()) : completion.length();
+        for (int i = CHUNK_CHARS; ; i += CHUNK_CHARS) {
+            if (cancellation.isCancelled()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            listener.onPartial(completion.substring(0, Math.min(i, end)));
+            if (i >= end) break;
+        }
+        return CompletableFuture.completedFuture(completion.substring(0, end));
+    }
+
+    private static String completionFor(LLMRequest request) {
+        String hex = Fingerprint.toHex(Fingerprint.of(request.prompt));
+        return "mock_" + request.operation.name().toLowerCase() + "_" + hex.substring(0, 8) + "();";
+    }
+}
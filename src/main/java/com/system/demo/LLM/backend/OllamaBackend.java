@@ -0,0 +1,102 @@
+package com.system.demo.LLM.backend;
+
+import com.system.demo.LLM.LLMRequest;
+import com.system.demo.LLM.LLMSettings;
+import com.system.demo.LLM.ModelRoute;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ollama 原生补全接口（/api/generate）。流式响应为逐行 JSON（NDJSON），
+ * 不经过 OpenAI 兼容层的消息模板转换；keep_alive 让模型常驻内存，避免冷启动加载。
+ */
+public class OllamaBackend extends HttpLLMBackend {
+    public static final String ID = "ollama";
+    private static final String DEFAULT_MODEL = "qwen2.5-coder:1.5b";
+    private static final String KEEP_ALIVE = "30m";
+
+    @NotNull
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return "Ollama (/api/generate)";
+    }
+
+    @NotNull
+    @Override
+    public String getDefaultUrl() {
+        return "http://127.0.0.1:11434/api/generate";
+    }
+
+    // 不带 prompt 的 generate 请求只加载模型并刷新 keep_alive
+    @Nullable
+    @Override
+    protected Request warmUpRequest(ModelRoute route) {
+        JSONObject json = new JSONObject();
+        json.put("model", route.modelOr(DEFAULT_MODEL));
+        json.put("keep_alive", KEEP_ALIVE);
+        return new Request.Builder()
+                .url(route.effectiveUrl())
+                .post(RequestBody.create(json.toString(), JSON))
+                .build();
+    }
+
+    @Override
+    protected void writeBody(JsonWriter json, LLMRequest request, LLMSettings settings, boolean stream)
+            throws IOException {
+        json.beginObject()
+                .name("model").value(request.route.modelOr(DEFAULT_MODEL))
+                .name("system").value(SYSTEM_PROMPT)
+                .name("prompt").value(request.prompt)
+                .name("stream").value(stream)
+                .name("keep_alive").value(KEEP_ALIVE)
+                .name("options").beginObject()
+                .name("num_predict").value(request.maxTokens)
+                .name("temperature").value(request.temperature);
+        writeStop(json, chatStop(request.stop), 0);
+        json.endObject()
+                .endObject();
+    }
+
+    @Override
+    protected String parseCompletion(JsonReader response, TokenUsage usage) throws IOException {
+        Map<String, String> values = response.readValues("response", "prompt_eval_duration", "eval_count");
+        recordUsage(usage, longValue(values.get("prompt_eval_duration")), longValue(values.get("eval_count")));
+        return values.get("response");
+    }
+
+    // Ollama 只返回实际计算的 Prompt token 数（不含复用的前缀），无法得到命中比例，只记录预填充耗时（纳秒）；
+    // Prompt token 数由 TokenUsage 按字符数估算，生成的 token 数为 eval_count
+    private static void recordUsage(TokenUsage usage, long promptEvalNanos, long evalCount) {
+        usage.prompt(-1, -1, promptEvalNanos >= 0 ? TimeUnit.NANOSECONDS.toMillis(promptEvalNanos) : -1);
+        usage.completion(evalCount);
+    }
+
+    // 每行一个 JSON：{"response": "...", "done": false}
+    @Nullable
+    @Override
+    protected StreamChunk parseStreamLine(String line, TokenUsage usage) {
+        if (line.trim().isEmpty()) return null;
+        try {
+            JSONObject chunk = new JSONObject(line);
+            if (chunk.optBoolean("done")) {
+                recordUsage(usage, chunk.optLong("prompt_eval_duration", -1), chunk.optLong("eval_count", -1));
+            }
+            return new StreamChunk(chunk.optString("response", null), chunk.optBoolean("done"));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
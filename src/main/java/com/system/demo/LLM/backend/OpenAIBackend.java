@@ -0,0 +1,147 @@
+package com.system.demo.LLM.backend;
+
+import com.system.demo.LLM.LLMRequest;
+import com.system.demo.LLM.LLMSettings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OpenAI 兼容的 Chat Completions 接口（/v1/chat/completions，SSE 流式）
+ */
+public class OpenAIBackend extends HttpLLMBackend {
+    public static final String ID = "openai";
+    // Chat Completions 最多接受 4 个停止序列
+    private static final int MAX_STOP_SEQUENCES = 4;
+    private static final String CONTENT = "choices.0.message.content";
+    private static final String PROMPT_TOKENS = "usage.prompt_tokens";
+    private static final String CACHED_TOKENS = "usage.prompt_tokens_details.cached_tokens";
+    private static final String COMPLETION_TOKENS = "usage.completion_tokens";
+    private static final String LOGPROBS = "choices.0.logprobs.content";
+
+    @NotNull
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return "OpenAI 兼容 (Chat Completions)";
+    }
+
+    @NotNull
+    @Override
+    public String getDefaultUrl() {
+        return "https://api.openai.com/v1/chat/completions";
+    }
+
+    @Override
+    protected boolean requiresApiKey() {
+        return true;
+    }
+
+    @Override
+    protected void writeBody(JsonWriter json, LLMRequest request, LLMSettings settings, boolean stream)
+            throws IOException {
+        json.beginObject()
+                .name("model").value(request.route.modelOr("gpt-4o-mini"))
+                .name("max_tokens").value(request.maxTokens)
+                .name("temperature").value(request.temperature);
+        if (request.candidates > 1 && !stream) {
+            json.name("n").value(request.candidates);
+        }
+        if (request.logprobs) {
+            json.name("logprobs").value(true);
+        }
+        writeStop(json, chatStop(request.stop), MAX_STOP_SEQUENCES);
+        if (stream) {
+            // 最后一个事件附带 usage，用于统计缓存命中的 Prompt token 和 token 预算
+            json.name("stream").value(true)
+                    .name("stream_options").beginObject().name("include_usage").value(true).endObject();
+        }
+        if (request.promptCacheKey != null) {
+            json.name("prompt_cache_key").value(request.promptCacheKey);
+        }
+        json.name("messages").beginArray()
+                .beginObject().name("role").value("system").name("content").value(SYSTEM_PROMPT).endObject()
+                .beginObject().name("role").value("user").name("content").value(request.prompt).endObject()
+                .endArray();
+        json.endObject();
+    }
+
+    @Override
+    protected String parseCompletion(JsonReader response, TokenUsage usage) throws IOException {
+        Map<String, String> values = response.readValues(CONTENT, PROMPT_TOKENS, CACHED_TOKENS, COMPLETION_TOKENS,
+                LOGPROBS + ".*.token", LOGPROBS + ".*.logprob");
+        usage.prompt(longValue(values.get(PROMPT_TOKENS)), longValue(values.get(CACHED_TOKENS)), -1);
+        usage.completion(longValue(values.get(COMPLETION_TOKENS)));
+        readLogprobs(values, LOGPROBS, usage);
+        return values.get(CONTENT);
+    }
+
+    @Override
+    protected boolean supportsCandidates() {
+        return true;
+    }
+
+    // 每个候选在 choices[i].message.content，一次遍历读出全部候选和用量
+    @Override
+    protected List<String> parseCandidates(JsonReader response, int count, TokenUsage usage) throws IOException {
+        String[] paths = new String[count + 3];
+        for (int i = 0; i < count; i++) {
+            paths[i] = "choices." + i + ".message.content";
+        }
+        paths[count] = PROMPT_TOKENS;
+        paths[count + 1] = CACHED_TOKENS;
+        paths[count + 2] = COMPLETION_TOKENS;
+        Map<String, String> values = response.readValues(paths);
+        usage.prompt(longValue(values.get(PROMPT_TOKENS)), longValue(values.get(CACHED_TOKENS)), -1);
+        usage.completion(longValue(values.get(COMPLETION_TOKENS)));
+        List<String> candidates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            candidates.add(values.get(paths[i]));
+        }
+        return candidates;
+    }
+
+    private static void recordUsage(@Nullable JSONObject json, TokenUsage usage) {
+        if (json == null) return;
+        JSONObject details = json.optJSONObject("prompt_tokens_details");
+        usage.prompt(json.optLong("prompt_tokens", -1), details != null ? details.optLong("cached_tokens", -1) : -1, -1);
+        usage.completion(json.optLong("completion_tokens", -1));
+    }
+
+    // SSE 格式：每个事件一行 "data: {...}"，增量在 choices[0].delta.content，以 "data: [DONE]" 结束；
+    // 请求了 logprobs 时本段 token 的对数概率在 choices[0].logprobs.content
+    @Nullable
+    @Override
+    protected StreamChunk parseStreamLine(String line, TokenUsage usage) {
+        String data = sseData(line);
+        if (data == null) return null;
+        if (data.equals("[DONE]")) return StreamChunk.END;
+        try {
+            JSONObject chunk = new JSONObject(data);
+            recordUsage(chunk.optJSONObject("usage"), usage);
+            JSONArray choices = chunk.optJSONArray("choices");
+            if (choices == null || choices.length() == 0) return null;
+            JSONObject choice = choices.getJSONObject(0);
+            JSONObject logprobs = choice.optJSONObject("logprobs");
+            if (logprobs != null) {
+                readLogprobs(logprobs.optJSONArray("content"), usage);
+            }
+            JSONObject delta = choice.optJSONObject("delta");
+            if (delta == null) return null;
+            return new StreamChunk(delta.optString("content", null), false);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
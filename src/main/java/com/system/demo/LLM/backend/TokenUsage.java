@@ -0,0 +1,76 @@
+package com.system.demo.LLM.backend;
+
+import com.system.demo.LLM.ConfidenceGate;
+import com.system.demo.LLM.LLMMetrics;
+import com.system.demo.LLM.TokenBudget;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 一次调用中服务端返回的 token 用量，由子类在解析响应时填写，调用结束后计入 {@link TokenBudget}。
+ * 服务端没有返回的部分按字符数估算。
+ * 请求了对数概率时，生成的每个 token 也记在这里，交给 {@link ConfidenceGate} 判断置信度。
+ */
+public final class TokenUsage {
+    private long promptTokens = -1;
+    private long completionTokens = -1;
+    // 收到了成功的响应（服务端已经处理了 Prompt）
+    private boolean received;
+    private final ConfidenceGate.Tracker confidence = new ConfidenceGate.Tracker();
+    // 本次调用请求了对数概率，否则忽略响应中的 logprobs
+    private final boolean logprobs;
+
+    TokenUsage(boolean logprobs) {
+        this.logprobs = logprobs;
+    }
+
+    /**
+     * Prompt 用量：总 token 数、命中缓存的 token 数、预填充耗时，未知的传 -1
+     */
+    public void prompt(long promptTokens, long cachedTokens, long prefillMillis) {
+        if (promptTokens >= 0) {
+            this.promptTokens = promptTokens;
+            LLMMetrics.add(LLMMetrics.PROMPT_TOKENS, promptTokens);
+        }
+        if (cachedTokens >= 0) LLMMetrics.add(LLMMetrics.PROMPT_CACHED_TOKENS, cachedTokens);
+        if (prefillMillis >= 0) LLMMetrics.recordLatency(LLMMetrics.PROMPT_PREFILL, prefillMillis);
+    }
+
+    /**
+     * 生成的 token 数，未知时传 -1
+     */
+    public void completion(long completionTokens) {
+        if (completionTokens >= 0) {
+            this.completionTokens = completionTokens;
+        }
+    }
+
+    /**
+     * 生成的一个 token 及其对数概率（请求了 logprobs 时）
+     */
+    public void token(@Nullable String text, double logprob) {
+        if (logprobs) {
+            confidence.add(text, logprob);
+        }
+    }
+
+    ConfidenceGate.Tracker confidence() {
+        return confidence;
+    }
+
+    void received() {
+        received = true;
+    }
+
+    /**
+     * 计入预算的 Prompt token 数：没有收到响应时为 0（请求没有被处理）
+     */
+    long promptTokens(String prompt) {
+        if (!received) return 0;
+        return promptTokens >= 0 ? promptTokens : TokenBudget.estimateTokens(prompt);
+    }
+
+    long completionTokens(@Nullable String completion) {
+        if (!received) return 0;
+        return completionTokens >= 0 ? completionTokens : TokenBudget.estimateTokens(completion);
+    }
+}
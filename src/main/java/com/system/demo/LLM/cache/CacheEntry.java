@@ -0,0 +1,38 @@
+package com.system.demo.LLM.cache;
+
+/**
+ * 缓存条目，记录结果和估算的内存占用
+ */
+public class CacheEntry {
+    // 对象头、引用、LinkedHashMap 节点和键的大致开销
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    public final String result;
+    public final long timestamp;
+    // 生成时所在代码区域的结构指纹，0 表示不绑定区域（如整文件上下文）
+    public final long regionFingerprint;
+
+    public CacheEntry(String result, long regionFingerprint) {
+        this(result, regionFingerprint, System.currentTimeMillis());
+    }
+
+    public CacheEntry(String result, long regionFingerprint, long timestamp) {
+        this.result = result;
+        this.regionFingerprint = regionFingerprint;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * 条目是否仍适用于当前区域
+     */
+    public boolean matchesRegion(long currentRegionFingerprint) {
+        return regionFingerprint == 0 || regionFingerprint == currentRegionFingerprint;
+    }
+
+    /**
+     * 估算占用字节数（字符串按 UTF-16 计）
+     */
+    public int weight() {
+        return ENTRY_OVERHEAD_BYTES + 2 * result.length();
+    }
+}
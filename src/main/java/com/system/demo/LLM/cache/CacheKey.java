@@ -0,0 +1,34 @@
+package com.system.demo.LLM.cache;
+
+import com.system.demo.LLM.LLMOperation;
+
+/**
+ * 缓存键：操作类型 + 上下文内容指纹
+ */
+public final class CacheKey {
+    public final LLMOperation operation;
+    public final long fingerprint;
+
+    public CacheKey(LLMOperation operation, long fingerprint) {
+        this.operation = operation;
+        this.fingerprint = fingerprint;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CacheKey)) return false;
+        CacheKey other = (CacheKey) o;
+        return fingerprint == other.fingerprint && operation == other.operation;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (fingerprint ^ (fingerprint >>> 32)) * 31 + operation.ordinal();
+    }
+
+    @Override
+    public String toString() {
+        return operation + ":" + Fingerprint.toHex(fingerprint);
+    }
+}
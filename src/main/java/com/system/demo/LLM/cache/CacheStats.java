@@ -0,0 +1,36 @@
+package com.system.demo.LLM.cache;
+
+/**
+ * 缓存统计快照
+ */
+public class CacheStats {
+    public final int entries;
+    public final long bytes;
+    public final long maxBytes;
+    public final long hits;
+    public final long misses;
+    // 未命中中因区域结构变化而被拒绝的次数
+    public final long stale;
+    public final long evictions;
+
+    public CacheStats(int entries, long bytes, long maxBytes, long hits, long misses, long stale, long evictions) {
+        this.entries = entries;
+        this.bytes = bytes;
+        this.maxBytes = maxBytes;
+        this.hits = hits;
+        this.misses = misses;
+        this.stale = stale;
+        this.evictions = evictions;
+    }
+
+    public double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("缓存: %d 条, %d/%d KB, 命中 %d, 未命中 %d (区域已变化 %d), 命中率 %.1f%%, 淘汰 %d",
+                entries, bytes / 1024, maxBytes / 1024, hits, misses, stale, hitRate() * 100, evictions);
+    }
+}
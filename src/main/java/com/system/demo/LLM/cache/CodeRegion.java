@@ -0,0 +1,141 @@
+package com.system.demo.LLM.cache;
+
+/**
+ * 光标所在的结构区域（方法/类），用于判断缓存的补全是否仍然有效。
+ * 花括号语言按括号配对查找；没有外层括号时（如 Python）按缩进查找 def/class 块。
+ */
+public final class CodeRegion {
+    public final int start;
+    public final int end;
+    // 区域文本的结构指纹（连续空白折叠为一个空格，只改格式不会失效）；不含光标所在行，
+    // 该行由缓存键的上下文和光标前内容的衔接检查负责，在同一行继续输入时指纹不变
+    public final long fingerprint;
+
+    private CodeRegion(int start, int end, long fingerprint) {
+        this.start = start;
+        this.end = end;
+        this.fingerprint = fingerprint;
+    }
+
+    public static CodeRegion enclosing(CharSequence text, int offset) {
+        offset = Math.max(0, Math.min(offset, text.length()));
+        int[] range = braceRegion(text, offset);
+        if (range == null) {
+            range = indentRegion(text, offset);
+        }
+        int caretLineStart = Math.max(range[0], lineStart(text, offset));
+        int caretLineEnd = Math.max(caretLineStart, Math.min(range[1], lineEnd(text, lineStart(text, offset))));
+        long fingerprint = Fingerprint.combine(structuralFingerprint(text, range[0], caretLineStart),
+                structuralFingerprint(text, caretLineEnd, range[1]));
+        return new CodeRegion(range[0], range[1], fingerprint);
+    }
+
+    public static long structuralFingerprint(CharSequence text, int start, int end) {
+        StringBuilder normalized = new StringBuilder(end - start);
+        boolean inSpace = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                inSpace = true;
+                continue;
+            }
+            if (inSpace && normalized.length() > 0) normalized.append(' ');
+            inSpace = false;
+            normalized.append(c);
+        }
+        return Fingerprint.of(normalized);
+    }
+
+    // 向前找到未闭合的 '{'，区域从其所在的签名行开始，到配对的 '}' 结束（未闭合时到文件末尾）
+    private static int[] braceRegion(CharSequence text, int offset) {
+        int open = -1;
+        int balance = 0;
+        for (int i = offset - 1; i >= 0; i--) {
+            char c = text.charAt(i);
+            if (c == '}') balance++;
+            else if (c == '{' && balance-- == 0) {
+                open = i;
+                break;
+            }
+        }
+        if (open < 0) return null;
+
+        int start = lineStart(text, open);
+        // '{' 单独成行时（Allman 风格），把上一行的签名也包含进来
+        if (text.subSequence(start, open).toString().trim().isEmpty() && start > 0) {
+            start = lineStart(text, start - 1);
+        }
+
+        int end = text.length();
+        balance = 0;
+        for (int i = open + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '{') balance++;
+            else if (c == '}' && balance-- == 0) {
+                end = i + 1;
+                break;
+            }
+        }
+        return new int[]{start, end};
+    }
+
+    // 按缩进查找外层 def/class 块，找不到时整个文件作为一个区域
+    private static int[] indentRegion(CharSequence text, int offset) {
+        int caretLineStart = lineStart(text, offset);
+        int minIndent = isBlankLine(text, caretLineStart) ? Integer.MAX_VALUE : indentOf(text, caretLineStart);
+
+        int headerStart = -1;
+        int headerIndent = 0;
+        int line = caretLineStart;
+        while (line > 0) {
+            line = lineStart(text, line - 1);
+            if (isBlankLine(text, line)) continue;
+            int indent = indentOf(text, line);
+            if (indent >= minIndent) continue;
+            minIndent = indent;
+            String head = text.subSequence(line + indent, lineEnd(text, line)).toString();
+            if (head.startsWith("def ") || head.startsWith("async def ") || head.startsWith("class ")) {
+                headerStart = line;
+                headerIndent = indent;
+                break;
+            }
+        }
+        if (headerStart < 0) {
+            return new int[]{0, text.length()};
+        }
+
+        int end = text.length();
+        line = lineEnd(text, caretLineStart) + 1;
+        while (line < text.length()) {
+            if (!isBlankLine(text, line) && indentOf(text, line) <= headerIndent) {
+                end = line;
+                break;
+            }
+            line = lineEnd(text, line) + 1;
+        }
+        return new int[]{headerStart, end};
+    }
+
+    private static int lineStart(CharSequence text, int offset) {
+        int i = Math.min(offset, text.length());
+        while (i > 0 && text.charAt(i - 1) != '\n') i--;
+        return i;
+    }
+
+    private static int lineEnd(CharSequence text, int lineStart) {
+        int i = lineStart;
+        while (i < text.length() && text.charAt(i) != '\n') i++;
+        return i;
+    }
+
+    private static int indentOf(CharSequence text, int lineStart) {
+        int i = lineStart;
+        while (i < text.length() && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) i++;
+        return i - lineStart;
+    }
+
+    private static boolean isBlankLine(CharSequence text, int lineStart) {
+        int i = lineStart + indentOf(text, lineStart);
+        return i >= text.length() || text.charAt(i) == '\n' || text.charAt(i) == '\r';
+    }
+}
@@ -0,0 +1,140 @@
+package com.system.demo.LLM.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 线程安全的补全缓存：按键哈希分段加锁，每段一个访问有序的 LinkedHashMap（LRU），
+ * 按估算字节数而不是条目数限制容量。条目不按时间过期，读取时按代码区域指纹校验（见 {@link CacheEntry#matchesRegion}）。
+ */
+public class CompletionCache {
+    private static final int SEGMENT_COUNT = 16; // 必须是 2 的幂
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private volatile long maxBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CompletionCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private Segment segmentFor(CacheKey key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    private long segmentBudget() {
+        return Math.max(1, maxBytes / SEGMENT_COUNT);
+    }
+
+    /**
+     * 查找适用于当前区域的条目；区域结构已变化的条目按未命中统计并返回 null。
+     * 不删除这类条目：区域恢复原样（如撤销）后仍可命中，新结果会覆盖它
+     */
+    public CacheEntry get(CacheKey key, long regionFingerprint) {
+        Segment segment = segmentFor(key);
+        CacheEntry entry;
+        segment.lock.lock();
+        try {
+            entry = segment.map.get(key);
+        } finally {
+            segment.lock.unlock();
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (!entry.matchesRegion(regionFingerprint)) {
+            misses.increment();
+            stale.increment();
+            return null;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    public void put(CacheKey key, CacheEntry entry) {
+        Segment segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            CacheEntry old = segment.map.put(key, entry);
+            if (old != null) segment.bytes -= old.weight();
+            segment.bytes += entry.weight();
+            evict(segment, segmentBudget());
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    // 从最久未访问的条目开始淘汰，直到回到预算内（至少保留刚写入的一条）
+    private void evict(Segment segment, long budget) {
+        Iterator<CacheEntry> it = segment.map.values().iterator();
+        while (segment.bytes > budget && segment.map.size() > 1 && it.hasNext()) {
+            CacheEntry eldest = it.next();
+            it.remove();
+            segment.bytes -= eldest.weight();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 调整容量，超出部分立即淘汰
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        long budget = segmentBudget();
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                evict(segment, budget);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.map.clear();
+                segment.bytes = 0;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    public CacheStats stats() {
+        int entries = 0;
+        long bytes = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                entries += segment.map.size();
+                bytes += segment.bytes;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return new CacheStats(entries, bytes, maxBytes, hits.sum(), misses.sum(), stale.sum(), evictions.sum());
+    }
+
+    // 每个分段一把锁，只保护本分段的 map 和 bytes
+    private static final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<CacheKey, CacheEntry> map = new LinkedHashMap<>(16, 0.75f, true);
+        long bytes;
+    }
+}
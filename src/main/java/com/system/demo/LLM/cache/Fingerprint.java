@@ -0,0 +1,53 @@
+package com.system.demo.LLM.cache;
+
+/**
+ * 稳定的 64 位内容指纹（FNV-1a + murmur3 fmix64 扰动）。
+ * 只依赖字符内容，不同 JVM / 重启之间结果一致，可用于持久化。
+ */
+public final class Fingerprint {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Fingerprint() {
+    }
+
+    public static long of(CharSequence text) {
+        if (text == null) return 0L;
+        return of(text, 0, text.length());
+    }
+
+    public static long of(CharSequence text, int start, int end) {
+        long h = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            h ^= (c & 0xff);
+            h *= FNV_PRIME;
+            h ^= (c >>> 8);
+            h *= FNV_PRIME;
+        }
+        return mix(h ^ (end - start));
+    }
+
+    /**
+     * 组合两个指纹（顺序相关）
+     */
+    public static long combine(long a, long b) {
+        return mix(a * 31 + b);
+    }
+
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public static String toHex(long fingerprint) {
+        String hex = Long.toHexString(fingerprint);
+        StringBuilder sb = new StringBuilder(16);
+        for (int i = hex.length(); i < 16; i++) sb.append('0');
+        return sb.append(hex).toString();
+    }
+}
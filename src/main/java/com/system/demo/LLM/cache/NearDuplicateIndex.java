@@ -0,0 +1,323 @@
+package com.system.demo.LLM.cache;
+
+import com.system.demo.LLM.LLMOperation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 近似重复上下文的第二级查找：
+ * <ol>
+ *   <li>归一化 token 指纹：忽略空白和注释后完全相同的上下文直接命中</li>
+ *   <li>MinHash + LSH 分桶：与最近缓存的上下文相似度达到阈值时复用其结果</li>
+ * </ol>
+ * 复用前要求缓存结果仍与当前行光标前的内容衔接（用户已经输入的部分必须是建议的前缀），
+ * 且生成时所在区域的结构指纹与当前相同（与精确命中相同的 {@link CacheEntry#matchesRegion} 规则），
+ * 否则不返回。与精确缓存键相同，条目按操作类型和路由（后端 + 模型）分开，不同模型的结果互不复用。只保存最近的 {@link #CAPACITY} 条上下文。
+ */
+public class NearDuplicateIndex {
+    private static final int CAPACITY = 1024;
+    private static final int SHINGLE = 3;
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final int HASHES = BANDS * ROWS;
+    private static final long[] SEEDS = createSeeds();
+    // 相似度分布按 0.05 分桶，便于调阈值
+    private static final int SIMILARITY_BUCKETS = 20;
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final Map<Long, Entry> byNormalized = new HashMap<>();
+    private final List<Map<Long, Set<Entry>>> bands = new ArrayList<>(BANDS);
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder normalizedHits = new LongAdder();
+    private final LongAdder similarHits = new LongAdder();
+    private final LongAdder belowThreshold = new LongAdder();
+    private final LongAdder prefixRejects = new LongAdder();
+    private final LongAdder regionRejects = new LongAdder();
+    private final AtomicLongArray similarityHistogram = new AtomicLongArray(SIMILARITY_BUCKETS + 1);
+
+    public NearDuplicateIndex() {
+        for (int i = 0; i < BANDS; i++) {
+            bands.add(new HashMap<>());
+        }
+    }
+
+    private static long[] createSeeds() {
+        long[] seeds = new long[HASHES];
+        long x = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < HASHES; i++) {
+            x += 0x9E3779B97F4A7C15L;
+            seeds[i] = Fingerprint.mix(x);
+        }
+        return seeds;
+    }
+
+    /**
+     * 查找近似重复的上下文，返回已按当前光标前内容调整过的建议，找不到时返回 null
+     *
+     * @param route 请求路由（后端 + 模型）的指纹，只复用同一路由生成的结果
+     * @param regionFingerprint 当前区域的结构指纹，区域结构已变化的条目不使用
+     * @param threshold 估算的 Jaccard 相似度阈值（0~1）
+     */
+    public String find(LLMOperation operation, long route, String context, String cursorPrefix,
+                       long regionFingerprint, double threshold) {
+        lookups.increment();
+        long scope = scopeOf(operation, route);
+        List<Long> tokens = tokenize(context);
+        long normalized = normalizedFingerprint(scope, tokens);
+
+        Entry best;
+        double bestSimilarity;
+        boolean regionMismatch = false;
+        synchronized (this) {
+            best = byNormalized.get(normalized);
+            if (best != null && !matchesRegion(best, regionFingerprint)) {
+                regionMismatch = true;
+                best = null;
+            }
+            bestSimilarity = best != null ? 1.0 : 0;
+            if (best == null) {
+                long[] signature = signature(tokens);
+                Set<Entry> candidates = new HashSet<>();
+                for (int band = 0; band < BANDS; band++) {
+                    Set<Entry> bucket = bands.get(band).get(bandHash(scope, signature, band));
+                    if (bucket != null) candidates.addAll(bucket);
+                }
+                for (Entry candidate : candidates) {
+                    double similarity = similarity(signature, candidate.signature);
+                    if (!matchesRegion(candidate, regionFingerprint)) {
+                        regionMismatch |= similarity >= threshold;
+                        continue;
+                    }
+                    if (similarity > bestSimilarity) {
+                        bestSimilarity = similarity;
+                        best = candidate;
+                    }
+                }
+            }
+        }
+
+        similarityHistogram.incrementAndGet((int) Math.floor(bestSimilarity * SIMILARITY_BUCKETS));
+        if (best == null || bestSimilarity < threshold) {
+            if (regionMismatch) regionRejects.increment();
+            else belowThreshold.increment();
+            return null;
+        }
+
+        String adjusted = fitToPrefix(best, cursorPrefix);
+        if (adjusted == null) {
+            prefixRejects.increment();
+            return null;
+        }
+        if (bestSimilarity >= 1.0) normalizedHits.increment();
+        else similarHits.increment();
+        return adjusted;
+    }
+
+    /**
+     * @param route 生成结果的路由（后端 + 模型）的指纹
+     * @param regionFingerprint 生成时所在区域的结构指纹，0 表示不绑定区域
+     */
+    public void add(LLMOperation operation, long route, String context, String cursorPrefix,
+                    long regionFingerprint, String suggestion) {
+        long scope = scopeOf(operation, route);
+        List<Long> tokens = tokenize(context);
+        Entry entry = new Entry(normalizedFingerprint(scope, tokens), scope,
+                signature(tokens), cursorPrefix != null ? cursorPrefix : "", regionFingerprint, suggestion);
+        synchronized (this) {
+            Entry old = byNormalized.put(entry.normalized, entry);
+            if (old != null) {
+                entries.remove(old);
+                unindex(old);
+            }
+            entries.addLast(entry);
+            for (int band = 0; band < BANDS; band++) {
+                bands.get(band).computeIfAbsent(bandHash(scope, entry.signature, band), k -> new HashSet<>()).add(entry);
+            }
+            while (entries.size() > CAPACITY) {
+                Entry eldest = entries.removeFirst();
+                byNormalized.remove(eldest.normalized, eldest);
+                unindex(eldest);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        byNormalized.clear();
+        for (Map<Long, Set<Entry>> band : bands) {
+            band.clear();
+        }
+    }
+
+    private void unindex(Entry entry) {
+        for (int band = 0; band < BANDS; band++) {
+            long hash = bandHash(entry.scope, entry.signature, band);
+            Set<Entry> bucket = bands.get(band).get(hash);
+            if (bucket != null) {
+                bucket.remove(entry);
+                if (bucket.isEmpty()) bands.get(band).remove(hash);
+            }
+        }
+    }
+
+    // 与 CacheEntry#matchesRegion 相同：不绑定区域，或区域结构未变化
+    private static boolean matchesRegion(Entry entry, long regionFingerprint) {
+        return entry.regionFingerprint == 0 || entry.regionFingerprint == regionFingerprint;
+    }
+
+    // 缓存的建议只有在"用户之后输入的内容恰好是建议的开头"时才能继续使用
+    private static String fitToPrefix(Entry entry, String cursorPrefix) {
+        String current = cursorPrefix != null ? cursorPrefix : "";
+        String suggestion = entry.suggestion;
+        if (suggestion.startsWith(entry.cursorPrefix)) {
+            suggestion = suggestion.substring(entry.cursorPrefix.length());
+        }
+        if (current.equals(entry.cursorPrefix)) {
+            return suggestion;
+        }
+        if (!current.startsWith(entry.cursorPrefix)) {
+            return null;
+        }
+        String typed = current.substring(entry.cursorPrefix.length());
+        if (suggestion.startsWith(typed) && suggestion.length() > typed.length()) {
+            return suggestion.substring(typed.length());
+        }
+        return null;
+    }
+
+    // ==================== 统计 ====================
+
+    public String getStats(double threshold) {
+        long total = lookups.sum();
+        long hits = normalizedHits.sum() + similarHits.sum();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("近似查找: %d 次, 命中 %d (归一化 %d, 相似 %d), 命中率 %.1f%%, 低于阈值 %d, 前缀不符 %d, 区域已变化 %d, 阈值 %.2f",
+                total, hits, normalizedHits.sum(), similarHits.sum(),
+                total == 0 ? 0.0 : hits * 100.0 / total, belowThreshold.sum(), prefixRejects.sum(),
+                regionRejects.sum(), threshold));
+        sb.append("\n相似度分布:");
+        for (int i = 0; i <= SIMILARITY_BUCKETS; i++) {
+            long count = similarityHistogram.get(i);
+            if (count > 0) {
+                sb.append(String.format(" [%.2f]=%d", (double) i / SIMILARITY_BUCKETS, count));
+            }
+        }
+        return sb.toString();
+    }
+
+    // ==================== 归一化与 MinHash ====================
+
+    /**
+     * 把代码切分为 token 哈希序列：忽略空白和注释（//、#、块注释），标识符/数字为一个 token，其余字符各为一个 token
+     */
+    static List<Long> tokenize(CharSequence text) {
+        List<Long> tokens = new ArrayList<>();
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if ((c == '/' && i + 1 < n && text.charAt(i + 1) == '/') || c == '#') {
+                while (i < n && text.charAt(i) != '\n') i++;
+            } else if (c == '/' && i + 1 < n && text.charAt(i + 1) == '*') {
+                int close = indexOf(text, "*/", i + 2);
+                i = close < 0 ? n : close + 2;
+            } else if (Character.isJavaIdentifierPart(c)) {
+                int start = i;
+                while (i < n && Character.isJavaIdentifierPart(text.charAt(i))) i++;
+                tokens.add(Fingerprint.of(text, start, i));
+            } else {
+                tokens.add(Fingerprint.of(text, i, i + 1));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static int indexOf(CharSequence text, String needle, int from) {
+        for (int i = from; i + needle.length() <= text.length(); i++) {
+            boolean match = true;
+            for (int j = 0; j < needle.length() && match; j++) {
+                match = text.charAt(i + j) == needle.charAt(j);
+            }
+            if (match) return i;
+        }
+        return -1;
+    }
+
+    // 操作类型与路由组合，作为归一化指纹和分桶哈希的起点
+    private static long scopeOf(LLMOperation operation, long route) {
+        return Fingerprint.combine(operation.ordinal(), route);
+    }
+
+    private static long normalizedFingerprint(long scope, List<Long> tokens) {
+        long h = scope;
+        for (long token : tokens) {
+            h = Fingerprint.combine(h, token);
+        }
+        return h;
+    }
+
+    private static long[] signature(List<Long> tokens) {
+        long[] signature = new long[HASHES];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        int shingles = Math.max(1, tokens.size() - SHINGLE + 1);
+        for (int s = 0; s < shingles; s++) {
+            long shingle = 0;
+            for (int j = s; j < Math.min(tokens.size(), s + SHINGLE); j++) {
+                shingle = Fingerprint.combine(shingle, tokens.get(j));
+            }
+            for (int i = 0; i < HASHES; i++) {
+                long h = Fingerprint.mix(shingle ^ SEEDS[i]);
+                if (h < signature[i]) signature[i] = h;
+            }
+        }
+        return signature;
+    }
+
+    private static long bandHash(long scope, long[] signature, int band) {
+        long h = Fingerprint.combine(scope, band);
+        for (int row = 0; row < ROWS; row++) {
+            h = Fingerprint.combine(h, signature[band * ROWS + row]);
+        }
+        return h;
+    }
+
+    private static double similarity(long[] a, long[] b) {
+        int same = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) same++;
+        }
+        return (double) same / HASHES;
+    }
+
+    private static final class Entry {
+        final long normalized;
+        final long scope;
+        final long[] signature;
+        final String cursorPrefix;
+        final long regionFingerprint;
+        final String suggestion;
+
+        Entry(long normalized, long scope, long[] signature, String cursorPrefix, long regionFingerprint,
+              String suggestion) {
+            this.normalized = normalized;
+            this.scope = scope;
+            this.signature = signature;
+            this.cursorPrefix = cursorPrefix;
+            this.regionFingerprint = regionFingerprint;
+            this.suggestion = suggestion;
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package com.system.demo.LLM.cache;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.system.demo.LLM.LLMOperation;
+import com.system.demo.LLM.LLMSettings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 项目级磁盘缓存（跨 IDE 重启）：
+ * <ul>
+ *   <li>completions.log：只追加的记录日志，每条记录 = 头部 + UTF-8 结果</li>
+ *   <li>completions.idx：内存映射的开放寻址哈希索引，键 -> 日志偏移</li>
+ * </ul>
+ * 项目打开后在后台线程懒加载；索引与日志不一致时（例如异常退出）扫描日志重建。
+ * 日志超过容量上限或索引槽位过满时在后台压缩：只保留每个键的最新记录，并按时间淘汰最旧的记录。
+ * 加载或压缩期间的读写直接跳过（按未命中处理），不会阻塞补全流程。
+ */
+public class PersistentCompletionCache implements Disposable {
+    private static final Logger LOG = Logger.getInstance(PersistentCompletionCache.class);
+
+    private static final String LOG_FILE = "completions.log";
+    private static final String INDEX_FILE = "completions.idx";
+
+    private static final int RECORD_MAGIC = 0x4C4C5232; // "LLR2"
+    // magic(4) + op(1) + fingerprint(8) + regionFingerprint(8) + timestamp(8) + length(4)
+    private static final int RECORD_HEADER_BYTES = 33;
+    private static final int RECORD_TIMESTAMP_OFFSET = 21;
+    private static final int MAX_VALUE_BYTES = 256 * 1024;
+
+    private static final int INDEX_MAGIC = 0x4C4C4D49; // "LLMI"
+    private static final int INDEX_VERSION = 2;
+    // magic(4) + version(4) + slotCount(4) + used(4) + logLength(8) + reserved(8)
+    private static final int INDEX_HEADER_BYTES = 32;
+    // fingerprint(8) + offset+1(8, 0 表示空槽) + op(4) + recordLength(4)
+    private static final int SLOT_BYTES = 24;
+    private static final int SLOT_COUNT = 1 << 16;
+
+    private final Path dir;
+    private final LongSupplier maxBytes;
+    private final Executor background;
+    // 槽位数（2 的幂）；占用超过 7/10 时压缩，压缩后最多保留一半，保证压缩后低于触发阈值
+    private final int slotCount;
+    private final int maxUsedSlots;
+    private final int maxCompactedSlots;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean loadStarted = new AtomicBoolean();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private volatile boolean loaded;
+    private volatile boolean disposed;
+
+    // 以下字段受 lock 保护
+    private FileChannel log;
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private long logLength;
+    private int usedSlots;
+    private long liveBytes;
+
+    public PersistentCompletionCache(@NotNull Project project) {
+        this(Paths.get(PathManager.getSystemPath(), "llm-completion-cache", project.getLocationHash()),
+                () -> Math.max(1, LLMSettings.getInstance().diskCacheMaxMb) * 1024L * 1024L,
+                task -> ApplicationManager.getApplication().executeOnPooledThread(task), SLOT_COUNT);
+    }
+
+    /**
+     * @param maxBytes   日志容量上限
+     * @param background 执行加载和压缩的线程
+     * @param slotCount  索引槽位数，必须是 2 的幂
+     */
+    PersistentCompletionCache(@NotNull Path dir, @NotNull LongSupplier maxBytes, @NotNull Executor background,
+                              int slotCount) {
+        if (Integer.bitCount(slotCount) != 1) throw new IllegalArgumentException("槽位数必须是 2 的幂: " + slotCount);
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.background = background;
+        this.slotCount = slotCount;
+        this.maxUsedSlots = slotCount * 7 / 10;
+        this.maxCompactedSlots = slotCount / 2;
+    }
+
+    public static PersistentCompletionCache getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, PersistentCompletionCache.class);
+    }
+
+    /**
+     * 在后台线程打开并校验磁盘文件，只执行一次
+     */
+    public void loadInBackground() {
+        if (!loadStarted.compareAndSet(false, true)) return;
+        background.execute(this::load);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Nullable
+    public CacheEntry get(@NotNull CacheKey key) {
+        if (!loaded) return null;
+        // 压缩进行中时不等待，直接按未命中处理
+        if (!lock.readLock().tryLock()) return null;
+        try {
+            if (!loaded) return null;
+            int slot = findSlot(key);
+            if (slot < 0 || isEmpty(slot)) return null;
+            long offset = slotOffset(slot);
+            int length = index.getInt(slotPosition(slot) + 20);
+            return readRecord(key, offset, length);
+        } catch (IOException e) {
+            LOG.warn("读取磁盘缓存失败", e);
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(@NotNull CacheKey key, @NotNull CacheEntry entry) {
+        if (!loaded) return;
+        byte[] value = entry.result.getBytes(StandardCharsets.UTF_8);
+        if (value.length > MAX_VALUE_BYTES) return;
+
+        boolean needCompaction;
+        // 压缩即将开始或正在进行时丢弃本次写入
+        if (compactionScheduled.get()) return;
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            int slot = findSlot(key);
+            if (slot < 0) {
+                needCompaction = true;
+            } else {
+                ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + value.length);
+                record.putInt(RECORD_MAGIC)
+                        .put((byte) key.operation.ordinal())
+                        .putLong(key.fingerprint)
+                        .putLong(entry.regionFingerprint)
+                        .putLong(entry.timestamp)
+                        .putInt(value.length)
+                        .put(value);
+                record.flip();
+
+                long offset = logLength;
+                writeFully(log, record, offset);
+                logLength += record.capacity();
+
+                if (isEmpty(slot)) {
+                    usedSlots++;
+                } else {
+                    liveBytes -= index.getInt(slotPosition(slot) + 20);
+                }
+                liveBytes += record.capacity();
+                writeSlot(slot, key, offset, record.capacity());
+                writeHeader();
+
+                needCompaction = usedSlots > maxUsedSlots || logLength > maxBytes();
+            }
+        } catch (IOException e) {
+            LOG.warn("写入磁盘缓存失败", e);
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (needCompaction) {
+            scheduleCompaction();
+        }
+    }
+
+    public String getStats() {
+        if (!loaded) return "磁盘缓存: 未加载";
+        // 在 EDT 上调用，压缩进行中时不等待
+        if (!lock.readLock().tryLock()) return "磁盘缓存: 正在压缩";
+        try {
+            return String.format("磁盘缓存: %d 条, 有效 %d KB, 日志 %d/%d KB",
+                    usedSlots, liveBytes / 1024, logLength / 1024, maxBytes() / 1024);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long maxBytes() {
+        return maxBytes.getAsLong();
+    }
+
+    // ==================== 加载 ====================
+
+    void load() {
+        lock.writeLock().lock();
+        try {
+            if (disposed) return;
+            Files.createDirectories(dir);
+            log = FileChannel.open(dir.resolve(LOG_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            indexChannel = FileChannel.open(dir.resolve(INDEX_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    INDEX_HEADER_BYTES + (long) slotCount * SLOT_BYTES);
+
+            logLength = log.size();
+            boolean valid = index.getInt(0) == INDEX_MAGIC
+                    && index.getInt(4) == INDEX_VERSION
+                    && index.getInt(8) == slotCount
+                    && index.getLong(16) == logLength;
+            if (valid) {
+                usedSlots = index.getInt(12);
+                liveBytes = 0;
+                for (int slot = 0; slot < slotCount; slot++) {
+                    if (!isEmpty(slot)) liveBytes += index.getInt(slotPosition(slot) + 20);
+                }
+            } else {
+                rebuildIndex();
+            }
+            loaded = true;
+        } catch (IOException e) {
+            LOG.warn("打开磁盘缓存失败: " + dir, e);
+            closeQuietly();
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (logLength > maxBytes() || usedSlots > maxUsedSlots) {
+            scheduleCompaction();
+        }
+    }
+
+    // 顺序扫描日志重建索引，遇到损坏的记录时截断日志；索引满时停止索引但保留剩余记录
+    private void rebuildIndex() throws IOException {
+        clearIndex();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        long offset = 0;
+        long size = log.size();
+        LLMOperation[] ops = LLMOperation.values();
+        while (offset + RECORD_HEADER_BYTES <= size) {
+            header.clear();
+            readFully(log, header, offset);
+            header.flip();
+            int magic = header.getInt();
+            int op = header.get();
+            long fingerprint = header.getLong();
+            header.getLong(); // regionFingerprint
+            header.getLong(); // timestamp
+            int length = header.getInt();
+            int recordLength = RECORD_HEADER_BYTES + length;
+            if (magic != RECORD_MAGIC || op < 0 || op >= ops.length
+                    || length < 0 || length > MAX_VALUE_BYTES || offset + recordLength > size) {
+                break;
+            }
+            CacheKey key = new CacheKey(ops[op], fingerprint);
+            int slot = findSlot(key);
+            if (slot < 0) {
+                LOG.info("磁盘缓存索引已满，偏移 " + offset + " 之后的记录未建立索引");
+                logLength = size;
+                writeHeader();
+                return;
+            }
+            if (isEmpty(slot)) {
+                usedSlots++;
+            } else {
+                liveBytes -= index.getInt(slotPosition(slot) + 20);
+            }
+            liveBytes += recordLength;
+            writeSlot(slot, key, offset, recordLength);
+            offset += recordLength;
+        }
+        if (offset < size) {
+            LOG.info("磁盘缓存日志在偏移 " + offset + " 处损坏，已截断");
+            log.truncate(offset);
+        }
+        logLength = offset;
+        writeHeader();
+    }
+
+    // ==================== 压缩 ====================
+
+    private void scheduleCompaction() {
+        if (!compactionScheduled.compareAndSet(false, true)) return;
+        background.execute(() -> {
+            try {
+                compact();
+            } finally {
+                compactionScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * 只保留索引中的有效记录；超过容量或条数上限时按时间从旧到新淘汰，
+     * 压缩到容量的 3/4 且不超过 {@link #maxCompactedSlots} 条
+     */
+    void compact() {
+        lock.writeLock().lock();
+        try {
+            if (!loaded || disposed) return;
+
+            List<long[]> live = new ArrayList<>(usedSlots); // {offset, length, timestamp}
+            ByteBuffer timestamp = ByteBuffer.allocate(8);
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (isEmpty(slot)) continue;
+                long offset = slotOffset(slot);
+                int length = index.getInt(slotPosition(slot) + 20);
+                timestamp.clear();
+                readFully(log, timestamp, offset + RECORD_TIMESTAMP_OFFSET);
+                timestamp.flip();
+                live.add(new long[]{offset, length, timestamp.getLong()});
+            }
+            // 新的在前，超出预算的旧记录被丢弃
+            live.sort((a, b) -> Long.compare(b[2], a[2]));
+            long budget = maxBytes() * 3 / 4;
+            long kept = 0;
+            int keep = 0;
+            while (keep < live.size() && keep < maxCompactedSlots && kept + live.get(keep)[1] <= budget) {
+                kept += live.get(keep)[1];
+                keep++;
+            }
+            List<long[]> retained = new ArrayList<>(live.subList(0, keep));
+            retained.sort((a, b) -> Long.compare(a[2], b[2]));
+
+            Path tmp = dir.resolve(LOG_FILE + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (long[] record : retained) {
+                    long copied = 0;
+                    while (copied < record[1]) {
+                        copied += log.transferTo(record[0] + copied, record[1] - copied, out);
+                    }
+                }
+                out.force(true);
+            }
+            log.close();
+            Files.move(tmp, dir.resolve(LOG_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log = FileChannel.open(dir.resolve(LOG_FILE), StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            long before = liveBytes;
+            rebuildIndex();
+            LOG.info("磁盘缓存压缩完成: " + before / 1024 + " KB -> " + liveBytes / 1024 + " KB, 保留 " + usedSlots + " 条");
+        } catch (IOException e) {
+            LOG.warn("压缩磁盘缓存失败", e);
+            loaded = false;
+            closeQuietly();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== 索引与记录 ====================
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private boolean isEmpty(int slot) {
+        return index.getLong(slotPosition(slot) + 8) == 0;
+    }
+
+    private long slotOffset(int slot) {
+        return index.getLong(slotPosition(slot) + 8) - 1;
+    }
+
+    // 线性探测：返回键所在槽位或第一个空槽，表满时返回 -1
+    private int findSlot(CacheKey key) {
+        int slot = (int) (Fingerprint.mix(key.fingerprint + key.operation.ordinal()) & (slotCount - 1));
+        for (int i = 0; i < slotCount; i++) {
+            int position = slotPosition(slot);
+            if (index.getLong(position + 8) == 0) return slot;
+            if (index.getLong(position) == key.fingerprint && index.getInt(position + 16) == key.operation.ordinal()) {
+                return slot;
+            }
+            slot = (slot + 1) & (slotCount - 1);
+        }
+        return -1;
+    }
+
+    private void writeSlot(int slot, CacheKey key, long offset, int recordLength) {
+        int position = slotPosition(slot);
+        index.putLong(position, key.fingerprint);
+        index.putLong(position + 8, offset + 1);
+        index.putInt(position + 16, key.operation.ordinal());
+        index.putInt(position + 20, recordLength);
+    }
+
+    private void writeHeader() {
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, INDEX_VERSION);
+        index.putInt(8, slotCount);
+        index.putInt(12, usedSlots);
+        index.putLong(16, logLength);
+    }
+
+    private void clearIndex() {
+        int end = slotPosition(slotCount);
+        for (int position = 0; position < end; position += 8) {
+            index.putLong(position, 0L);
+        }
+        usedSlots = 0;
+        liveBytes = 0;
+    }
+
+    @Nullable
+    private CacheEntry readRecord(CacheKey key, long offset, int recordLength) throws IOException {
+        if (recordLength < RECORD_HEADER_BYTES || offset + recordLength > logLength) return null;
+        ByteBuffer record = ByteBuffer.allocate(recordLength);
+        readFully(log, record, offset);
+        record.flip();
+        if (record.getInt() != RECORD_MAGIC
+                || record.get() != key.operation.ordinal()
+                || record.getLong() != key.fingerprint) {
+            return null;
+        }
+        long regionFingerprint = record.getLong();
+        long timestamp = record.getLong();
+        int length = record.getInt();
+        if (length != recordLength - RECORD_HEADER_BYTES) return null;
+        String value = new String(record.array(), RECORD_HEADER_BYTES, length, StandardCharsets.UTF_8);
+        return new CacheEntry(value, regionFingerprint, timestamp);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) throw new IOException("磁盘缓存日志意外结束");
+            position += n;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            if (index != null) index.force();
+        } catch (RuntimeException ignored) {
+        }
+        index = null;
+        try {
+            if (log != null) log.close();
+            if (indexChannel != null) indexChannel.close();
+        } catch (IOException ignored) {
+        }
+        log = null;
+        indexChannel = null;
+    }
+
+    @Override
+    public void dispose() {
+        lock.writeLock().lock();
+        try {
+            disposed = true;
+            loaded = false;
+            closeQuietly();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
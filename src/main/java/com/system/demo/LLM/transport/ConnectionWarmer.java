@@ -0,0 +1,65 @@
+package com.system.demo.LLM.transport;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.system.demo.LLM.LLMSettings;
+import com.system.demo.LLM.ModelRoute;
+import com.system.demo.LLM.ModelRouter;
+import okhttp3.HttpUrl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 连接预热与保活：
+ * <ul>
+ *   <li>项目打开或设置修改后在后台预热，提前完成 DNS、TCP、TLS 和代理握手，第一次补全不再承担这些开销</li>
+ *   <li>本地服务空闲一段时间后定期 ping，防止服务端卸载模型（如 Ollama 默认 5 分钟无请求即卸载）</li>
+ * </ul>
+ * 两者都针对内联补全路由到的后端、地址和模型（{@link ModelRouter#inline}），即输入时实际使用的模型。
+ */
+public final class ConnectionWarmer {
+    // 检查是否需要 ping 的间隔
+    private static final long CHECK_INTERVAL_SECONDS = 30;
+
+    private static final AtomicBoolean pingScheduled = new AtomicBoolean();
+    private static volatile long lastActivityNanos = System.nanoTime();
+
+    private ConnectionWarmer() {
+    }
+
+    /**
+     * 后台预热内联补全路由的连接，并（只一次）启动本地服务保活检查
+     */
+    public static void warmUpInBackground() {
+        LLMSettings settings = LLMSettings.getInstance();
+        if (settings.warmUpEnabled) {
+            ModelRoute route = ModelRouter.inline();
+            route.backend().warmUp(route);
+        }
+        if (pingScheduled.compareAndSet(false, true)) {
+            AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                    ConnectionWarmer::pingIfIdle, CHECK_INTERVAL_SECONDS, CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 有真实请求时调用，推迟下一次 ping
+     */
+    public static void markActivity() {
+        lastActivityNanos = System.nanoTime();
+    }
+
+    private static void pingIfIdle() {
+        LLMSettings settings = LLMSettings.getInstance();
+        if (settings.keepAlivePingSeconds <= 0) return;
+        long idleSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - lastActivityNanos);
+        if (idleSeconds < settings.keepAlivePingSeconds) return;
+
+        ModelRoute route = ModelRouter.inline();
+        HttpUrl url = HttpUrl.parse(route.effectiveUrl());
+        if (url == null || !HttpTransport.isLoopback(url.host())) return;
+
+        markActivity();
+        route.backend().warmUp(route);
+    }
+}
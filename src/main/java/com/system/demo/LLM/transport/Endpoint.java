@@ -0,0 +1,208 @@
+package com.system.demo.LLM.transport;
+
+import com.system.demo.LLM.CircuitBreaker;
+import com.system.demo.LLM.LLMMetrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一个服务节点（同一后端的一个地址）及其运行状态：进行中请求数、延迟 EWMA、连续失败次数。
+ * 被动健康检查：连续失败 {@link #EJECT_AFTER_FAILURES} 次后暂时摘除，摘除时间按次数指数增长；
+ * 主动健康检查（{@link EndpointPool} 定期探测）成功后提前恢复，失败则立即摘除。
+ * 每次请求的结果同时报告给请求路由到的 {@link CircuitBreaker}（{@link Lease#reportTo}）。
+ */
+public final class Endpoint {
+    static final int EJECT_AFTER_FAILURES = 3;
+    private static final long BASE_EJECT_MILLIS = 10_000;
+    private static final long MAX_EJECT_MILLIS = 5 * 60_000;
+    // 新样本的权重
+    private static final double EWMA_ALPHA = 0.3;
+
+    public final String url;
+
+    private int outstanding;
+    private long requests;
+    private long failures;
+    private double ewmaMillis = -1;
+    private int consecutiveFailures;
+    private int ejections;
+    private long ejectedUntil;
+    private long drainedUntil;
+    long lastProbeMillis;
+
+    Endpoint(@NotNull String url) {
+        this.url = url;
+    }
+
+    /**
+     * 开始一次请求；返回的租约必须以 release / failed / timedOut 之一结束（只有第一次有效）
+     */
+    @NotNull
+    synchronized Lease lease() {
+        outstanding++;
+        requests++;
+        return new Lease();
+    }
+
+    synchronized boolean isAvailable(long now) {
+        if (drainedUntil != 0 && now >= drainedUntil) {
+            // 排空结束：丢弃旧的延迟估计，重新测量
+            drainedUntil = 0;
+            ewmaMillis = -1;
+        }
+        return now >= ejectedUntil && drainedUntil == 0;
+    }
+
+    synchronized long ejectedUntil() {
+        return ejectedUntil;
+    }
+
+    synchronized int outstanding() {
+        return outstanding;
+    }
+
+    // 未测量时为 -1
+    synchronized double ewmaMillis() {
+        return ewmaMillis;
+    }
+
+    /**
+     * 明显慢于其他节点时暂停分配请求，到期后重新测量
+     */
+    synchronized void drain(long until) {
+        drainedUntil = until;
+        LLMMetrics.increment("endpoint.drained");
+    }
+
+    synchronized void probeSucceeded() {
+        if (ejectedUntil != 0) {
+            ejectedUntil = 0;
+            consecutiveFailures = 0;
+            LLMMetrics.increment("endpoint.restored");
+        }
+    }
+
+    synchronized void probeFailed(long now) {
+        if (now >= ejectedUntil) {
+            eject(now);
+        }
+    }
+
+    private synchronized void recordLatency(long latencyMillis, boolean responded) {
+        ewmaMillis = ewmaMillis < 0 ? latencyMillis : EWMA_ALPHA * latencyMillis + (1 - EWMA_ALPHA) * ewmaMillis;
+        if (responded) {
+            consecutiveFailures = 0;
+            ejections = 0;
+        }
+    }
+
+    private synchronized void finish(boolean failed) {
+        outstanding--;
+        if (failed) {
+            failures++;
+            if (++consecutiveFailures >= EJECT_AFTER_FAILURES) {
+                eject(System.currentTimeMillis());
+            }
+        }
+    }
+
+    private void eject(long now) {
+        long duration = Math.min(MAX_EJECT_MILLIS, BASE_EJECT_MILLIS << Math.min(ejections, 10));
+        ejections++;
+        consecutiveFailures = 0;
+        ejectedUntil = now + duration;
+        LLMMetrics.increment("endpoint.ejected");
+    }
+
+    synchronized String describe(long now) {
+        String state;
+        if (now < ejectedUntil) {
+            state = "已摘除 " + (ejectedUntil - now) / 1000 + "s";
+        } else if (drainedUntil != 0 && now < drainedUntil) {
+            state = "排空中 " + (drainedUntil - now) / 1000 + "s";
+        } else {
+            state = "正常";
+        }
+        return String.format("%s  %s, 进行中 %d, 请求 %d, 失败 %d, 延迟 EWMA %s", url, state, outstanding, requests,
+                failures, ewmaMillis < 0 ? "-" : Math.round(ewmaMillis) + "ms");
+    }
+
+    /**
+     * 一次请求对节点的占用，结束时报告结果
+     */
+    public final class Lease {
+        private final AtomicBoolean responded = new AtomicBoolean();
+        private final AtomicBoolean done = new AtomicBoolean();
+        @Nullable
+        private volatile CircuitBreaker breaker;
+        private volatile boolean countsFailures;
+
+        @NotNull
+        public String url() {
+            return url;
+        }
+
+        /**
+         * 结果报告给哪个熔断器；countsFailures 为 false 时（如预取）失败不计入连续失败，只释放探测名额
+         */
+        @NotNull
+        public Lease reportTo(@NotNull CircuitBreaker breaker, boolean countsFailures) {
+            this.breaker = breaker;
+            this.countsFailures = countsFailures;
+            return this;
+        }
+
+        /**
+         * 收到响应（流式为第一段文本），延迟计入 EWMA；不结束租约，流式请求读完后仍需 release
+         */
+        public void responded(long latencyMillis) {
+            if (responded.compareAndSet(false, true)) {
+                recordLatency(latencyMillis, true);
+                if (breaker != null) breaker.recordSuccess();
+            }
+        }
+
+        /**
+         * 结束，不再评价节点（成功、取消、客户端错误等）
+         */
+        public void release() {
+            if (!done.compareAndSet(false, true)) return;
+            finish(false);
+            if (!responded.get() && breaker != null) breaker.recordAbandoned();
+        }
+
+        /**
+         * 连接失败或服务端错误（5xx）：结束并计入连续失败
+         */
+        public void failed() {
+            if (!done.compareAndSet(false, true)) return;
+            finish(!responded.get());
+            if (!responded.get()) reportFailure();
+        }
+
+        /**
+         * 超时结束：不算节点失败，但没有响应时按实际耗时计入 EWMA，使慢节点分到更少的请求；
+         * 对熔断器而言是失败（服务不可达时请求往往以超时结束）
+         */
+        public void timedOut(long elapsedMillis) {
+            if (!done.compareAndSet(false, true)) return;
+            if (!responded.get()) {
+                recordLatency(elapsedMillis, false);
+                reportFailure();
+            }
+            finish(false);
+        }
+
+        private void reportFailure() {
+            CircuitBreaker target = breaker;
+            if (target == null) return;
+            if (countsFailures) {
+                target.recordFailure();
+            } else {
+                target.recordAbandoned();
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.system.demo.LLM.transport;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.system.demo.LLM.LLMSettings;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 同一后端的多个服务节点（设置中的 API URL + 其他服务地址），按 {@link RoutingPolicy} 分配请求：
+ * <ul>
+ *   <li>被动健康检查：请求连续失败的节点暂时摘除（见 {@link Endpoint}）</li>
+ *   <li>主动健康检查：定期 GET 各节点的 /health，5xx 或连接失败即摘除，恢复后提前放回</li>
+ *   <li>慢节点排空：延迟 EWMA 明显高于最快节点时暂停分配一段时间，到期后重新测量</li>
+ * </ul>
+ * 所有节点都不可用时仍选择最早恢复的节点，不会让请求无处可发。只有一个地址时不做任何额外工作。
+ */
+public final class EndpointPool {
+    // 延迟超过最快节点的倍数且差值超过下限时排空
+    private static final double SLOW_FACTOR = 3.0;
+    private static final long SLOW_MIN_GAP_MILLIS = 200;
+    private static final long DRAIN_MILLIS = 30_000;
+    private static final long CHECK_INTERVAL_SECONDS = 5;
+    private static final long PROBE_TIMEOUT_MILLIS = 2000;
+
+    private static final AtomicBoolean healthCheckScheduled = new AtomicBoolean();
+    private static volatile String configuredUrls = "";
+    private static volatile List<Endpoint> endpoints = Collections.emptyList();
+    // 模型路由指定的服务地址：各自单独一个节点，只做被动健康检查
+    private static final ConcurrentHashMap<String, Endpoint> routed = new ConcurrentHashMap<>();
+
+    private EndpointPool() {
+    }
+
+    /**
+     * 选择一个节点并开始一次请求
+     *
+     * @param primaryUrl 设置中的 API URL（或后端默认地址），总是节点之一
+     */
+    @NotNull
+    public static Endpoint.Lease acquire(@NotNull String primaryUrl) {
+        List<Endpoint> current = endpointsFor(primaryUrl);
+        if (current.size() == 1) {
+            return current.get(0).lease();
+        }
+        return select(current, LLMSettings.getInstance().routingPolicy).lease();
+    }
+
+    /**
+     * 模型路由指定了服务地址时使用：不与设置中的节点混用
+     */
+    @NotNull
+    public static Endpoint.Lease acquireRouted(@NotNull String url) {
+        return routed.computeIfAbsent(url, Endpoint::new).lease();
+    }
+
+    private static List<Endpoint> endpointsFor(String primaryUrl) {
+        String urls = primaryUrl + "," + LLMSettings.getInstance().endpointUrls;
+        if (urls.equals(configuredUrls)) {
+            return endpoints;
+        }
+        synchronized (EndpointPool.class) {
+            if (!urls.equals(configuredUrls)) {
+                // 保留地址不变的节点的状态
+                Map<String, Endpoint> previous = new HashMap<>();
+                for (Endpoint endpoint : endpoints) {
+                    previous.put(endpoint.url, endpoint);
+                }
+                List<Endpoint> rebuilt = new ArrayList<>();
+                for (String url : parseUrls(urls)) {
+                    Endpoint endpoint = previous.get(url);
+                    rebuilt.add(endpoint != null ? endpoint : new Endpoint(url));
+                }
+                endpoints = Collections.unmodifiableList(rebuilt);
+                configuredUrls = urls;
+                if (rebuilt.size() > 1) {
+                    scheduleHealthCheck();
+                }
+            }
+            return endpoints;
+        }
+    }
+
+    // 逗号、空白或换行分隔，去重并保持顺序
+    private static Set<String> parseUrls(String urls) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String url : urls.split("[,\\s]+")) {
+            if (!url.isEmpty()) {
+                result.add(url);
+            }
+        }
+        return result;
+    }
+
+    private static Endpoint select(List<Endpoint> candidates, RoutingPolicy policy) {
+        long now = System.currentTimeMillis();
+        List<Endpoint> available = new ArrayList<>(candidates.size());
+        for (Endpoint endpoint : candidates) {
+            if (endpoint.isAvailable(now)) {
+                available.add(endpoint);
+            }
+        }
+        if (available.isEmpty()) {
+            return earliestRecovery(candidates);
+        }
+        drainSlow(available, now);
+
+        Endpoint best = null;
+        double bestScore = Double.MAX_VALUE;
+        double bestLatency = Double.MAX_VALUE;
+        for (Endpoint endpoint : available) {
+            // 未测量的节点按 0 计，优先获得请求以建立延迟估计
+            double latency = Math.max(0, endpoint.ewmaMillis());
+            double score = policy == RoutingPolicy.EWMA_LATENCY
+                    ? latency * (endpoint.outstanding() + 1)
+                    : endpoint.outstanding();
+            if (score < bestScore || (score == bestScore && latency < bestLatency)) {
+                best = endpoint;
+                bestScore = score;
+                bestLatency = latency;
+            }
+        }
+        return best;
+    }
+
+    // 排空明显慢于最快节点的节点（从 available 中移除），最快的节点总会保留
+    private static void drainSlow(List<Endpoint> available, long now) {
+        if (available.size() < 2) return;
+        double fastest = Double.MAX_VALUE;
+        for (Endpoint endpoint : available) {
+            double latency = endpoint.ewmaMillis();
+            if (latency >= 0) fastest = Math.min(fastest, latency);
+        }
+        if (fastest == Double.MAX_VALUE) return;
+        double threshold = Math.max(fastest * SLOW_FACTOR, fastest + SLOW_MIN_GAP_MILLIS);
+        for (int i = available.size() - 1; i >= 0; i--) {
+            Endpoint endpoint = available.get(i);
+            if (endpoint.ewmaMillis() > threshold) {
+                endpoint.drain(now + DRAIN_MILLIS);
+                available.remove(i);
+            }
+        }
+    }
+
+    private static Endpoint earliestRecovery(List<Endpoint> candidates) {
+        Endpoint earliest = candidates.get(0);
+        for (Endpoint endpoint : candidates) {
+            if (endpoint.ejectedUntil() < earliest.ejectedUntil()) {
+                earliest = endpoint;
+            }
+        }
+        return earliest;
+    }
+
+    private static void scheduleHealthCheck() {
+        if (healthCheckScheduled.compareAndSet(false, true)) {
+            AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                    EndpointPool::probeDue, CHECK_INTERVAL_SECONDS, CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // 探测到期的节点；只有一个节点或关闭主动检查时跳过
+    private static void probeDue() {
+        int interval = LLMSettings.getInstance().healthCheckSeconds;
+        List<Endpoint> current = endpoints;
+        if (interval <= 0 || current.size() < 2) return;
+        long now = System.currentTimeMillis();
+        for (Endpoint endpoint : current) {
+            if (now - endpoint.lastProbeMillis >= TimeUnit.SECONDS.toMillis(interval)) {
+                endpoint.lastProbeMillis = now;
+                probe(endpoint);
+            }
+        }
+    }
+
+    // 任何 5xx 以下的响应都说明服务在工作（/health 不存在时返回 404 也算），llama.cpp 加载模型时返回 503
+    private static void probe(Endpoint endpoint) {
+        HttpUrl url = HttpUrl.parse(endpoint.url);
+        if (url == null) return;
+        Call call = HttpTransport.client().newCall(new Request.Builder()
+                .url(url.newBuilder().encodedPath("/health").query(null).build())
+                .build());
+        call.timeout().timeout(PROBE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                endpoint.probeFailed(System.currentTimeMillis());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                int code = response.code();
+                response.close();
+                if (code < 500) {
+                    endpoint.probeSucceeded();
+                } else {
+                    endpoint.probeFailed(System.currentTimeMillis());
+                }
+            }
+        });
+    }
+
+    /**
+     * 各节点的状态（统计面板用）
+     */
+    @NotNull
+    public static String getStats() {
+        List<Endpoint> current = endpoints;
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder();
+        if (current.size() < 2) {
+            sb.append("服务节点: 单节点");
+        } else {
+            sb.append("服务节点 (").append(LLMSettings.getInstance().routingPolicy.getDisplayName()).append("):");
+            for (Endpoint endpoint : current) {
+                sb.append("\n  ").append(endpoint.describe(now));
+            }
+        }
+        if (!routed.isEmpty()) {
+            sb.append("\n路由节点:");
+            for (Endpoint endpoint : routed.values()) {
+                sb.append("\n  ").append(endpoint.describe(now));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,163 @@
+package com.system.demo.LLM.transport;
+
+import com.system.demo.LLM.Deadline;
+import com.system.demo.LLM.LLMSettings;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按设置中的传输方式、连接池和超时参数构建共享的 OkHttpClient。
+ * 设置修改后调用 {@link #reconfigure()} 重建客户端，旧连接池中的空闲连接随即关闭。
+ */
+public final class HttpTransport {
+    // OkHttp Dispatcher 的默认上限
+    private static final int DEFAULT_MAX_REQUESTS = 64;
+    private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
+
+    private static volatile OkHttpClient client;
+
+    private HttpTransport() {
+    }
+
+    @NotNull
+    public static OkHttpClient client() {
+        OkHttpClient current = client;
+        if (current == null) {
+            synchronized (HttpTransport.class) {
+                current = client;
+                if (current == null) {
+                    current = client = create(LLMSettings.getInstance());
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 截止时间长于默认读取超时的请求（如改进整段代码）使用放宽了读取超时的客户端，
+     * 与共享客户端共用连接池和线程池；其余请求直接使用共享客户端
+     */
+    @NotNull
+    public static OkHttpClient clientFor(@NotNull Deadline deadline) {
+        OkHttpClient shared = client();
+        long remaining = deadline.remainingMillis();
+        if (remaining <= shared.readTimeoutMillis()) {
+            return shared;
+        }
+        // 0 表示不限制
+        long readTimeout = deadline.isFinite() ? remaining : 0;
+        return shared.newBuilder().readTimeout(readTimeout, TimeUnit.MILLISECONDS).build();
+    }
+
+    /**
+     * 设置修改后重建客户端；进行中的请求继续使用旧客户端直到结束
+     */
+    public static void reconfigure() {
+        OkHttpClient previous;
+        synchronized (HttpTransport.class) {
+            previous = client;
+            client = create(LLMSettings.getInstance());
+        }
+        if (previous != null) {
+            previous.connectionPool().evictAll();
+        }
+    }
+
+    private static OkHttpClient create(LLMSettings settings) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectTimeout(settings.connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(settings.readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(settings.writeTimeoutMs, TimeUnit.MILLISECONDS)
+                .connectionPool(new ConnectionPool(settings.maxIdleConnections,
+                        settings.keepAliveMinutes, TimeUnit.MINUTES))
+                .dispatcher(dispatcher(settings));
+
+        TransportProfile profile = settings.transportProfile != null ? settings.transportProfile : TransportProfile.PROXY;
+        switch (profile) {
+            case DIRECT:
+                builder.proxy(Proxy.NO_PROXY);
+                break;
+            case H2C:
+                // prior knowledge 只支持 http:// 地址，不能经过代理
+                builder.proxy(Proxy.NO_PROXY)
+                        .protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+                break;
+            case UNIX_SOCKET:
+                UnixDomainSocketFactory.configure(builder, new File(settings.unixSocketPath));
+                break;
+            case PROXY:
+            default:
+                builder.proxySelector(proxySelector(settings.proxyHost, settings.proxyPort));
+                break;
+        }
+        return builder.build();
+    }
+
+    /**
+     * 最大并发数修改后调用：按新的上限调整现有客户端的调度器，不重建连接池
+     */
+    public static void resizeDispatcher() {
+        OkHttpClient current = client;
+        if (current != null) {
+            sizeDispatcher(current.dispatcher(), LLMSettings.getInstance());
+        }
+    }
+
+    // 请求的先后由 RequestScheduler 按优先级决定，OkHttp 自己的队列（默认每个主机 5 个）不能再按到达顺序排队
+    private static Dispatcher dispatcher(LLMSettings settings) {
+        Dispatcher dispatcher = new Dispatcher();
+        sizeDispatcher(dispatcher, settings);
+        return dispatcher;
+    }
+
+    // 上限不低于 OkHttp 的默认值，保证调度器放行的请求不会在 OkHttp 中排队
+    private static void sizeDispatcher(Dispatcher dispatcher, LLMSettings settings) {
+        int perHost = Math.max(DEFAULT_MAX_REQUESTS_PER_HOST, settings.maxConcurrency * 2);
+        dispatcher.setMaxRequests(Math.max(DEFAULT_MAX_REQUESTS, perHost));
+        dispatcher.setMaxRequestsPerHost(perHost);
+    }
+
+    // 远程地址走 HTTP 代理，本机地址（本地模型）直连
+    private static ProxySelector proxySelector(String host, int port) {
+        Proxy proxy = new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved(host, port));
+        return new ProxySelector() {
+            @Override
+            public List<Proxy> select(URI uri) {
+                return Collections.singletonList(isLoopback(uri.getHost()) ? Proxy.NO_PROXY : proxy);
+            }
+
+            @Override
+            public void connectFailed(URI uri, SocketAddress address, IOException e) {
+            }
+        };
+    }
+
+    /**
+     * 是否为本机地址；只识别 localhost 和字面量 IP，不做 DNS 查询
+     */
+    public static boolean isLoopback(String host) {
+        if (host == null || host.isEmpty()) return false;
+        if (host.equalsIgnoreCase("localhost")) return true;
+        if (!Character.isDigit(host.charAt(0)) && host.indexOf(':') < 0) return false;
+        try {
+            return InetAddress.getByName(host).isLoopbackAddress();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.system.demo.LLM.transport;
+
+/**
+ * 多个服务节点之间的请求分配方式
+ */
+public enum RoutingPolicy {
+    // 进行中请求最少的节点，相同时取延迟较低的
+    LEAST_OUTSTANDING("最少进行中请求"),
+    // 延迟 EWMA ×（进行中请求 + 1）最小的节点，兼顾速度和当前负载
+    EWMA_LATENCY("最低延迟（EWMA）");
+
+    private final String displayName;
+
+    RoutingPolicy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
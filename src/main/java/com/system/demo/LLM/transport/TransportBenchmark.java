@@ -0,0 +1,91 @@
+package com.system.demo.LLM.transport;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地基准：同一个本机服务分别经回环 TCP 和 Unix 域套接字请求，对比单次请求延迟。
+ * 两个客户端都保持长连接，只比较连接复用后的请求往返；两种方式交替发送，减少服务端状态的影响。
+ * 不依赖 IDE，可通过 gradle transportBenchmark 任务运行：
+ * <pre>
+ * gradle transportBenchmark -Psocket=/tmp/llama.sock -Purl=http://127.0.0.1:8080/health -Prequests=2000
+ * </pre>
+ * 服务需要同时监听 TCP 端口和套接字文件（如用 socat 把套接字转发到 TCP 端口，或反之）。
+ */
+public final class TransportBenchmark {
+    private static final int WARM_UP = 50;
+
+    private TransportBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法: TransportBenchmark <套接字文件> <TCP 地址，如 http://127.0.0.1:8080/health> [请求次数]");
+            System.exit(1);
+        }
+        File socketFile = new File(args[0]);
+        String url = args[1];
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        OkHttpClient tcp = new OkHttpClient.Builder()
+                .proxy(Proxy.NO_PROXY)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .build();
+        OkHttpClient uds = UnixDomainSocketFactory.configure(new OkHttpClient.Builder(), socketFile)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .build();
+        Request request = new Request.Builder().url(url).build();
+
+        for (int i = 0; i < WARM_UP; i++) {
+            execute(tcp, request);
+            execute(uds, request);
+        }
+        long[] tcpNanos = new long[requests];
+        long[] udsNanos = new long[requests];
+        for (int i = 0; i < requests; i++) {
+            tcpNanos[i] = execute(tcp, request);
+            udsNanos[i] = execute(uds, request);
+        }
+
+        System.out.println("请求: " + url + " x " + requests);
+        System.out.println(summary("回环 TCP", tcpNanos));
+        System.out.println(summary("Unix 套接字", udsNanos));
+        tcp.connectionPool().evictAll();
+        uds.connectionPool().evictAll();
+    }
+
+    // 返回一次请求（含读完响应体）的耗时，纳秒
+    private static long execute(OkHttpClient client, Request request) throws IOException {
+        long start = System.nanoTime();
+        try (Response response = client.newCall(request).execute()) {
+            if (response.body() != null) {
+                response.body().bytes();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static String summary(String name, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        long sum = 0;
+        for (long n : sorted) {
+            sum += n;
+        }
+        return String.format("%-12s avg=%.1fµs p50=%.1fµs p95=%.1fµs p99=%.1fµs max=%.1fµs", name,
+                sum / 1000.0 / sorted.length, percentile(sorted, 0.5), percentile(sorted, 0.95),
+                percentile(sorted, 0.99), sorted[sorted.length - 1] / 1000.0);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(sorted.length * p) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1000.0;
+    }
+}
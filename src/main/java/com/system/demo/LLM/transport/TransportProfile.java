@@ -0,0 +1,25 @@
+package com.system.demo.LLM.transport;
+
+/**
+ * HTTP 传输方式
+ */
+public enum TransportProfile {
+    // 直连，不使用代理
+    DIRECT("直连"),
+    // 通过 HTTP 代理访问远程服务，本机地址直连
+    PROXY("HTTP 代理"),
+    // 明文 HTTP/2（prior knowledge），用于支持 h2c 的本地服务，省去 HTTP/1.1 升级与多连接开销
+    H2C("h2c（本地服务，明文 HTTP/2）"),
+    // Unix 域套接字，所有请求都发到设置中的套接字文件，只用于同一台机器上的本地服务
+    UNIX_SOCKET("Unix 域套接字（本地服务）");
+
+    private final String displayName;
+
+    TransportProfile(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,95 @@
+package com.system.demo.LLM.transport;
+
+import jnr.unixsocket.UnixSocket;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.jetbrains.annotations.NotNull;
+
+import javax.net.SocketFactory;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.Collections;
+
+/**
+ * 通过 Unix 域套接字连接同一台机器上的模型服务（llama.cpp server、Ollama 等监听在 .sock 上的服务）。
+ * OkHttp 给出的主机和端口被忽略，所有连接都连到配置的套接字文件上；URL 中的主机名只用于 Host 头。
+ * Java 8 没有 Unix 域套接字，使用 jnr-unixsocket 实现，仅支持 Linux / macOS。
+ */
+public final class UnixDomainSocketFactory extends SocketFactory {
+    // 主机名不做 DNS 查询，统一解析为回环地址（实际连接走套接字文件）
+    private static final Dns DNS = hostname -> Collections.singletonList(
+            InetAddress.getByAddress(hostname, new byte[]{127, 0, 0, 1}));
+
+    private final File socketFile;
+
+    public UnixDomainSocketFactory(@NotNull File socketFile) {
+        this.socketFile = socketFile;
+    }
+
+    /**
+     * 让客户端的所有连接都走套接字文件：不经过代理、不做 DNS 查询，只用 HTTP/1.1
+     */
+    public static OkHttpClient.Builder configure(@NotNull OkHttpClient.Builder builder, @NotNull File socketFile) {
+        return builder.socketFactory(new UnixDomainSocketFactory(socketFile))
+                .dns(DNS)
+                .proxy(Proxy.NO_PROXY)
+                .protocols(Collections.singletonList(Protocol.HTTP_1_1));
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        UnixSocketChannel channel = UnixSocketChannel.open();
+        return new UnixSocket(channel) {
+            private InetSocketAddress requested;
+
+            @Override
+            public void connect(SocketAddress endpoint) throws IOException {
+                connect(endpoint, 0);
+            }
+
+            @Override
+            public void connect(SocketAddress endpoint, int timeout) throws IOException {
+                requested = (InetSocketAddress) endpoint;
+                super.connect(new UnixSocketAddress(socketFile), timeout);
+            }
+
+            // OkHttp 用远端地址标识连接路由，返回请求的地址而不是套接字文件
+            @Override
+            public InetAddress getInetAddress() {
+                return requested != null ? requested.getAddress() : null;
+            }
+        };
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = createSocket();
+        socket.connect(new InetSocketAddress(host, port));
+        return socket;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        Socket socket = createSocket();
+        socket.connect(new InetSocketAddress(host, port));
+        return socket;
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return createSocket(address, port);
+    }
+}
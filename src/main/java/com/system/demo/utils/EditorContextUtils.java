@@ -18,40 +18,24 @@ public class EditorContextUtils {
     }
 
     public static String buildContextPrompt(PsiFile file, String selectedText) {
-        String fileContent = getFullFileText(file);
-        String fileName = getFileName(file);
-
-        return String.format(
-                "你是一个专业的代码助手。请分析以下代码并给出改进建议。\n\n" +
-                        "文件: %s\n" +
-                        "完整文件内容（仅作上下文参考）:\n" +
-                        "```\n%s\n```\n\n" +
-                        "需要改进的选中代码:\n" +
-                        "```\n%s\n```\n\n" +
-                        "重要要求:\n" +
+        return buildPrompt(file, selectedText,
+                "你是一个专业的代码助手。请分析以下代码并给出改进建议。\n\n",
+                "需要改进的选中代码:\n",
+                "重要要求:\n" +
                         "1. 只返回改进后的代码片段，不要返回整个文件\n" +
                         "2. 保持代码逻辑不变，主要改进：代码风格、可读性、性能\n" +
                         "3. 不要添加额外的解释或注释（除非必要）\n" +
                         "4. 不要使用 markdown 代码块标记\n" +
                         "5. 确保改进后的代码可以直接替换原选中代码\n" +
                         "6. 如果选中代码是方法的一部分，确保参数和返回值一致\n" +
-                        "7. 保持相同的缩进和代码风格",
-                fileName, fileContent, selectedText
-        );
+                        "7. 保持相同的缩进和代码风格");
     }
 
     public static String buildContextPromptForComment(PsiFile file, String selectedText) {
-        String fileContent = getFullFileText(file);
-        String fileName = getFileName(file);
-
-        return String.format(
-                "你是一个专业的代码助手。请为以下代码添加清晰的注释。\n\n" +
-                        "文件: %s\n" +
-                        "完整文件内容（仅作上下文参考）:\n" +
-                        "```\n%s\n```\n\n" +
-                        "需要添加注释的选中代码:\n" +
-                        "```\n%s\n```\n\n" +
-                        "重要要求:\n" +
+        return buildPrompt(file, selectedText,
+                "你是一个专业的代码助手。请为以下代码添加清晰的注释。\n\n",
+                "需要添加注释的选中代码:\n",
+                "重要要求:\n" +
                         "1. 只返回添加注释后的代码片段，不要返回整个文件\n" +
                         "2. 保持原代码逻辑完全不变\n" +
                         "3. 为方法/类添加文档注释（JavaDoc风格）\n" +
@@ -59,9 +43,26 @@ public class EditorContextUtils {
                         "5. 注释要简洁、有用，避免废话\n" +
                         "6. 不要使用 markdown 代码块标记\n" +
                         "7. 确保注释后的代码可以直接替换原选中代码\n" +
-                        "8. 保持相同的缩进和代码风格",
-                fileName, fileContent, selectedText
-        );
+                        "8. 保持相同的缩进和代码风格");
+    }
+
+    // 按最终长度一次分配，整个文件内容只复制一次（不用 String.format）
+    private static String buildPrompt(PsiFile file, String selectedText, String header, String selectionTitle,
+                                      String requirements) {
+        String fileContent = getFullFileText(file);
+        String fileName = getFileName(file);
+        String fileTitle = "完整文件内容（仅作上下文参考）:\n";
+
+        StringBuilder prompt = new StringBuilder(header.length() + fileName.length() + fileTitle.length()
+                + fileContent.length() + selectionTitle.length() + selectedText.length() + requirements.length() + 32);
+        prompt.append(header)
+                .append("文件: ").append(fileName).append('\n')
+                .append(fileTitle)
+                .append("```\n").append(fileContent).append("\n```\n\n")
+                .append(selectionTitle)
+                .append("```\n").append(selectedText).append("\n```\n\n")
+                .append(requirements);
+        return prompt.toString();
     }
 
     // 获取文件名
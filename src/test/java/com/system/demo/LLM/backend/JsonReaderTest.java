@@ -0,0 +1,95 @@
+package com.system.demo.LLM.backend;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class JsonReaderTest {
+
+    @Test
+    public void readsNestedStringByPath() throws IOException {
+        String json = "{\"id\":\"x\",\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"hello\"}}]}";
+        assertEquals("hello", reader(json).readString("choices", "0", "message", "content"));
+    }
+
+    @Test
+    public void decodesEscapes() throws IOException {
+        String json = "{\"content\":\"a\\nb\\tc\\r\\\"q\\\" \\\\ \\/ \\b\\f \\u00e9\\u4e2d \\u2028\"}";
+        assertEquals("a\nb\tc\r\"q\" \\ / \b\f é中 \u2028", reader(json).readString("content"));
+    }
+
+    @Test
+    public void decodesNonAsciiWithoutEscapes() throws IOException {
+        assertEquals("中文 😀", reader("{\"content\":\"中文 😀\"}").readString("content"));
+    }
+
+    @Test
+    public void skipsValuesContainingBracketsAndEscapedQuotes() throws IOException {
+        String json = "{\"skip\":{\"a\":\"}]\\\"{[\",\"b\":[1,[2,{\"c\":\"\\\\\"}]],\"d\":\"\\u0022}\"},"
+                + "\"list\":[\"]\",{\"x\":\"\\\\\\\"\"}],"
+                + "\"content\":\"found\"}";
+        assertEquals("found", reader(json).readString("content"));
+    }
+
+    @Test
+    public void skipsLiteralsAndWhitespace() throws IOException {
+        String json = "{ \"n\" : -1.5e3 ,\n\t\"t\": true, \"f\":false, \"z\" :null,\r\n \"content\" : \"ok\" }";
+        assertEquals("ok", reader(json).readString("content"));
+    }
+
+    @Test
+    public void returnsLiteralsAsTextAndOmitsNull() throws IOException {
+        String json = "{\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":3},\"done\":true,\"error\":null}";
+        Map<String, String> values = reader(json)
+                .readValues("usage.prompt_tokens", "usage.completion_tokens", "done", "error");
+        assertEquals("12", values.get("usage.prompt_tokens"));
+        assertEquals("3", values.get("usage.completion_tokens"));
+        assertEquals("true", values.get("done"));
+        assertFalse(values.containsKey("error"));
+    }
+
+    @Test
+    public void missingPathOrNonStringReturnsNull() throws IOException {
+        assertNull(reader("{\"choices\":[]}").readString("choices", "0", "text"));
+        assertNull(reader("{\"content\":{\"text\":\"x\"}}").readString("content", "missing"));
+    }
+
+    @Test
+    public void wildcardMatchesEveryElement() throws IOException {
+        String json = "[{\"content\":\"a\",\"tokens_predicted\":2,\"skip\":{\"content\":\"no\"}},"
+                + "{\"content\":\"b\\\"\",\"tokens_predicted\":5}]";
+        Map<String, String> values = reader(json).readValues("*.content", "*.tokens_predicted");
+        assertEquals(4, values.size());
+        assertEquals("a", values.get("0.content"));
+        assertEquals("b\"", values.get("1.content"));
+        assertEquals("2", values.get("0.tokens_predicted"));
+        assertEquals("5", values.get("1.tokens_predicted"));
+    }
+
+    @Test
+    public void stopsReadingOnceAllPathsAreFound() throws IOException {
+        Buffer buffer = new Buffer().writeUtf8("{\"content\":\"done\",\"rest\":\"unread\"}");
+        assertEquals("done", new JsonReader(buffer).readString("content"));
+        assertEquals("\"rest\":\"unread\"}", buffer.readUtf8());
+    }
+
+    @Test(expected = IOException.class)
+    public void unterminatedStringFails() throws IOException {
+        reader("{\"content\":\"never closed").readString("content");
+    }
+
+    @Test(expected = IOException.class)
+    public void unterminatedSkippedStringFails() throws IOException {
+        reader("{\"skip\":\"never closed").readString("content");
+    }
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(new Buffer().writeUtf8(json));
+    }
+}
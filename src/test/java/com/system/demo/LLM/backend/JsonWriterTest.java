@@ -0,0 +1,85 @@
+package com.system.demo.LLM.backend;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonWriterTest {
+    private static final char LINE_SEPARATOR = 0x2028;
+    private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+    @Test
+    public void escapesLineAndParagraphSeparators() throws IOException {
+        String value = "a" + LINE_SEPARATOR + "b" + PARAGRAPH_SEPARATOR + "c";
+        assertEquals("\"a\\u2028b\\u2029c\"", write(value));
+    }
+
+    @Test
+    public void escapesSeparatorsInNonStringSequences() throws IOException {
+        StringBuilder value = new StringBuilder().append(LINE_SEPARATOR).append("x").append(PARAGRAPH_SEPARATOR);
+        assertEquals("\"\\u2028x\\u2029\"", write(value));
+    }
+
+    @Test
+    public void escapesQuotesBackslashesAndControlCharacters() throws IOException {
+        assertEquals("\"\\\"q\\\" \\\\ \\n\\r\\t \\u0001\\u001f\"", write("\"q\" \\ \n\r\t \u0001\u001f"));
+    }
+
+    @Test
+    public void writesNonAsciiAndSurrogatePairsAsUtf8() throws IOException {
+        String value = "中文 é 😀";
+        assertEquals("\"" + value + "\"", write(value));
+        assertEquals("\"" + value + "\"", write(new StringBuilder(value)));
+    }
+
+    @Test
+    public void concatenatesPartsIntoOneString() throws IOException {
+        Buffer buffer = new Buffer();
+        new JsonWriter(buffer).value("a\n", new StringBuilder("b" + LINE_SEPARATOR), "c");
+        assertEquals("\"a\\nb\\u2028c\"", buffer.readUtf8());
+    }
+
+    @Test
+    public void writesCommasBetweenMembersAndElements() throws IOException {
+        Buffer buffer = new Buffer();
+        new JsonWriter(buffer).beginObject()
+                .name("model").value("m")
+                .name("stream").value(false)
+                .name("n").value(3)
+                .name("temperature").value(0.5)
+                .name("stop").beginArray().value("a").value("b").endArray()
+                .name("options").beginObject().endObject()
+                .endObject();
+        assertEquals("{\"model\":\"m\",\"stream\":false,\"n\":3,\"temperature\":0.5,"
+                + "\"stop\":[\"a\",\"b\"],\"options\":{}}", buffer.readUtf8());
+    }
+
+    @Test
+    public void escapesNames() throws IOException {
+        Buffer buffer = new Buffer();
+        new JsonWriter(buffer).beginObject().name("a\"b" + LINE_SEPARATOR).value(1).endObject();
+        assertEquals("{\"a\\\"b\\u2028\":1}", buffer.readUtf8());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonFiniteNumbers() throws IOException {
+        new JsonWriter(new Buffer()).value(Double.NaN);
+    }
+
+    @Test
+    public void outputIsReadBackUnchanged() throws IOException {
+        String value = "line\n\"quoted\" \\path\\ " + LINE_SEPARATOR + PARAGRAPH_SEPARATOR + " \u0007 中文 😀";
+        Buffer buffer = new Buffer();
+        new JsonWriter(buffer).beginObject().name("content").value(value).endObject();
+        assertEquals(value, new JsonReader(buffer).readString("content"));
+    }
+
+    private static String write(CharSequence value) throws IOException {
+        Buffer buffer = new Buffer();
+        new JsonWriter(buffer).value(value);
+        return buffer.readUtf8();
+    }
+}
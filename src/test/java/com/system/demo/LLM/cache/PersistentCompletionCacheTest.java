@@ -0,0 +1,257 @@
+package com.system.demo.LLM.cache;
+
+import com.system.demo.LLM.LLMOperation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentCompletionCacheTest {
+    private static final int SLOT_COUNT = 64;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path dir;
+    private long maxBytes = 1024 * 1024;
+    // 后台任务（压缩）由测试手动执行
+    private final List<Runnable> pending = new ArrayList<>();
+    private final List<PersistentCompletionCache> opened = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        dir = folder.newFolder("cache").toPath();
+    }
+
+    @After
+    public void tearDown() {
+        for (PersistentCompletionCache cache : opened) {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void entriesSurviveCloseAndReopen() {
+        PersistentCompletionCache cache = open();
+        cache.put(key(1), new CacheEntry("first", 11, 100));
+        cache.put(key(2), new CacheEntry("第二条 ✓", 0, 200));
+        cache.put(new CacheKey(LLMOperation.COMMENT, 1), new CacheEntry("comment", 0, 300));
+        cache.dispose();
+
+        PersistentCompletionCache reopened = open();
+        CacheEntry first = reopened.get(key(1));
+        assertNotNull(first);
+        assertEquals("first", first.result);
+        assertEquals(11, first.regionFingerprint);
+        assertEquals(100, first.timestamp);
+        assertEquals("第二条 ✓", reopened.get(key(2)).result);
+        // 同一指纹、不同操作互不命中
+        assertEquals("comment", reopened.get(new CacheKey(LLMOperation.COMMENT, 1)).result);
+        assertNull(reopened.get(new CacheKey(LLMOperation.IMPROVE, 1)));
+    }
+
+    @Test
+    public void overwrittenKeyReturnsNewestValueAfterReopen() {
+        PersistentCompletionCache cache = open();
+        cache.put(key(1), new CacheEntry("old", 0, 100));
+        cache.put(key(1), new CacheEntry("new", 0, 200));
+        cache.dispose();
+
+        assertEquals("new", open().get(key(1)).result);
+    }
+
+    @Test
+    public void compactionKeepsNewestEntriesUnderByteCap() throws IOException {
+        maxBytes = 4096;
+        PersistentCompletionCache cache = open();
+        String value = repeat('x', 100);
+        int count = 60;
+        for (int i = 0; i < count; i++) {
+            cache.put(key(i), new CacheEntry(value, 0, 1000 + i));
+            runPending();
+        }
+
+        assertTrue(logSize() <= maxBytes);
+        assertNotNull(cache.get(key(count - 1)));
+        assertNull(cache.get(key(0)));
+        // 保留的是一段连续的最新记录
+        int kept = 0;
+        for (int i = count - 1; i >= 0 && cache.get(key(i)) != null; i--) {
+            kept++;
+        }
+        for (int i = 0; i < count - kept; i++) {
+            assertNull(cache.get(key(i)));
+        }
+        // 日志中只剩仍被索引的记录
+        assertEquals(kept * (long) recordBytes(value), logSize());
+    }
+
+    @Test
+    public void compactionDropsOverwrittenRecords() throws IOException {
+        PersistentCompletionCache cache = open();
+        for (int i = 0; i < 10; i++) {
+            cache.put(key(1), new CacheEntry("value " + i, 0, 1000 + i));
+        }
+        cache.compact();
+
+        assertEquals(recordBytes("value 9"), logSize());
+        assertEquals("value 9", cache.get(key(1)).result);
+    }
+
+    @Test
+    public void fullIndexKeepsUnindexedLogRecords() throws IOException {
+        int count = SLOT_COUNT + 10;
+        try (FileChannel log = FileChannel.open(dir.resolve("completions.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < count; i++) {
+                log.write(record(key(i), "value " + i, 1000 + i));
+            }
+        }
+        long size = logSize();
+
+        PersistentCompletionCache cache = open();
+        assertTrue(cache.isLoaded());
+        assertEquals(size, logSize());
+        assertEquals("value 0", cache.get(key(0)).result);
+        assertEquals("value " + (SLOT_COUNT - 1), cache.get(key(SLOT_COUNT - 1)).result);
+        assertNull(cache.get(key(count - 1)));
+
+        // 索引已满时的写入被丢弃，不覆盖未建立索引的记录
+        cache.put(key(count), new CacheEntry("dropped", 0, 5000));
+        assertEquals(size, logSize());
+
+        // 超出槽位阈值，加载后安排了压缩：只保留最新的一半索引记录
+        assertFalse(pending.isEmpty());
+        runPending();
+        assertTrue(cache.isLoaded());
+        assertNull(cache.get(key(0)));
+        assertEquals("value " + (SLOT_COUNT - 1), cache.get(key(SLOT_COUNT - 1)).result);
+        cache.dispose();
+
+        PersistentCompletionCache reopened = open();
+        assertTrue(pending.isEmpty());
+        assertEquals("value " + (SLOT_COUNT - 1), reopened.get(key(SLOT_COUNT - 1)).result);
+        assertEquals("value " + SLOT_COUNT / 2, reopened.get(key(SLOT_COUNT / 2)).result);
+        assertNull(reopened.get(key(SLOT_COUNT / 2 - 1)));
+    }
+
+    @Test
+    public void truncatedTailRecordIsDropped() throws IOException {
+        PersistentCompletionCache cache = open();
+        cache.put(key(1), new CacheEntry("kept", 0, 100));
+        long intact = logSize();
+        cache.put(key(2), new CacheEntry("torn write", 0, 200));
+        cache.dispose();
+
+        try (FileChannel log = FileChannel.open(dir.resolve("completions.log"), StandardOpenOption.WRITE)) {
+            log.truncate(intact + recordBytes("torn write") - 3);
+        }
+
+        PersistentCompletionCache reopened = open();
+        assertEquals("kept", reopened.get(key(1)).result);
+        assertNull(reopened.get(key(2)));
+        assertEquals(intact, logSize());
+
+        // 截断后可以继续正常写入
+        reopened.put(key(3), new CacheEntry("after", 0, 300));
+        reopened.dispose();
+        assertEquals("after", open().get(key(3)).result);
+    }
+
+    @Test
+    public void corruptedTailRecordIsDropped() throws IOException {
+        PersistentCompletionCache cache = open();
+        cache.put(key(1), new CacheEntry("kept", 0, 100));
+        cache.put(key(2), new CacheEntry("also kept", 0, 200));
+        long intact = logSize();
+        cache.dispose();
+
+        try (FileChannel log = FileChannel.open(dir.resolve("completions.log"), StandardOpenOption.WRITE)) {
+            ByteBuffer garbage = ByteBuffer.wrap(repeat('#', 64).getBytes(StandardCharsets.UTF_8));
+            log.write(garbage, intact);
+        }
+
+        PersistentCompletionCache reopened = open();
+        assertEquals("kept", reopened.get(key(1)).result);
+        assertEquals("also kept", reopened.get(key(2)).result);
+        assertEquals(intact, logSize());
+    }
+
+    @Test
+    public void missingIndexIsRebuiltFromLog() throws IOException {
+        PersistentCompletionCache cache = open();
+        cache.put(key(1), new CacheEntry("one", 0, 100));
+        cache.put(key(2), new CacheEntry("two", 0, 200));
+        cache.dispose();
+        Files.delete(dir.resolve("completions.idx"));
+
+        PersistentCompletionCache reopened = open();
+        assertEquals("one", reopened.get(key(1)).result);
+        assertEquals("two", reopened.get(key(2)).result);
+    }
+
+    private PersistentCompletionCache open() {
+        PersistentCompletionCache cache = new PersistentCompletionCache(dir, () -> maxBytes, pending::add, SLOT_COUNT);
+        cache.load();
+        opened.add(cache);
+        return cache;
+    }
+
+    private void runPending() {
+        while (!pending.isEmpty()) {
+            pending.remove(0).run();
+        }
+    }
+
+    private long logSize() throws IOException {
+        return Files.size(dir.resolve("completions.log"));
+    }
+
+    private static CacheKey key(long fingerprint) {
+        return new CacheKey(LLMOperation.INLINE, fingerprint + 1);
+    }
+
+    // 与 PersistentCompletionCache 的记录格式一致：magic + op + fingerprint + regionFingerprint + timestamp + length + 值
+    private static ByteBuffer record(CacheKey key, String value, long timestamp) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(33 + bytes.length);
+        record.putInt(0x4C4C5232)
+                .put((byte) key.operation.ordinal())
+                .putLong(key.fingerprint)
+                .putLong(0)
+                .putLong(timestamp)
+                .putInt(bytes.length)
+                .put(bytes);
+        record.flip();
+        return record;
+    }
+
+    private static int recordBytes(String value) {
+        return 33 + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}